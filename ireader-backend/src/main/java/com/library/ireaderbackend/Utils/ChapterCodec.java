@@ -0,0 +1,100 @@
+package com.library.ireaderbackend.Utils;
+
+import com.library.ireaderbackend.entity.BookContent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 章节正文存储编码
+ *  - content_codec 为空：正文明文存在 chapter_content（老数据）
+ *  - content_codec = gzip：正文 UTF-8 后 gzip 压缩存在 content_blob，chapter_content 为空
+ * 用 gzip 而不是裸 deflate，是为了压缩后的字节可以原样作为 Content-Encoding: gzip 返回给浏览器
+ */
+public class ChapterCodec {
+
+    public static final String GZIP = "gzip";
+
+    // 太短的章节压缩收益不抵 gzip 头部开销，直接明文存
+    private static final int MIN_COMPRESS_CHARS = 256;
+
+    /**
+     * 写库前编码：压缩后更小才改为 gzip 存储
+     */
+    public static void encode(BookContent c) {
+        String content = c.getChapterContent();
+        if (content == null || content.length() < MIN_COMPRESS_CHARS || GZIP.equals(c.getContentCodec())) return;
+        byte[] compressed = gzip(content);
+        if (compressed.length >= content.getBytes(StandardCharsets.UTF_8).length) return;
+        c.setContentCodec(GZIP);
+        c.setContentBlob(compressed);
+        c.setChapterContent(null);
+    }
+
+    /**
+     * 读库后解码：还原成明文正文，调用方无需关心存储格式
+     */
+    public static BookContent decode(BookContent c) {
+        if (c != null && GZIP.equals(c.getContentCodec()) && c.getContentBlob() != null) {
+            c.setChapterContent(gunzip(c.getContentBlob()));
+            c.setContentBlob(null);
+            c.setContentCodec(null);
+        }
+        return c;
+    }
+
+    /**
+     * 按 Accept-Encoding 判断客户端是否接受 gzip：逐项解析 q 值，gzip（或 x-gzip）的 q 为 0 视为拒绝；
+     * 没有单独列出 gzip 时取 * 的 q 值；q 写法不合法的项按未列出处理
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) return false;
+        double gzipQ = -1, wildcardQ = -1;
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.length() > 1 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q') && param.charAt(1) == '=') {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = -1;
+                    }
+                }
+            }
+            if (q < 0 || q > 1) continue;
+            if (coding.equals(GZIP) || coding.equals("x-gzip")) gzipQ = Math.max(gzipQ, q);
+            else if (coding.equals("*")) wildcardQ = Math.max(wildcardQ, q);
+        }
+        return gzipQ >= 0 ? gzipQ > 0 : wildcardQ > 0;
+    }
+
+    public static byte[] gzip(String text) {
+        return gzip(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        try (GZIPOutputStream gz = new GZIPOutputStream(out, 8192)) {
+            gz.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static String gunzip(byte[] data) {
+        try (GZIPInputStream gz = new GZIPInputStream(new ByteArrayInputStream(data), 8192)) {
+            return new String(gz.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.library.ireaderbackend.Utils;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.CDataNode;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 全文检索分词（不依赖词典）
+ *  - 连续的中日韩字符切成重叠二元组：“中华人民” → 中华 / 华人 / 人民
+ *  - 每段连续汉字的最后一个字额外输出单字，保证任意单字都能按“以该字开头的词项”找到
+ *  - 字母数字按整词输出并转小写；其余字符（标点、空白）只起分隔作用
+ *  - 字符模式（ngrams = true，书内查找用）：字母数字连续段也和汉字一样切成小写的重叠二元组 + 段末单字，
+ *    任意子串都能查到（"read" 命中 "reader"，"202" 命中 "2024"）；汉字段与字母数字段各自成段，二元组不跨段
+ *  - 输出的偏移是该词项首字符在正文中的 char 下标
+ */
+public class CjkTokenizer {
+
+    @FunctionalInterface
+    public interface TokenSink {
+        void accept(String term, int offset);
+    }
+
+    /**
+     * 取用于索引的纯文本，与阅读器里 v-html 渲染后正文节点的 textContent 逐字符一致（批注、检索偏移都以它为准）：
+     *  - 章节正文无论 EPUB 的 HTML 还是 TXT/PDF 的明文，前端都按 HTML 解析渲染，这里同样解析
+     *  - 所有文本节点按文档顺序拼接，含 title/style/script 内的文本；br 不产生字符；注释、CDATA（HTML 中按注释处理）忽略
+     *  - 换行按 HTML 解析规则归一：\r\n、\r → \n
+     */
+    public static String plainText(String content) {
+        if (content == null) return "";
+        if (content.indexOf('<') < 0 && content.indexOf('&') < 0 && content.indexOf('\r') < 0) return content;
+        StringBuilder sb = new StringBuilder(content.length());
+        NodeTraversor.traverse((node, depth) -> {
+            if (node instanceof CDataNode) return;
+            if (node instanceof TextNode t) sb.append(t.getWholeText());
+            else if (node instanceof DataNode d) sb.append(d.getWholeData());
+        }, Jsoup.parseBodyFragment(content).body());
+        if (sb.indexOf("\r") < 0) return sb.toString();
+        return sb.toString().replace("\r\n", "\n").replace('\r', '\n');
+    }
+
+    public static void tokenize(CharSequence text, TokenSink sink) {
+        tokenize(text, false, sink);
+    }
+
+    /**
+     * @param ngrams true 时字母数字段按字符二元组输出（见类注释的字符模式），false 时按整词输出
+     */
+    public static void tokenize(CharSequence text, boolean ngrams, TokenSink sink) {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                int start = i;
+                while (i < n && isCjk(text.charAt(i))) i++;
+                emitNgrams(text, start, i, sink);
+            } else if (isWordChar(c)) {
+                int start = i;
+                while (i < n && isWordChar(text.charAt(i))) i++;
+                if (ngrams) emitNgrams(text, start, i, sink);
+                else sink.accept(text.subSequence(start, i).toString().toLowerCase(Locale.ROOT), start);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    // [start, end) 一段切成重叠二元组，段末字另出单字；逐字符转小写，不改变长度和偏移
+    private static void emitNgrams(CharSequence text, int start, int end, TokenSink sink) {
+        for (int j = start; j + 1 < end; j++) {
+            sink.accept(new String(new char[]{lower(text.charAt(j)), lower(text.charAt(j + 1))}), j);
+        }
+        sink.accept(String.valueOf(lower(text.charAt(end - 1))), end - 1);
+    }
+
+    private static char lower(char c) {
+        return c < 0x80 ? (c >= 'A' && c <= 'Z' ? (char) (c + 32) : c) : Character.toLowerCase(c);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) && !isCjk(c);
+    }
+
+    /**
+     * 查询串分词结果
+     * @param terms   需精确匹配的词项（按出现顺序，可重复）
+     * @param deltas  各词项相对查询串开头的字符偏移
+     * @param prefix  末尾按前缀匹配的单字，没有则为 null
+     * @param leading 首个词项前的字符数（标点等），命中偏移据此回推到查询串开头
+     * @param length  查询串（去掉首尾空白）长度，即命中区间长度
+     */
+    public record Query(List<String> terms, int[] deltas, String prefix, int prefixDelta, int leading, int length) {
+        public boolean isEmpty() {
+            return terms.isEmpty() && prefix == null;
+        }
+    }
+
+    /**
+     * 查询串按同样规则分词；末尾的单字项特殊处理：正文里这个字后面可能还有字，那时它只出现在二元组里
+     *  - 前面紧挨着二元组：已被覆盖，直接去掉
+     *  - 否则（单字查询、标点后的单字）：改为前缀匹配，即以该字开头的所有词项
+     */
+    public static Query parseQuery(String query) {
+        return parseQuery(query, false);
+    }
+
+    /**
+     * @param ngrams 与建索引时的 tokenize 模式一致
+     */
+    public static Query parseQuery(String query, boolean ngrams) {
+        String q = query == null ? "" : query.strip();
+        List<String> terms = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        tokenize(q, ngrams, (t, off) -> {
+            terms.add(t);
+            offsets.add(off);
+        });
+        if (terms.isEmpty()) return new Query(List.of(), new int[0], null, 0, 0, q.length());
+        int leading = offsets.get(0);
+
+        String prefix = null;
+        int prefixDelta = 0;
+        int last = terms.size() - 1;
+        String lastTerm = terms.get(last);
+        // 单字词项只来自按字切分的段：汉字段，字符模式下还有字母数字段
+        if (lastTerm.length() == 1 && (isCjk(lastTerm.charAt(0)) || ngrams && isWordChar(lastTerm.charAt(0)))) {
+            // 紧挨着的前一个词项是同一段的二元组（二元组不跨段，偏移相差 1 即同段）
+            boolean covered = last > 0 && terms.get(last - 1).length() == 2
+                    && offsets.get(last - 1) == offsets.get(last) - 1;
+            if (!covered) {
+                prefix = lastTerm;
+                prefixDelta = offsets.get(last) - leading;
+            }
+            terms.remove(last);
+            offsets.remove(last);
+        }
+        int[] deltas = new int[terms.size()];
+        for (int i = 0; i < deltas.length; i++) deltas[i] = offsets.get(i) - leading;
+        return new Query(terms, deltas, prefix, prefixDelta, leading, q.length());
+    }
+
+    // 直接比较码段，热路径上不走 Character.UnicodeBlock 查表
+    public static boolean isCjk(char c) {
+        return (c >= 0x4E00 && c <= 0x9FFF)     // 基本汉字
+                || (c >= 0x3400 && c <= 0x4DBF) // 扩展 A
+                || (c >= 0xF900 && c <= 0xFAFF) // 兼容汉字
+                || (c >= 0x3040 && c <= 0x30FF) // 平假名 / 片假名
+                || (c >= 0xAC00 && c <= 0xD7AF); // 韩文音节
+    }
+}
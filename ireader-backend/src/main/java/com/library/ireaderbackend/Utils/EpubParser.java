@@ -1,270 +1,438 @@
 package com.library.ireaderbackend.Utils;
 
 import com.library.ireaderbackend.entity.BookContent;
-import nl.siegmann.epublib.domain.Book;
-import nl.siegmann.epublib.domain.Resource;
-import nl.siegmann.epublib.domain.SpineReference;
-import nl.siegmann.epublib.domain.TOCReference;
-import nl.siegmann.epublib.epub.EpubReader;
+import com.library.ireaderbackend.service.ImageStore;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.InputStream;
+import org.jsoup.nodes.*;
+import org.jsoup.parser.Parser;
+import org.jsoup.select.NodeTraversor;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * EpubParser 修正版（封面路径统一处理）
+ * 正文图片写入按内容寻址的共享图片库（ImageStore），img src 改写为哈希 URL
+ *
+ * 流式解析：用 ZipFile 随机读取，先读 container.xml / OPF / NCX（只有目录信息），
+ * 再按 spine 顺序逐个解码章节并通过回调交出；上传和懒解析都把回调直接接到 BookContentBatchWriter，
+ * 内存峰值只和最大的单个章节文件加一个写入块有关，不再整本读入
+ * 上传文件和 classpath 内置书籍走同一条解析路径
+ * 图片由单独的读取线程边读边交给 ImageStore，和章节解码同时进行；章节只在用到某张图时等它的 URL
+ * 章节只保存压缩空白后的 body 内容（见 compactBody）
  */
 public class EpubParser {
-    public static List<BookContent> parseEpubFile(File epubFile, Long bookId, String staticImgDir) throws Exception {
-        System.out.println("[EPUB] 开始解析文件: " + epubFile.getAbsolutePath() + " bookId=" + bookId);
-        List<BookContent> chapters = new ArrayList<>();
-        String webBase = "/static/book/" + bookId + "/"; // 前端访问基准路径
-
-        try (InputStream in = new FileInputStream(epubFile)) {
-            Book epub = new EpubReader().readEpub(in);
-            System.out.println("[EPUB] 成功读取 EPUB: " + epub.getTitle());
-
-            // 1) 导出所有资源（图片）
-            int imgCount = 0;
-            for (Resource r : epub.getResources().getAll()) {
-                String href = r.getHref();
-                if (href == null) continue;
-                String lower = href.toLowerCase();
-                if (lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png")
-                        || lower.endsWith(".gif") || lower.endsWith(".bmp") || lower.endsWith(".webp")) {
 
-                    // 所有图片统一导出到 Images/ 下
-                    String outPath = "Images/" + new File(href).getName();
-                    File outFile = new File(staticImgDir, outPath.replace("/", File.separator));
-                    File parent = outFile.getParentFile();
-                    if (parent != null && !parent.exists()) parent.mkdirs();
-
-                    try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                        fos.write(r.getData());
-                        imgCount++;
-                        System.out.println("[EPUB] 导出图片: " + outFile.getAbsolutePath());
-                    } catch (Exception e) {
-                        System.out.println("[EPUB] 导出图片失败: " + outFile.getAbsolutePath() + " -> " + e.getMessage());
-                    }
-                }
-            }
-            System.out.println("[EPUB] 共导出图片: " + imgCount);
-
-            // 2) 构建 TOC href -> title 映射
-            Map<String, String> href2title = new HashMap<>();
-            buildHrefTitleMap(epub.getTableOfContents().getTocReferences(), href2title);
-            Map<String, String> normalizedHref2Title = new HashMap<>();
-            for (Map.Entry<String, String> e : href2title.entrySet()) {
-                normalizedHref2Title.put(normalizePath(e.getKey()), e.getValue());
-            }
+    private static final Pattern XML_ENCODING = Pattern.compile("encoding=[\"']([A-Za-z0-9._-]+)[\"']");
+    // 同时在途（已读入内存、等待写盘）的图片数量上限
+    private static final int MAX_PENDING_IMAGES = 8;
 
-            // 3) 处理 spine（章节）
-            int order = 1;
-            boolean skipFirstSpine = true; // 跳过第一章（封面）
-            for (SpineReference spRef : epub.getSpine().getSpineReferences()) {
-                if (spRef.getResource() == null) continue;
-
-                if (skipFirstSpine) {
-                    skipFirstSpine = false;
-                    continue;
-                }
-
-                Resource res = spRef.getResource();
-                String href = res.getHref();
-                String normalizedHref = normalizePath(href);
-                String encoding = res.getInputEncoding() == null ? Charset.forName("UTF-8").name() : res.getInputEncoding();
-                String rawHtml = new String(res.getData(), encoding);
-
-                Document doc = Jsoup.parse(rawHtml);
-
-                // 替换 img src
-                for (Element img : doc.select("img")) {
-                    String src = img.attr("src");
-                    if (src == null || src.trim().isEmpty()) continue;
-                    String lowSrc = src.toLowerCase();
-                    if (lowSrc.startsWith("http://") || lowSrc.startsWith("https://") || lowSrc.startsWith("data:")) continue;
-                    String fileName = new File(src).getName();
-                    String newWebPath = webBase + "Images/" + fileName;
-                    img.attr("src", newWebPath);
-                }
-
-                // 获取章节标题
-                String title = normalizedHref2Title.get(normalizedHref);
-                if (title == null || title.trim().isEmpty()) {
-                    String htmlTitle = doc.title();
-                    if (htmlTitle != null && !htmlTitle.trim().isEmpty()) title = htmlTitle.trim();
-                    else {
-                        Element h1 = doc.selectFirst("h1");
-                        if (h1 != null && !h1.text().trim().isEmpty()) title = h1.text().trim();
-                    }
-                }
-                if (title == null || title.trim().isEmpty()) title = extractFileName(href);
+    /**
+     * 整本收集成列表，只供测试 / 离线工具使用；入库路径用 parseEpubStreaming 直接接写入批次
+     */
+    public static List<BookContent> parseEpubFile(File epubFile, Long bookId, String staticImgDir,
+                                                  ImageStore imageStore) throws Exception {
+        List<BookContent> chapters = new ArrayList<>();
+        parseEpubStreaming(epubFile, bookId, staticImgDir, imageStore, chapters::add);
+        return chapters;
+    }
 
-                BookContent bc = new BookContent();
-                bc.setBookId(bookId);
-                bc.setChapterTitle(title);
-                bc.setChapterContent(doc.html());
-                bc.setChapterOrder(order++);  // 这里保证编号从 1 开始
-                chapters.add(bc);
+    /**
+     * classpath 内置书籍的流式解析（懒解析入口），每解析出一章就交给 consumer
+     */
+    public static void parseEpubResourceStreaming(String classpathResource, Long bookId, String staticImgDir,
+                                                  ImageStore imageStore, Consumer<BookContent> consumer) throws Exception {
+        URL url = EpubParser.class.getResource(classpathResource);
+        if (url == null) throw new RuntimeException("[EPUB] 资源未找到: " + classpathResource);
+        if ("file".equals(url.getProtocol())) {
+            parseEpubStreaming(toFile(url), bookId, staticImgDir, imageStore, consumer);
+            return;
+        }
+        // 打包在 jar 内：先落到临时文件，ZipFile 需要随机访问
+        Path tmp = Files.createTempFile("epub-", ".epub");
+        try (InputStream in = url.openStream()) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            parseEpubStreaming(tmp.toFile(), bookId, staticImgDir, imageStore, consumer);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
 
-                System.out.println("[EPUB] 章节 " + (order-1) + ": " + title);
+    /**
+     * 流式解析：每解析出一章就交给 consumer
+     */
+    public static void parseEpubStreaming(File epubFile, Long bookId, String staticImgDir, ImageStore imageStore,
+                                          Consumer<BookContent> consumer) throws Exception {
+        System.out.println("[EPUB] 开始解析文件: " + epubFile.getAbsolutePath() + " bookId=" + bookId);
+        try (ZipFile zip = new ZipFile(epubFile, StandardCharsets.UTF_8)) {
+            Package pkg = readPackage(zip);
+            System.out.println("[EPUB] 成功读取 EPUB: " + pkg.title);
+
+            // 1) 图片在后台线程读出并按内容哈希写入共享图片库，与下面的章节处理并行，href -> URL
+            try (ImageExport images = ImageExport.start(zip, imageStore)) {
+                parseSpine(zip, pkg, bookId, images, consumer);
+                // 等所有图片落盘后再返回，保证章节入库时图片 URL 已可访问
+                images.awaitAll();
+                System.out.println("[EPUB] 共导出图片: " + images.byPath.size());
             }
 
-            // 4) 处理封面图片（单独 export）
-            if (epub.getCoverImage() != null) {
-                Resource coverRes = epub.getCoverImage();
+            // 3) 处理封面图片（单独 export）
+            ZipEntry coverEntry = pkg.coverPath == null ? null : zip.getEntry(pkg.coverPath);
+            if (coverEntry != null) {
                 File coverFile = new File(staticImgDir, "Images/cover.jpg");
                 File parent = coverFile.getParentFile();
                 if (parent != null && !parent.exists()) parent.mkdirs();
-                try (FileOutputStream fos = new FileOutputStream(coverFile)) {
-                    fos.write(coverRes.getData());
+                try (InputStream in = zip.getInputStream(coverEntry)) {
+                    Files.copy(in, coverFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
                     System.out.println("[EPUB] 导出封面图片: " + coverFile.getAbsolutePath());
                 } catch (Exception e) {
                     System.out.println("[EPUB] 导出封面失败: " + e.getMessage());
                 }
             }
+        }
+    }
+
+    // 2) 处理 spine（章节），一次只解码一个文件
+    private static void parseSpine(ZipFile zip, Package pkg, Long bookId, ImageExport images,
+                                   Consumer<BookContent> consumer) throws IOException {
+        int order = 1;
+        boolean skipFirstSpine = true; // 跳过第一章（封面）
+        for (String path : pkg.spine) {
+            ZipEntry entry = zip.getEntry(path);
+            if (entry == null) continue;
+
+            if (skipFirstSpine) {
+                skipFirstSpine = false;
+                continue;
+            }
+
+            Document doc = Jsoup.parse(readText(zip, entry));
+
+            // 替换 img src：相对章节文件解析出图片在包内的路径，再换成内容哈希 URL
+            for (Element img : doc.select("img")) {
+                String src = img.attr("src");
+                if (src == null || src.trim().isEmpty()) continue;
+                String lowSrc = src.toLowerCase();
+                if (lowSrc.startsWith("http://") || lowSrc.startsWith("https://") || lowSrc.startsWith("data:")) continue;
+                CompletableFuture<String> url = images.byPath.get(resolveHref(path, src));
+                if (url == null) url = images.byName.get(new File(normalizePath(src)).getName()); // 路径不规范时按文件名兜底
+                String webPath = url == null ? null : url.join();
+                if (webPath != null) img.attr("src", webPath);
+            }
+
+            // 获取章节标题
+            String title = pkg.href2title.get(path);
+            if (title == null || title.trim().isEmpty()) {
+                String htmlTitle = doc.title();
+                if (htmlTitle != null && !htmlTitle.trim().isEmpty()) title = htmlTitle.trim();
+                else {
+                    Element h1 = doc.selectFirst("h1");
+                    if (h1 != null && !h1.text().trim().isEmpty()) title = h1.text().trim();
+                }
+            }
+            if (title == null || title.trim().isEmpty()) title = extractFileName(path);
 
-            System.out.println("[EPUB] 共解析章节数: " + chapters.size());
+            BookContent bc = new BookContent();
+            bc.setBookId(bookId);
+            bc.setChapterTitle(title);
+            bc.setChapterContent(compactBody(doc));
+            bc.setChapterOrder(order++);  // 这里保证编号从 1 开始
+            consumer.accept(bc);
+
+            System.out.println("[EPUB] 章节 " + (order-1) + ": " + title);
         }
 
-        return chapters;
+        System.out.println("[EPUB] 共解析章节数: " + (order - 1));
     }
 
+    /**
+     * 入库前的规整：只保留 body 内容（head/样式表对阅读器无用），去掉注释和块级元素之间的纯空白，
+     * 不做缩进美化；正文文本本身不变
+     */
+    static String compactBody(Document doc) {
+        Element body = doc.body();
+        List<Node> removable = new ArrayList<>();
+        NodeTraversor.traverse((node, depth) -> {
+            if (node instanceof Comment) {
+                removable.add(node);
+            } else if (node instanceof TextNode text && text.isBlank() && isBetweenBlocks(text)) {
+                removable.add(node);
+            }
+        }, body);
+        removable.forEach(Node::remove);
+        doc.outputSettings().prettyPrint(false);
+        return body.html();
+    }
 
-    public static List<BookContent> parseEpubToChapters(String classpathResource, Long bookId, String staticImgDir) throws Exception {
-        System.out.println("[EPUB] 开始解析: " + classpathResource + " bookId=" + bookId);
-        List<BookContent> chapters = new ArrayList<>();
-        String webBase = "/static/book/" + bookId + "/"; // 前端访问基准路径
-
-        try (InputStream in = EpubParser.class.getResourceAsStream(classpathResource)) {
-            if (in == null) throw new RuntimeException("[EPUB] 资源未找到: " + classpathResource);
+    // 纯空白文本两侧都是块级元素（或在容器首尾）时可以安全删除；pre 内的空白保留
+    private static boolean isBetweenBlocks(TextNode text) {
+        for (Node p = text.parent(); p instanceof Element e; p = p.parent()) {
+            if (e.normalName().equals("pre") || e.normalName().equals("textarea")) return false;
+        }
+        boolean parentBlock = text.parent() instanceof Element parent && parent.isBlock();
+        Node prev = text.previousSibling();
+        Node next = text.nextSibling();
+        boolean prevBlock = prev == null ? parentBlock : prev instanceof Element pe && pe.isBlock();
+        boolean nextBlock = next == null ? parentBlock : next instanceof Element ne && ne.isBlock();
+        return prevBlock && nextBlock;
+    }
 
-            Book epub = new EpubReader().readEpub(in);
-            System.out.println("[EPUB] 成功读取 EPUB: " + epub.getTitle());
+    // ------------------------------ 包结构（OPF / NCX） ------------------------------
 
-            // 1) 导出所有资源（图片）
-            int imgCount = 0;
-            for (Resource r : epub.getResources().getAll()) {
-                String href = r.getHref();
-                if (href == null) continue;
-                String lower = href.toLowerCase();
-                if (lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png")
-                        || lower.endsWith(".gif") || lower.endsWith(".bmp") || lower.endsWith(".webp")) {
+    /**
+     * OPF 中解析出的目录信息，路径均为 zip 内的完整路径
+     */
+    private static class Package {
+        String title;
+        final List<String> spine = new ArrayList<>();
+        final Map<String, String> href2title = new HashMap<>();
+        String coverPath;
+    }
 
-                    // 所有图片统一导出到 Images/ 下
-                    String outPath = "Images/" + new File(href).getName();
-                    File outFile = new File(staticImgDir, outPath.replace("/", File.separator));
-                    File parent = outFile.getParentFile();
-                    if (parent != null && !parent.exists()) parent.mkdirs();
-
-                    try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                        fos.write(r.getData());
-                        imgCount++;
-                        System.out.println("[EPUB] 导出图片: " + outFile.getAbsolutePath());
-                    } catch (Exception e) {
-                        System.out.println("[EPUB] 导出图片失败: " + outFile.getAbsolutePath() + " -> " + e.getMessage());
-                    }
-                }
+    private static Package readPackage(ZipFile zip) throws IOException {
+        Package pkg = new Package();
+
+        // container.xml -> OPF 路径
+        ZipEntry containerEntry = zip.getEntry("META-INF/container.xml");
+        if (containerEntry == null) throw new IOException("[EPUB] 缺少 META-INF/container.xml");
+        Element rootfile = first(parseXml(zip, containerEntry), "rootfile");
+        if (rootfile == null || rootfile.attr("full-path").isEmpty()) throw new IOException("[EPUB] container.xml 未指定 OPF");
+        String opfPath = normalizePath(rootfile.attr("full-path"));
+        ZipEntry opfEntry = zip.getEntry(opfPath);
+        if (opfEntry == null) throw new IOException("[EPUB] OPF 不存在: " + opfPath);
+        Document opf = parseXml(zip, opfEntry);
+
+        Element title = first(opf, "title");
+        pkg.title = title == null ? "" : title.text();
+
+        // manifest：id -> 完整路径
+        Map<String, String> id2path = new HashMap<>();
+        String navPath = null;
+        for (Element item : byLocalName(opf, "item")) {
+            String path = resolveHref(opfPath, item.attr("href"));
+            id2path.put(item.attr("id"), path);
+            String properties = item.attr("properties");
+            if (properties.contains("cover-image")) pkg.coverPath = path;
+            if (properties.contains("nav")) navPath = path;
+        }
+        for (Element meta : byLocalName(opf, "meta")) {
+            if ("cover".equals(meta.attr("name")) && id2path.containsKey(meta.attr("content"))) {
+                pkg.coverPath = id2path.get(meta.attr("content"));
             }
-            System.out.println("[EPUB] 共导出图片: " + imgCount);
+        }
 
+        // spine
+        Element spine = first(opf, "spine");
+        for (Element itemref : byLocalName(opf, "itemref")) {
+            String path = id2path.get(itemref.attr("idref"));
+            if (path != null) pkg.spine.add(path);
+        }
 
-            // 2) 构建 TOC href -> title 映射
-            Map<String, String> href2title = new HashMap<>();
-            buildHrefTitleMap(epub.getTableOfContents().getTocReferences(), href2title);
-            Map<String, String> normalizedHref2Title = new HashMap<>();
-            for (Map.Entry<String, String> e : href2title.entrySet()) {
-                normalizedHref2Title.put(normalizePath(e.getKey()), e.getValue());
+        // 目录：优先 EPUB2 的 NCX，没有再读 EPUB3 的 nav 文档
+        String ncxPath = spine == null ? null : id2path.get(spine.attr("toc"));
+        ZipEntry ncxEntry = ncxPath == null ? null : zip.getEntry(ncxPath);
+        if (ncxEntry != null) {
+            Document ncx = parseXml(zip, ncxEntry);
+            Element navMap = first(ncx, "navMap");
+            if (navMap != null) readNavPoints(navMap, ncxPath, pkg.href2title);
+        } else if (navPath != null && zip.getEntry(navPath) != null) {
+            Document nav = Jsoup.parse(readText(zip, zip.getEntry(navPath)));
+            for (Element a : nav.select("nav a[href]")) {
+                String text = a.text().trim();
+                if (!text.isEmpty()) pkg.href2title.put(resolveHref(navPath, a.attr("href")), text);
             }
+        }
+        return pkg;
+    }
 
-            // 3) 处理 spine（章节）
-            int order = 1;
-            boolean skipFirstSpine = true; // 跳过第一章（封面）
-            for (SpineReference spRef : epub.getSpine().getSpineReferences()) {
-                if (spRef.getResource() == null) continue;
+    // 先序遍历 navPoint：子目录指向同一文件时以子目录标题为准
+    private static void readNavPoints(Element parent, String ncxPath, Map<String, String> map) {
+        for (Element navPoint : parent.children()) {
+            if (!localName(navPoint).equals("navPoint")) continue;
+            Element label = first(navPoint, "text");
+            Element content = first(navPoint, "content");
+            String text = label == null ? "" : label.text();
+            if (content != null && !text.isBlank() && !content.attr("src").isBlank()) {
+                map.put(resolveHref(ncxPath, content.attr("src")), text);
+            }
+            readNavPoints(navPoint, ncxPath, map);
+        }
+    }
 
-                if (skipFirstSpine) {
-                    skipFirstSpine = false;
-                    continue;
+    // ------------------------------ 资源读取 ------------------------------
+
+    /**
+     * 图片导出：先扫一遍中央目录为每张图登记一个待完成的 URL，再由后台线程逐个读出交给 ImageStore；
+     * 读取线程受在途数量限制，章节解码不必等全部图片读完
+     */
+    private static final class ImageExport implements AutoCloseable {
+        final Map<String, CompletableFuture<String>> byPath = new LinkedHashMap<>();
+        final Map<String, CompletableFuture<String>> byName = new HashMap<>();
+        private final Thread reader;
+
+        private ImageExport(ZipFile zip, ImageStore imageStore) {
+            Map<ZipEntry, CompletableFuture<String>> todo = new LinkedHashMap<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String lower = entry.getName().toLowerCase();
+                if (entry.isDirectory()) continue;
+                if (lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png")
+                        || lower.endsWith(".gif") || lower.endsWith(".bmp") || lower.endsWith(".webp")) {
+                    CompletableFuture<String> url = new CompletableFuture<>();
+                    String path = normalizePath(entry.getName());
+                    byPath.put(path, url);
+                    byName.putIfAbsent(new File(path).getName(), url);
+                    todo.put(entry, url);
                 }
+            }
+            reader = new Thread(() -> read(zip, imageStore, todo), "epub-images");
+            reader.setDaemon(true);
+        }
 
-                Resource res = spRef.getResource();
-                String href = res.getHref();
-                String normalizedHref = normalizePath(href);
-                String encoding = res.getInputEncoding() == null ? Charset.forName("UTF-8").name() : res.getInputEncoding();
-                String rawHtml = new String(res.getData(), encoding);
-
-                Document doc = Jsoup.parse(rawHtml);
-
-                // 替换 img src
-                for (Element img : doc.select("img")) {
-                    String src = img.attr("src");
-                    if (src == null || src.trim().isEmpty()) continue;
-                    String lowSrc = src.toLowerCase();
-                    if (lowSrc.startsWith("http://") || lowSrc.startsWith("https://") || lowSrc.startsWith("data:")) continue;
-                    String fileName = new File(src).getName();
-                    String newWebPath = webBase + "Images/" + fileName;
-                    img.attr("src", newWebPath);
-                }
+        static ImageExport start(ZipFile zip, ImageStore imageStore) {
+            ImageExport export = new ImageExport(zip, imageStore);
+            export.reader.start();
+            return export;
+        }
 
-                // 获取章节标题
-                String title = normalizedHref2Title.get(normalizedHref);
-                if (title == null || title.trim().isEmpty()) {
-                    String htmlTitle = doc.title();
-                    if (htmlTitle != null && !htmlTitle.trim().isEmpty()) title = htmlTitle.trim();
-                    else {
-                        Element h1 = doc.selectFirst("h1");
-                        if (h1 != null && !h1.text().trim().isEmpty()) title = h1.text().trim();
+        private static void read(ZipFile zip, ImageStore imageStore, Map<ZipEntry, CompletableFuture<String>> todo) {
+            // 限制在途图片数，避免写盘慢时整本书的图片都堆在内存里
+            Semaphore pending = new Semaphore(MAX_PENDING_IMAGES);
+            try {
+                for (Map.Entry<ZipEntry, CompletableFuture<String>> e : todo.entrySet()) {
+                    String href = e.getKey().getName();
+                    CompletableFuture<String> url = e.getValue();
+                    pending.acquire();
+                    byte[] data;
+                    try (InputStream in = zip.getInputStream(e.getKey())) {
+                        data = in.readAllBytes();
+                    } catch (IOException ex) {
+                        pending.release();
+                        System.out.println("[EPUB] 导出图片失败: " + href + " -> " + ex.getMessage());
+                        url.complete(null);
+                        continue;
                     }
+                    String lower = href.toLowerCase();
+                    imageStore.store(data, lower.substring(lower.lastIndexOf('.') + 1)).whenComplete((u, ex) -> {
+                        pending.release();
+                        if (ex != null) System.out.println("[EPUB] 导出图片失败: " + href + " -> " + ex.getMessage());
+                        url.complete(ex == null ? u : null);
+                    });
                 }
-                if (title == null || title.trim().isEmpty()) title = extractFileName(href);
-
-                BookContent bc = new BookContent();
-                bc.setBookId(bookId);
-                bc.setChapterTitle(title);
-                bc.setChapterContent(doc.html());
-                bc.setChapterOrder(order++);  // 这里保证编号从 1 开始
-                chapters.add(bc);
-
-                System.out.println("[EPUB] 章节 " + (order-1) + ": " + title);
+            } catch (InterruptedException e) {
+                // 章节解析失败时由 close 打断，剩下的图片不再导出
+            } finally {
+                // 没读到的图片按导出失败处理，章节侧等待的 URL 一律能结束
+                todo.values().forEach(url -> url.complete(null));
             }
+        }
 
+        void awaitAll() throws InterruptedException {
+            reader.join();
+            CompletableFuture.allOf(byPath.values().toArray(new CompletableFuture<?>[0])).join();
+        }
 
-            // 4) 处理封面图片（单独 export）
-            if (epub.getCoverImage() != null) {
-                Resource coverRes = epub.getCoverImage();
-                File coverFile = new File(staticImgDir, "Images/cover.jpg");
-                File parent = coverFile.getParentFile();
-                if (parent != null && !parent.exists()) parent.mkdirs();
-                try (FileOutputStream fos = new FileOutputStream(coverFile)) {
-                    fos.write(coverRes.getData());
-                    System.out.println("[EPUB] 导出封面图片: " + coverFile.getAbsolutePath());
+        // 解析中途失败时停止读取，并等读取线程退出后再关闭 ZipFile
+        @Override
+        public void close() {
+            if (!reader.isAlive()) return;
+            reader.interrupt();
+            boolean interrupted = false;
+            while (reader.isAlive()) {
+                try {
+                    reader.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
                 }
             }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
 
-            System.out.println("[EPUB] 共解析章节数: " + chapters.size());
+    // 按 XML 声明里的编码解码，默认 UTF-8
+    private static String readText(ZipFile zip, ZipEntry entry) throws IOException {
+        byte[] data;
+        try (InputStream in = zip.getInputStream(entry)) {
+            data = in.readAllBytes();
         }
+        Charset charset = StandardCharsets.UTF_8;
+        String head = new String(data, 0, Math.min(data.length, 200), StandardCharsets.ISO_8859_1);
+        Matcher m = XML_ENCODING.matcher(head);
+        if (head.startsWith("<?xml") && m.find()) {
+            try {
+                charset = Charset.forName(m.group(1));
+            } catch (Exception ignored) {
+                // 无法识别的编码按 UTF-8 处理
+            }
+        }
+        return new String(data, charset);
+    }
 
-        return chapters;
+    private static Document parseXml(ZipFile zip, ZipEntry entry) throws IOException {
+        return Jsoup.parse(readText(zip, entry), "", Parser.xmlParser());
+    }
+
+    // OPF/NCX 可能带命名空间前缀（如 opf:item），按本地名匹配
+    private static List<Element> byLocalName(Element root, String name) {
+        List<Element> result = new ArrayList<>();
+        for (Element e : root.getAllElements()) {
+            if (localName(e).equals(name)) result.add(e);
+        }
+        return result;
+    }
+
+    private static Element first(Element root, String name) {
+        for (Element e : root.getAllElements()) {
+            if (localName(e).equals(name)) return e;
+        }
+        return null;
+    }
+
+    private static String localName(Element e) {
+        String tag = e.tagName();
+        int colon = tag.indexOf(':');
+        return colon >= 0 ? tag.substring(colon + 1) : tag;
+    }
+
+    private static File toFile(URL url) {
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return new File(url.getPath());
+        }
     }
 
-    // 构建 TOC 映射
-    private static void buildHrefTitleMap(List<TOCReference> refs, Map<String, String> map) {
-        if (refs == null) return;
-        for (TOCReference ref : refs) {
-            if (ref == null) continue;
-            if (ref.getResource() != null && ref.getTitle() != null && !ref.getTitle().isBlank()) {
-                String href = ref.getResource().getHref();
-                if (href != null && !href.isBlank()) map.put(href, ref.getTitle());
+    // ------------------------------ 路径工具 ------------------------------
+
+    // 引用路径相对于所在文件的目录解析（如 Text/ch1.xhtml + ../Images/a.jpg -> Images/a.jpg），并做 URL 解码
+    private static String resolveHref(String baseFile, String href) {
+        int slash = baseFile.lastIndexOf('/');
+        String base = slash >= 0 ? baseFile.substring(0, slash + 1) : "";
+        String decoded = href;
+        if (href.indexOf('%') >= 0) {
+            try {
+                decoded = URLDecoder.decode(href.replace("+", "%2B"), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException ignored) {
+                // 非法转义保持原样
             }
-            if (ref.getChildren() != null && !ref.getChildren().isEmpty()) buildHrefTitleMap(ref.getChildren(), map);
         }
+        return normalizePath(decoded.startsWith("/") ? decoded : base + decoded);
     }
 
     private static String normalizePath(String path) {
@@ -1,6 +1,7 @@
 package com.library.ireaderbackend.Utils;
 import java.util.Date;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -25,26 +26,38 @@ public class JwtUtils {
                 .compact();
     }
 
+    // 解析器线程安全，建一次复用（每次 parserBuilder().build() 都要重新初始化）
+    private static final JwtParser PARSER = Jwts.parserBuilder()
+            .setSigningKey(SECRET_KEY) // 使用SecretKey对象验证
+            .build();
+    private static final String BEARER = "Bearer ";
+
+    // 校验签名和有效期并返回载荷，令牌无效时抛出 JwtException / IllegalArgumentException
+    public Claims parseClaims(String token) {
+        return PARSER.parseClaimsJws(stripBearer(token)).getBody();
+    }
+
     // 从令牌中解析用户ID
     public Long getUserIdFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY) // 使用SecretKey对象验证
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        return Long.parseLong(claims.getSubject());
+        return Long.parseLong(parseClaims(token).getSubject());
     }
 
     // 验证令牌是否有效
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(SECRET_KEY) // 使用SecretKey对象验证
-                    .build()
-                    .parseClaimsJws(token);
+            parseClaims(token);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    // Authorization 头可带或不带 "Bearer " 前缀；空值返回 null
+    public static String stripBearer(String header) {
+        if (header == null) return null;
+        String token = header.regionMatches(true, 0, BEARER, 0, BEARER.length())
+                ? header.substring(BEARER.length()) : header;
+        token = token.trim();
+        return token.isEmpty() ? null : token;
+    }
+}
@@ -1,6 +1,7 @@
 package com.library.ireaderbackend.Utils;
 
 import com.library.ireaderbackend.entity.BookContent;
+import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDDestination;
@@ -13,12 +14,16 @@ import org.apache.pdfbox.text.TextPosition;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 兼容 PDFBox 2.0.x 的 PDF 电子书解析工具类
  * 解决类型转换、方法访问权限问题
+ * 文本提取按页区间分给多个线程并行执行（每个线程独立加载文档）
  */
 public class PdfParser {
 
@@ -29,6 +34,13 @@ public class PdfParser {
     // 最小章节内容长度（过滤空章节）
     private static final int MIN_CHAPTER_CONTENT_LEN = 50;
 
+    // 并行提取线程数（默认 CPU 核数，可用 -Direader.pdf.parallelism 调整，1 表示串行）
+    private static final int PARALLELISM = Integer.getInteger("ireader.pdf.parallelism",
+            Runtime.getRuntime().availableProcessors());
+    // 每个线程至少分到的页数，少于该值时不再拆分
+    private static final int MIN_PAGES_PER_WORKER = 16;
+    private static final ForkJoinPool EXTRACT_POOL = new ForkJoinPool(Math.max(1, PARALLELISM));
+
     /**
      * 解析 PDF 为电子书章节列表
      */
@@ -39,12 +51,24 @@ public class PdfParser {
             PDDocumentOutline outline = doc.getDocumentCatalog().getDocumentOutline();
             if (outline != null && outline.getFirstChild() != null) {
                 System.out.println("[PDF解析] 发现原生目录，按目录层级解析");
-                parseByOutline(doc, outline.getFirstChild(), chapters, bookId, 1);
+                List<OutlineEntry> entries = parseByOutline(doc, outline.getFirstChild());
+                List<int[]> ranges = new ArrayList<>();
+                for (OutlineEntry e : entries) ranges.add(new int[]{e.startPage, e.endPage});
+                List<String> texts = extractRanges(file, doc, ranges, PARALLELISM);
+                for (int i = 0; i < entries.size(); i++) {
+                    OutlineEntry e = entries.get(i);
+                    BookContent chapter = new BookContent();
+                    chapter.setBookId(bookId);
+                    chapter.setChapterTitle(e.title);
+                    chapter.setChapterContent(texts.get(i).trim());
+                    chapter.setChapterOrder(e.order);
+                    chapters.add(chapter);
+                }
             }
             // 2. 无原生目录时，按页面文本正则切分
             else {
                 System.out.println("[PDF解析] 无原生目录，按文本结构正则切分");
-                parseByTextStructure(doc, chapters, bookId);
+                parseByTextStructure(file, doc, chapters, bookId);
             }
             // 3. 过滤无效章节
             filterInvalidChapters(chapters);
@@ -52,73 +76,126 @@ public class PdfParser {
         return chapters;
     }
 
+    /**
+     * 只读目录、不提取正文（懒加载模式）：章节只带标题和页区间，正文在首次阅读时用 extractRanges 按页区间提取
+     * 无原生目录时返回空列表，由调用方回退到 parseEbook
+     */
+    public static List<BookContent> parseOutline(File file, Long bookId) throws IOException {
+        List<BookContent> chapters = new ArrayList<>();
+        try (PDDocument doc = PDDocument.load(file)) {
+            PDDocumentOutline outline = doc.getDocumentCatalog().getDocumentOutline();
+            if (outline == null || outline.getFirstChild() == null) return chapters;
+
+            int order = 1;
+            for (OutlineEntry e : parseByOutline(doc, outline.getFirstChild())) {
+                BookContent chapter = new BookContent();
+                chapter.setBookId(bookId);
+                chapter.setChapterTitle(e.title);
+                chapter.setChapterOrder(order++);
+                chapter.setPageStart(e.startPage);
+                chapter.setPageEnd(e.endPage);
+                chapters.add(chapter);
+            }
+        }
+        return chapters;
+    }
+
     /**
      * 按 PDF 原生目录（Outline）解析（修复类型转换和权限问题）
+     * 用显式栈按先序遍历目录树（不递归，超深/超长目录不会栈溢出），页码通过一次性建立的页索引表查找；
+     * 每个目录项的结束页 = 先序下一项的起始页 - 1，父目录只覆盖到第一个子目录之前，正文不会重复
      */
-    private static void parseByOutline(PDDocument doc, PDOutlineItem outlineItem,
-                                       List<BookContent> chapters, Long bookId, int order) throws IOException {
-        if (outlineItem == null) return;
+    private static List<OutlineEntry> parseByOutline(PDDocument doc, PDOutlineItem first) {
+        Map<COSDictionary, Integer> pageIndex = buildPageIndex(doc);
+        List<OutlineEntry> entries = new ArrayList<>();
+        Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // 序号按先序依次递增（(book_id, chapter_order) 唯一，子目录不能沿用父目录序号）
+        Deque<PDOutlineItem> stack = new ArrayDeque<>();
+        stack.push(first);
+        while (!stack.isEmpty()) {
+            PDOutlineItem item = stack.pop();
+            // 目录链损坏成环时避免死循环（ArrayDeque 不接受 null，空的兄弟 / 子目录不入栈）
+            if (!visited.add(item.getCOSObject())) continue;
+
+            // 先压同级再压子目录，保证子目录先出栈（先序）
+            if (item.getNextSibling() != null) stack.push(item.getNextSibling());
+            if (item.getFirstChild() != null) stack.push(item.getFirstChild());
+
+            int startPageNum = resolveStartPage(item, pageIndex);
+            if (startPageNum <= 0) continue;
+            String chapterTitle = item.getTitle() == null ? "" : item.getTitle().trim();
+            // 注：因 getParent() 非公开，此处简化层级展示（如需多级目录需升级 PDFBox 版本）
+            entries.add(new OutlineEntry(chapterTitle, startPageNum, entries.size() + 1));
+        }
+
+        // 结束页：下一项起始页的前一页（至少等于自身起始页），最后一项到全书末页
+        int totalPages = doc.getNumberOfPages();
+        for (int i = 0; i < entries.size(); i++) {
+            OutlineEntry e = entries.get(i);
+            int end = i + 1 < entries.size() ? entries.get(i + 1).startPage - 1 : totalPages;
+            e.endPage = Math.min(totalPages, Math.max(e.startPage, end));
+            System.out.printf("[PDF解析] 目录章节：%d. %s（第%d-%d页）%n", e.order, e.title, e.startPage, e.endPage);
+        }
+        return entries;
+    }
 
-        // 1. 获取当前目录项对应的页面（修复 PDDestination 类型转换问题）
-        PDDestination destination = outlineItem.getDestination();
+    /**
+     * 目录项对应的起始页码（从 1 开始），无法定位时返回 0
+     */
+    private static int resolveStartPage(PDOutlineItem item, Map<COSDictionary, Integer> pageIndex) {
+        PDDestination destination;
+        try {
+            destination = item.getDestination();
+        } catch (IOException e) {
+            System.out.println("[PDF解析] 获取目录目标页面失败，跳过该目录项：" + e.getMessage());
+            return 0;
+        }
         if (destination == null) {
             // 处理通过动作关联的目录（避免调用 getAction() 导致的权限问题）
-            System.out.println("[PDF解析] 跳过无直接目标的目录项：" + outlineItem.getTitle());
-            return;
+            System.out.println("[PDF解析] 跳过无直接目标的目录项：" + item.getTitle());
+            return 0;
         }
-
         // 确保目标是页面类型（避免类型转换错误）
-        if (!(destination instanceof PDPageDestination)) {
-            System.out.println("[PDF解析] 跳过非页面目标的目录项：" + outlineItem.getTitle());
-            return;
+        if (!(destination instanceof PDPageDestination pageDestination)) {
+            System.out.println("[PDF解析] 跳过非页面目标的目录项：" + item.getTitle());
+            return 0;
         }
-        PDPageDestination pageDestination = (PDPageDestination) destination;
-        PDPage startPage = pageDestination.getPage();
-        if (startPage == null) {
-            System.out.println("[PDF解析] 跳过无效页面的目录项：" + outlineItem.getTitle());
-            return;
+        PDPage page = pageDestination.getPage();
+        if (page != null) {
+            Integer index = pageIndex.get(page.getCOSObject());
+            if (index != null) return index + 1;
+        } else if (pageDestination.getPageNumber() >= 0) {
+            // 以页号而非页面对象指定的目标
+            return pageDestination.getPageNumber() + 1;
         }
+        System.out.println("[PDF解析] 跳过无效页面的目录项：" + item.getTitle());
+        return 0;
+    }
 
-        // 2. 定位章节起始页和结束页
-        int startPageNum = doc.getPages().indexOf(startPage) + 1; // 页码从1开始
-        int endPageNum = getOutlineEndPage(doc, outlineItem);
-
-        // 3. 提取当前章节文本
-        PDFTextStripper stripper = new CustomTextStripper();
-        stripper.setStartPage(startPageNum);
-        stripper.setEndPage(endPageNum);
-        String chapterContent = stripper.getText(doc).trim();
-
-        // 4. 构建章节对象（简化层级计算，避免 getParent() 权限问题）
-        String chapterTitle = outlineItem.getTitle().trim();
-        // 注：因 getParent() 非公开，此处简化层级展示（如需多级目录需升级 PDFBox 版本）
-        BookContent chapter = new BookContent();
-        chapter.setBookId(bookId);
-        chapter.setChapterTitle(chapterTitle);
-        chapter.setChapterContent(chapterContent);
-        chapter.setChapterOrder(order);
-        chapters.add(chapter);
-        System.out.printf("[PDF解析] 目录章节：%d. %s（第%d-%d页）%n", order, chapterTitle, startPageNum, endPageNum);
-
-        // 5. 递归处理子目录和同级目录
-        parseByOutline(doc, outlineItem.getFirstChild(), chapters, bookId, order);
-        parseByOutline(doc, outlineItem.getNextSibling(), chapters, bookId, order + 1);
+    /**
+     * 一次遍历页树，建立 页面对象 -> 页序号（从 0 开始）的索引，代替每个目录项都调用 getPages().indexOf()
+     */
+    private static Map<COSDictionary, Integer> buildPageIndex(PDDocument doc) {
+        Map<COSDictionary, Integer> index = new IdentityHashMap<>();
+        int i = 0;
+        for (PDPage page : doc.getPages()) {
+            index.putIfAbsent(page.getCOSObject(), i++);
+        }
+        return index;
     }
 
     /**
      * 按文本结构正则切分（无目录时使用）
      */
-    private static void parseByTextStructure(PDDocument doc, List<BookContent> chapters, Long bookId) throws IOException {
-        PDFTextStripper stripper = new CustomTextStripper();
-        stripper.setSortByPosition(true); // 按位置排序，避免文本乱序
-
-        // 逐页提取文本
-        StringBuilder fullText = new StringBuilder();
+    private static void parseByTextStructure(File file, PDDocument doc, List<BookContent> chapters, Long bookId) throws IOException {
+        // 逐页提取文本（按页区间分给多个线程，结果按页序合并）
         int totalPages = doc.getNumberOfPages();
-        for (int pageNum = 1; pageNum <= totalPages; pageNum++) {
-            stripper.setStartPage(pageNum);
-            stripper.setEndPage(pageNum);
-            fullText.append(stripper.getText(doc)).append("\n");
+        List<int[]> pages = new ArrayList<>(totalPages);
+        for (int pageNum = 1; pageNum <= totalPages; pageNum++) pages.add(new int[]{pageNum, pageNum});
+        StringBuilder fullText = new StringBuilder();
+        for (String pageText : extractRanges(file, doc, pages, PARALLELISM)) {
+            fullText.append(pageText).append("\n");
         }
 
         // 按行分割并匹配章节标题
@@ -151,29 +228,101 @@ public class PdfParser {
         }
     }
 
-    // ------------------------------ 工具方法（修复权限和类型问题） ------------------------------
+    // ------------------------------ 并行文本提取 ------------------------------
 
     /**
-     * 获取目录项的结束页码（避免依赖 getNextSibling() 的复杂逻辑）
+     * 按页区间提取文本，返回顺序与 ranges 一致（页码从 1 开始，闭区间）
+     * PDDocument 不是线程安全的：区间按页数均分成若干组，每组由一个线程独占加载一份文档处理
      */
-    private static int getOutlineEndPage(PDDocument doc, PDOutlineItem currentItem) {
-        PDOutlineItem nextSibling = currentItem.getNextSibling();
-        if (nextSibling != null) {
-            try {
-                PDDestination nextDest = nextSibling.getDestination();
-                if (nextDest instanceof PDPageDestination) {
-                    PDPage nextPage = ((PDPageDestination) nextDest).getPage();
-                    if (nextPage != null) {
-                        return doc.getPages().indexOf(nextPage); // 下一页的前一页
-                    }
+    public static List<String> extractRanges(File file, List<int[]> ranges, int parallelism) throws IOException {
+        return extractRanges(file, null, ranges, parallelism);
+    }
+
+    public static List<String> extractRanges(File file, List<int[]> ranges) throws IOException {
+        return extractRanges(file, null, ranges, PARALLELISM);
+    }
+
+    private static List<String> extractRanges(File file, PDDocument loaded, List<int[]> ranges, int parallelism) throws IOException {
+        long start = System.currentTimeMillis();
+        String[] texts = new String[ranges.size()];
+        long totalPages = 0;
+        for (int[] r : ranges) totalPages += Math.max(0, r[1] - r[0] + 1);
+
+        List<int[]> groups = partition(ranges, totalPages, parallelism);
+        if (groups.size() <= 1) {
+            // 页数少或单线程：直接用已加载的文档串行提取
+            if (loaded != null) {
+                extractGroup(loaded, ranges, 0, ranges.size(), texts);
+            } else {
+                try (PDDocument doc = PDDocument.load(file)) {
+                    extractGroup(doc, ranges, 0, ranges.size(), texts);
                 }
-            } catch (IOException e) {
-                System.out.println("[PDF解析] 获取目录目标页面失败，跳过该目录项：" + e.getMessage());
             }
+        } else {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int[] g : groups) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try (PDDocument doc = PDDocument.load(file)) {
+                        extractGroup(doc, ranges, g[0], g[1], texts);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, EXTRACT_POOL));
+            }
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+                throw new IOException("PDF 并行提取失败: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        System.out.printf("[PDF解析] 提取 %d 页文本，%d 个线程，耗时 %d ms%n",
+                totalPages, Math.max(1, groups.size()), System.currentTimeMillis() - start);
+        return Arrays.asList(texts);
+    }
+
+    private static void extractGroup(PDDocument doc, List<int[]> ranges, int from, int to, String[] texts) throws IOException {
+        PDFTextStripper stripper = new CustomTextStripper();
+        for (int i = from; i < to; i++) {
+            int[] r = ranges.get(i);
+            if (r[1] < r[0]) {
+                texts[i] = "";
+                continue;
+            }
+            stripper.setStartPage(r[0]);
+            stripper.setEndPage(r[1]);
+            texts[i] = stripper.getText(doc);
         }
-        return doc.getNumberOfPages(); // 最后一个目录项，结束页为总页数
     }
 
+    /**
+     * 把连续的区间按页数尽量均分成不超过 parallelism 组，返回每组的 [from, to) 下标
+     * 页数太少时不值得再加载一份文档，直接返回一组
+     */
+    private static List<int[]> partition(List<int[]> ranges, long totalPages, int parallelism) {
+        int groupCount = (int) Math.min(Math.min(parallelism, ranges.size()), totalPages / MIN_PAGES_PER_WORKER);
+        List<int[]> groups = new ArrayList<>();
+        if (groupCount <= 1) {
+            groups.add(new int[]{0, ranges.size()});
+            return groups;
+        }
+        long target = (totalPages + groupCount - 1) / groupCount;
+        int from = 0;
+        long acc = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            int[] r = ranges.get(i);
+            acc += Math.max(0, r[1] - r[0] + 1);
+            if (acc >= target && groups.size() < groupCount - 1) {
+                groups.add(new int[]{from, i + 1});
+                from = i + 1;
+                acc = 0;
+            }
+        }
+        if (from < ranges.size()) groups.add(new int[]{from, ranges.size()});
+        return groups;
+    }
+
+    // ------------------------------ 工具方法（修复权限和类型问题） ------------------------------
 
     /**
      * 构建章节对象并添加到列表
@@ -208,6 +357,22 @@ public class PdfParser {
         }
     }
 
+    /**
+     * 目录项对应的章节页区间
+     */
+    private static class OutlineEntry {
+        final String title;
+        final int startPage;
+        int endPage;
+        final int order;
+
+        OutlineEntry(String title, int startPage, int order) {
+            this.title = title;
+            this.startPage = startPage;
+            this.order = order;
+        }
+    }
+
     /**
      * 自定义文本提取器（优化换行和文本顺序）
      */
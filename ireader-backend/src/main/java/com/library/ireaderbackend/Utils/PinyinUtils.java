@@ -0,0 +1,76 @@
+package com.library.ireaderbackend.Utils;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 拼音工具（书名 / 作者联想用）
+ *  - 汉字转无声调小写拼音，ü 写作 v（与拼音输入法一致）；多音字取第一个读音
+ *  - 字母数字按原样（小写）各算一个音节，其余字符忽略
+ *  - pinyin4j 每次转换都要做格式化，较慢；按字缓存结果（常用汉字不过几千个）
+ */
+public class PinyinUtils {
+
+    private static final HanyuPinyinOutputFormat FORMAT = new HanyuPinyinOutputFormat();
+    // 汉字 → 第一个读音；查不到读音的字记为空串
+    private static final Map<Character, String> CACHE = new ConcurrentHashMap<>();
+
+    static {
+        FORMAT.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        FORMAT.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+        FORMAT.setVCharType(HanyuPinyinVCharType.WITH_V);
+    }
+
+    /**
+     * 逐字转拼音音节
+     */
+    public static List<String> syllables(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null) return result;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (CjkTokenizer.isCjk(c)) {
+                String reading = CACHE.computeIfAbsent(c, PinyinUtils::firstReading);
+                if (!reading.isEmpty()) result.add(reading);
+            } else if (Character.isLetterOrDigit(c)) {
+                result.add(String.valueOf(c).toLowerCase(Locale.ROOT));
+            }
+        }
+        return result;
+    }
+
+    private static String firstReading(char c) {
+        try {
+            String[] readings = PinyinHelper.toHanyuPinyinStringArray(c, FORMAT);
+            return readings != null && readings.length > 0 ? readings[0] : "";
+        } catch (BadHanyuPinyinOutputFormatCombination e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 全拼：“一句顶一万句” → yijudingyiwanju
+     */
+    public static String full(String text) {
+        return String.join("", syllables(text));
+    }
+
+    /**
+     * 首字母：“一句顶一万句” → yjdywj
+     */
+    public static String initials(String text) {
+        StringBuilder sb = new StringBuilder();
+        for (String s : syllables(text)) sb.append(s.charAt(0));
+        return sb.toString();
+    }
+}
@@ -2,19 +2,23 @@ package com.library.ireaderbackend.Utils;
 
 import com.library.ireaderbackend.entity.BookContent;
 
-import java.io.*;
-import java.nio.charset.Charset;
-import java.nio.charset.MalformedInputException;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * 更鲁棒的 TXT 解析器，针对你提供的样本（如：第一章 前言：出延津记 / 小节 一 二 三）
  * 功能：
- *  - 自动检测编码（UTF-8 / GB18030 / GBK）
+ *  - 自动检测编码（UTF-8 / GB18030 / GBK），只读开头样本探测一次
+ *  - 单遍流式读取，按章节回调输出（parseTxtStreaming），大文件也只占用单章内存
  *  - 过滤顶部噪声（下载/版权/简介）
  *  - 识别主章节（第X章 ...）
  *  - 将“一 二 三”类识别为章节内小节（插入为小标题）
@@ -42,143 +46,176 @@ public class TxtParser {
     private static final int MIN_CHAPTER_LENGTH = 40; // 章节最小长度，过短将合并
     private static final int FALLBACK_CHARS_PER_CHAPTER = 3000; // 无章节标题时按长度拆分
 
-    public static List<BookContent> parseTxt(Path path, Long bookId) throws IOException {
-        List<String> raw = readFileWithAutoCharset(path);
-        if (raw == null || raw.isEmpty()) throw new IOException("文件内容为空");
-
-        // 标准化行：保留原始换行但把非断行空格统一替换
-        List<String> normalized = new ArrayList<>();
-        for (String line : raw) {
-            if (line == null) line = "";
-            // 把不间断空格与常见干扰字符替换为普通空格（但保留全角缩进 U+3000）
-            line = line.replace('\u00A0', ' ');
-            normalized.add(line);
-        }
-
-        // 过滤顶部冗余直到第一个主章节或正文开始（如果没有主章节，则只过滤明显噪声行）
-        List<String> filtered = filterHeaderNoise(normalized);
-
-        // 切分章节
-        List<BookContent> chapters = splitChapters(filtered);
+    // 流式模式下：一直没有主章节时，序章累计到该长度就先按长度拆分输出，避免整本书驻留内存
+    private static final int PREFACE_FLUSH_CHARS = 100 * FALLBACK_CHARS_PER_CHAPTER;
+    // 流式模式下：单章累计超过该长度时先输出一段（标题加“（续）”）
+    private static final int MAX_CHAPTER_CHARS = 1_000_000;
+    // 编码探测只读取文件开头这么多字节
+    private static final int CHARSET_SAMPLE_BYTES = 64 * 1024;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
 
-        // 如果只剩序章且内容很长，按长度分割以避免只出现一个超长序章
-        if (chapters.size() == 1 && (chapters.get(0).getChapterTitle() == null || "序章".equals(chapters.get(0).getChapterTitle()))) {
-            String body = chapters.get(0).getChapterContent();
-            if (body != null && body.length() > FALLBACK_CHARS_PER_CHAPTER) {
-                chapters = fallbackSplitByLength(body);
-            }
-        }
-
-        // 填充 bookId 与 chapterOrder，修剪内容首尾空白
-        for (int i = 0; i < chapters.size(); i++) {
-            BookContent c = chapters.get(i);
-            c.setBookId(bookId);
-            c.setChapterOrder(i + 1);
-            if (c.getChapterContent() != null) c.setChapterContent(c.getChapterContent().trim());
-            if (c.getChapterTitle() == null || c.getChapterTitle().isBlank()) c.setChapterTitle("第" + (i + 1) + "章");
-        }
+    public static List<BookContent> parseTxt(Path path, Long bookId) throws IOException {
+        List<BookContent> chapters = new ArrayList<>();
+        parseTxtStreaming(path, bookId, chapters::add);
         return chapters;
     }
 
+    /**
+     * 流式解析：编码只探测一次（读开头样本），随后单遍解码整个文件，
+     * 每识别出一个完整章节就交给 sink，内存占用只与单章大小有关
+     * @return 输出的章节数
+     */
+    public static int parseTxtStreaming(Path path, Long bookId, Consumer<BookContent> sink) throws IOException {
+        Charset charset = detectCharset(path);
+        ChapterSplitter splitter = new ChapterSplitter(bookId, sink);
+        forEachLine(path, charset, splitter::accept);
+        int count = splitter.finish();
+        if (count == 0) throw new IOException("文件内容为空");
+        return count;
+    }
+
     // -------------------- 辅助方法 --------------------
 
-    private static List<String> filterHeaderNoise(List<String> lines) {
-        List<String> out = new ArrayList<>();
-        boolean started = false;
-        int i = 0;
-        for (; i < lines.size(); i++) {
-            String t = lines.get(i).trim();
-            // 如果遇到主章节或简介标记，就认为正文开始
-            if (MAIN_CHAPTER_PATTERN.matcher(t).matches() || t.startsWith("【作品简介】") || t.startsWith("第一章") || t.startsWith("第一章")) {
-                started = true;
-                break;
-            }
-            // 如果行包含明显的噪声则跳过
-            if (REDUNDANT.matcher(t).find()) continue;
-            // 跳过空白头部
-            if (t.isEmpty()) continue;
-            // 若到这里说明可能进入正文（但为了保险，我们把这行也当正文）
-            // 但如果尚未发现真正的正文，我们仍继续，直到出现主章节或正文明显开始
-            // 为了兼容不带 meta 的文件，我们允许直接把剩余都当正文
-            // so break and copy all remaining
-            break;
+    /**
+     * 逐行状态机：过滤头部噪声 -> 识别主章节/小节 -> 合并过短章节 -> 输出
+     * 规则与整文件解析一致，只是不再把所有行和章节都攒在内存里
+     */
+    private static class ChapterSplitter {
+        private final Long bookId;
+        private final Consumer<BookContent> sink;
+
+        private boolean started = false;      // 是否已跳过头部噪声
+        private boolean foundMain = false;    // 是否出现过主章节
+        private boolean partMode = false;     // 无主章节的超长序章已改为按长度拆分
+        private String curTitle = "序章";
+        private final List<String> curLines = new ArrayList<>();
+        private long curChars = 0;
+        private int partNo = 0;
+
+        private BookContent pending;          // 最近一个章节：后面的过短章节要合并进来，所以晚一步输出
+        private int emitted = 0;
+
+        ChapterSplitter(Long bookId, Consumer<BookContent> sink) {
+            this.bookId = bookId;
+            this.sink = sink;
         }
-        // copy remaining lines from i to end
-        for (int j = i; j < lines.size(); j++) out.add(lines.get(j));
-        return out;
-    }
 
-    private static List<BookContent> splitChapters(List<String> lines) {
-        List<BookContent> chapters = new ArrayList<>();
-        String curTitle = "序章";
-        List<String> curLines = new ArrayList<>();
-        boolean foundMain = false;
-
-        for (int idx = 0; idx < lines.size(); idx++) {
-            String raw = lines.get(idx);
-            String normalized = raw == null ? "" : raw.replace('\u3000', '\u3000'); // 保留全角空格
-            String trimmed = normalized.trim();
+        void accept(String line) {
+            // 把不间断空格与常见干扰字符替换为普通空格（但保留全角缩进 U+3000）
+            String raw = line.replace('\u00A0', ' ');
+            String trimmed = raw.trim();
+
+            // 过滤顶部冗余直到第一个主章节或正文开始
+            if (!started) {
+                boolean begin = MAIN_CHAPTER_PATTERN.matcher(trimmed).matches()
+                        || trimmed.startsWith("【作品简介】") || trimmed.startsWith("第一章");
+                if (!begin && (REDUNDANT.matcher(trimmed).find() || trimmed.isEmpty())) return;
+                started = true;
+            }
 
             // 主章节检测
             Matcher m = MAIN_CHAPTER_PATTERN.matcher(trimmed);
             if (m.matches()) {
-                // 保存当前章节
-                if (!curLines.isEmpty()) {
-                    String content = formatChapterContent(curLines);
-                    BookContent bc = new BookContent();
-                    bc.setChapterTitle(curTitle);
-                    bc.setChapterContent(content);
-                    chapters.add(bc);
-                    curLines.clear();
-                }
+                if (partMode && !foundMain) flushParts();
+                else if (!curLines.isEmpty()) offer(takeChapter(curTitle));
                 // 构造章节标题（合并主标题与副标题）
                 String main = m.group(1) == null ? trimmed : m.group(1).trim();
                 String sub = (m.groupCount() >= 2 && m.group(2) != null) ? m.group(2).trim() : "";
                 if (!sub.isEmpty()) curTitle = (main + " " + sub).trim();
                 else curTitle = main.isEmpty() ? trimmed : main;
                 foundMain = true;
-                continue; // 跳过该标题行作为正文
+                return; // 跳过该标题行作为正文
             }
 
             // 小节编号识别：把它插入为章节内部小标题（双换行分隔）
-            Matcher s = SECTION_PATTERN.matcher(trimmed);
-            if (s.matches() && foundMain) {
-                // 将小节编号作为独立小标题加入当前章
-                // 先把当前累计段落加入
-                if (!curLines.isEmpty()) {
-                    curLines.add(""); // 保留一个空行以分段
-                }
-                curLines.add(trimmed);
-                curLines.add(""); // 空行后再开始正文
-                continue;
+            if (foundMain && SECTION_PATTERN.matcher(trimmed).matches()) {
+                if (!curLines.isEmpty()) addLine(""); // 保留一个空行以分段
+                addLine(trimmed);
+                addLine(""); // 空行后再开始正文
+                return;
             }
 
             // 普通正文行，保留原始（等会 format 时合并断行）
-            curLines.add(raw);
+            addLine(raw);
+
+            if (!foundMain && emitted == 0 && pending == null && !partMode && curChars > PREFACE_FLUSH_CHARS) {
+                // 到这里还没见到任何章节标题，大概率是无标题的纯文本：改为按长度拆分
+                partMode = true;
+            }
+            if (!foundMain && partMode && curChars > PREFACE_FLUSH_CHARS) {
+                flushParts();
+            } else if (curChars > MAX_CHAPTER_CHARS) {
+                offer(takeChapter(curTitle));
+                curTitle = curTitle.endsWith("（续）") ? curTitle : curTitle + "（续）";
+            }
+        }
+
+        int finish() {
+            // 保存最后一个章节
+            if (!curLines.isEmpty() || !"序章".equals(curTitle)) {
+                if (partMode && !foundMain) flushParts();
+                else offer(takeChapter(curTitle));
+            }
+            if (pending == null) return emitted;
+
+            // 如果只剩序章且内容很长，按长度分割以避免只出现一个超长序章
+            String body = pending.getChapterContent();
+            if (emitted == 0 && (pending.getChapterTitle() == null || "序章".equals(pending.getChapterTitle()))
+                    && body != null && body.length() > FALLBACK_CHARS_PER_CHAPTER) {
+                for (BookContent part : fallbackSplitByLength(body, 0)) emit(part);
+            } else {
+                emit(pending);
+            }
+            pending = null;
+            return emitted;
+        }
+
+        // 无标题纯文本：把已累计的内容按长度拆成“第N部分”
+        private void flushParts() {
+            List<BookContent> parts = fallbackSplitByLength(formatChapterContent(curLines), partNo);
+            partNo += parts.size();
+            clearLines();
+            for (BookContent part : parts) offer(part);
         }
 
-        // 保存最后一个章节
-        if (!curLines.isEmpty() || !"序章".equals(curTitle)) {
-            String content = formatChapterContent(curLines);
+        private BookContent takeChapter(String title) {
             BookContent bc = new BookContent();
-            bc.setChapterTitle(curTitle);
-            bc.setChapterContent(content);
-            chapters.add(bc);
+            bc.setChapterTitle(title);
+            bc.setChapterContent(formatChapterContent(curLines));
+            clearLines();
+            return bc;
         }
 
-        // 如果有太短的章节，尝试合并到上一个
-        List<BookContent> filtered = new ArrayList<>();
-        for (BookContent c : chapters) {
+        // 太短的章节合并到上一章
+        private void offer(BookContent c) {
             String cont = c.getChapterContent() == null ? "" : c.getChapterContent().trim();
-            if (cont.length() < MIN_CHAPTER_LENGTH && !filtered.isEmpty()) {
-                // 合并到上一章
-                BookContent prev = filtered.get(filtered.size() - 1);
-                prev.setChapterContent(prev.getChapterContent() + "\n\n" + cont);
-            } else {
-                filtered.add(c);
+            if (cont.length() < MIN_CHAPTER_LENGTH && pending != null) {
+                pending.setChapterContent(pending.getChapterContent() + "\n\n" + cont);
+                return;
             }
+            if (pending != null) emit(pending);
+            pending = c;
+        }
+
+        // 填充 bookId 与 chapterOrder，修剪内容首尾空白
+        private void emit(BookContent c) {
+            emitted++;
+            c.setBookId(bookId);
+            c.setChapterOrder(emitted);
+            if (c.getChapterContent() != null) c.setChapterContent(c.getChapterContent().trim());
+            if (c.getChapterTitle() == null || c.getChapterTitle().isBlank()) c.setChapterTitle("第" + emitted + "章");
+            sink.accept(c);
+        }
+
+        private void addLine(String line) {
+            curLines.add(line);
+            curChars += line.length() + 1;
+        }
+
+        private void clearLines() {
+            curLines.clear();
+            curChars = 0;
         }
-        return filtered;
     }
 
     /**
@@ -186,83 +223,62 @@ public class TxtParser {
      * 规则：
      *  - 如果行为空 -> 段落边界
      *  - 如果行以两个或以上全角空格（\u3000\u3000）或制表符开头 -> 认为新段落
-     *  - 如果当前行为小节编号（如“一”），已在 splitChapters 中插入为独立行
+     *  - 如果当前行为小节编号（如“一”），已在 ChapterSplitter 中插入为独立行
      *  - 否则将连续的短行合并为同一个段落（中间以空格连接），在遇到句号（。！？）保持自然断句
+     * 单遍线性拼接：段落直接写入输出缓冲区，只用 inPara 记录“当前段落是否未结束”，
+     * 段落之间恰好一个空行，因此不需要回头检查缓冲区结尾，也不需要最后再做正则清理
      */
-    private static String formatChapterContent(List<String> rawLines) {
-        StringBuilder out = new StringBuilder();
-        StringBuilder para = new StringBuilder();
+    static String formatChapterContent(List<String> rawLines) {
+        int estimate = 0;
+        for (String raw : rawLines) estimate += raw == null ? 2 : raw.length() + 2;
+        StringBuilder out = new StringBuilder(estimate);
+        boolean inPara = false;
 
-        for (int i = 0; i < rawLines.size(); i++) {
-            String raw = rawLines.get(i);
+        for (String raw : rawLines) {
             String line = raw == null ? "" : raw;
-
             String trimmed = line.trim();
-            // 如果行是空行 -> 段落结束
+
+            // 如果行是空行 -> 段落结束（多个空行只保留一个）
             if (trimmed.isEmpty()) {
-                if (para.length() > 0) {
-                    out.append(para.toString().trim()).append("\n\n");
-                    para.setLength(0);
-                } else {
-                    // 多个空行只保留一个
-                    if (out.length() > 0 && !out.toString().endsWith("\n\n")) out.append("\n\n");
+                if (inPara) {
+                    out.append("\n\n");
+                    inPara = false;
                 }
                 continue;
             }
 
-            // 如果该行为小节编号（例如 "一"）或看起来像小标题，直接作为独立段落
-            if (SECTION_PATTERN.matcher(trimmed).matches()) {
-                if (para.length() > 0) {
-                    out.append(para.toString().trim()).append("\n\n");
-                    para.setLength(0);
-                }
-                out.append(trimmed).append("\n\n");
-                continue;
-            }
-
-            // 如果该行以全角缩进（两个或更多全角空格）或 tab 开头 -> 新段落
-            if (line.startsWith("\u3000\u3000") || line.startsWith("\t") || line.startsWith("    ")) {
-                if (para.length() > 0) {
-                    out.append(para.toString().trim()).append("\n\n");
-                    para.setLength(0);
-                }
-                // 把缩进去掉再加入
+            // 小节编号（例如 "一"）或以全角缩进 / tab 开头的行 -> 独立段落（缩进去掉）
+            if (line.startsWith("\u3000\u3000") || line.startsWith("\t") || line.startsWith("    ")
+                    || SECTION_PATTERN.matcher(trimmed).matches()) {
+                if (inPara) out.append("\n\n");
                 out.append(trimmed).append("\n\n");
+                inPara = false;
                 continue;
             }
 
             // 否则：普通行，合并到当前段落
-            if (para.length() == 0) {
-                para.append(trimmed);
+            if (!inPara) {
+                out.append(trimmed);
+                inPara = true;
             } else {
-                // 如果上一行以中文句号或问号或感叹号等结尾，倾向于新句；但我们仍保持为同段落（不产生额外空行）
-                char lastChar = para.charAt(para.length() - 1);
+                // 上一行以句末标点结尾时直接相连，否则是断行合并，用空格连接避免单词粘连
+                char lastChar = out.charAt(out.length() - 1);
                 boolean lastEndPunct = (lastChar == '。' || lastChar == '!' || lastChar == '?' || lastChar == '！' || lastChar == '？' || lastChar == '…');
-                if (lastEndPunct) {
-                    // 句子已结束，通常下一行可能为缩进或新句，但不强制新段落：我们在句号处插入换行以提升可读性
-                    para.append(trimmed);
-                } else {
-                    // 断行合并，用空格连接，避免单词粘连
-                    para.append(" ").append(trimmed);
-                }
+                if (!lastEndPunct) out.append(' ');
+                out.append(trimmed);
             }
         }
 
-        // flush last paragraph
-        if (para.length() > 0) {
-            out.append(para.toString().trim());
-        }
-
-        // 清理多余空行
-        String result = out.toString().replaceAll("\\n{3,}", "\n\n").trim();
-        return result;
+        // 去掉末尾的段落分隔
+        if (!inPara && out.length() >= 2) out.setLength(out.length() - 2);
+        return out.toString();
     }
 
-    private static List<BookContent> fallbackSplitByLength(String full) {
+    private static List<BookContent> fallbackSplitByLength(String full, int partsBefore) {
         List<BookContent> out = new ArrayList<>();
         int len = full.length();
         int idx = 0;
-        int part = 1;
+        int part = partsBefore + 1;
         while (idx < len) {
             int end = Math.min(len, idx + FALLBACK_CHARS_PER_CHAPTER);
             // 优先在句号处断开
@@ -280,41 +296,113 @@ public class TxtParser {
     }
 
     // -------------------- 文件读取（自动编码识别） --------------------
-    private static List<String> readFileWithAutoCharset(Path path) throws IOException {
+
+    /**
+     * 只读取文件开头一段样本来判断编码（UTF-8 / GB18030 / GBK），不再整文件反复试读
+     */
+    private static Charset detectCharset(Path path) throws IOException {
+        byte[] sample;
+        boolean wholeFile;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(CHARSET_SAMPLE_BYTES, Math.max(ch.size(), 1)));
+            while (buf.hasRemaining() && ch.read(buf) > 0) {
+                // 读满样本
+            }
+            wholeFile = ch.size() <= buf.position();
+            sample = Arrays.copyOf(buf.array(), buf.position());
+        }
+        if (sample.length == 0) throw new IOException("文件内容为空");
+
         List<Charset> charsets = Arrays.asList(StandardCharsets.UTF_8,
                 Charset.forName("GB18030"),
                 Charset.forName("GBK"));
-
         for (Charset cs : charsets) {
-            try {
-                List<String> lines = readFile(path, cs);
-                if (looksLikeText(lines)) return lines;
-            } catch (MalformedInputException ignored) {
-            }
+            String text = decodeStrict(sample, cs, wholeFile);
+            if (text != null && looksLikeText(text)) return cs;
         }
         throw new IOException("无法识别 TXT 文件编码，请尝试用 UTF-8 或 GBK 保存再导入。");
     }
 
-    private static boolean looksLikeText(List<String> lines) {
+    // 严格解码样本；样本末尾被截断的多字节字符不算错误
+    private static String decodeStrict(byte[] sample, Charset cs, boolean endOfInput) {
+        CharsetDecoder decoder = cs.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer out = CharBuffer.allocate(sample.length + 1);
+        CoderResult r = decoder.decode(ByteBuffer.wrap(sample), out, endOfInput);
+        if (r.isError()) return null;
+        if (endOfInput && decoder.flush(out).isError()) return null;
+        out.flip();
+        return out.toString();
+    }
+
+    private static boolean looksLikeText(String sample) {
         // 简单校验：前 10 行不应包含替代字符（��）或大量控制字符
-        for (int i = 0; i < Math.min(10, lines.size()); i++) {
-            String l = lines.get(i);
-            if (l == null) continue;
+        String[] lines = sample.split("\\r?\\n|\\r", 11);
+        for (int i = 0; i < Math.min(10, lines.length); i++) {
+            String l = lines[i];
             if (l.contains("��") || l.contains("�") || l.contains("??")) return false;
             if (l.matches(".*[\\p{Cntrl}&&[^\\r\\n\\t]].*")) return false;
         }
         return true;
     }
 
-    private static List<String> readFile(Path path, Charset charset) throws IOException {
-        List<String> lines = new ArrayList<>();
-        try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(path.toFile()), charset))) {
-            String line;
-            while ((line = r.readLine()) != null) {
-                if (lines.isEmpty() && line.startsWith("\uFEFF")) line = line.substring(1); // BOM
-                lines.add(line);
+    /**
+     * 通过 FileChannel 单遍解码，按行回调（行尾规则同 BufferedReader.readLine）
+     */
+    private static void forEachLine(Path path, Charset charset, Consumer<String> handler) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        CharBuffer out = CharBuffer.allocate(READ_BUFFER_BYTES);
+        StringBuilder line = new StringBuilder();
+        boolean[] lastCR = {false};
+        boolean[] firstLine = {true};
+
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean eof = false;
+            while (!eof) {
+                eof = ch.read(in) < 0;
+                in.flip();
+                CoderResult r;
+                do {
+                    r = decoder.decode(in, out, eof);
+                    drainLines(out, line, lastCR, firstLine, handler);
+                } while (r.isOverflow());
+                in.compact();
             }
+            while (decoder.flush(out).isOverflow()) drainLines(out, line, lastCR, firstLine, handler);
+            drainLines(out, line, lastCR, firstLine, handler);
+        }
+        if (line.length() > 0) handler.accept(stripBom(line.toString(), firstLine));
+    }
+
+    private static void drainLines(CharBuffer out, StringBuilder line, boolean[] lastCR, boolean[] firstLine,
+                                   Consumer<String> handler) {
+        out.flip();
+        while (out.hasRemaining()) {
+            char c = out.get();
+            if (c == '\n' && lastCR[0]) {
+                lastCR[0] = false;
+                continue;
+            }
+            lastCR[0] = c == '\r';
+            if (c == '\n' || c == '\r') {
+                handler.accept(stripBom(line.toString(), firstLine));
+                line.setLength(0);
+            } else {
+                line.append(c);
+            }
+        }
+        out.clear();
+    }
+
+    private static String stripBom(String line, boolean[] firstLine) {
+        if (firstLine[0]) {
+            firstLine[0] = false;
+            if (line.startsWith("\uFEFF")) return line.substring(1); // BOM
         }
-        return lines;
+        return line;
     }
 }
@@ -1,15 +1,27 @@
 package com.library.ireaderbackend.configuration;
 
 
+import com.library.ireaderbackend.service.ImageStore;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
+    @Autowired
+    private ImageStore imageStore;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         registry.addResourceHandler("/static/book/**")
                 .addResourceLocations("file:D:/桌面/iReader/static/book/");
+        // 内容寻址图片：文件名即内容哈希，内容不会变，允许浏览器/CDN 永久缓存
+        registry.addResourceHandler(ImageStore.WEB_BASE + "**")
+                .addResourceLocations(imageStore.getRoot().toUri().toString())
+                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable());
     }
 }
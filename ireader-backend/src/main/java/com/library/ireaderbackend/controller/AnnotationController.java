@@ -1,6 +1,11 @@
 package com.library.ireaderbackend.controller;
 
+import com.library.ireaderbackend.dto.AnnotationChangesPage;
+import com.library.ireaderbackend.dto.AnnotationSyncRequest;
+import com.library.ireaderbackend.dto.AnnotationSyncResult;
+import com.library.ireaderbackend.dto.HighlightSpan;
 import com.library.ireaderbackend.entity.Annotation;
+import com.library.ireaderbackend.filter.JwtAuthFilter;
 import com.library.ireaderbackend.service.AnnotationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -16,37 +21,80 @@ public class AnnotationController {
     @Autowired
     private AnnotationService annotationService;
 
+    // 以下接口的 userId（参数或请求体）：带令牌时以令牌中的用户为准，可省略，给了必须一致；没带令牌时才用调用方给的
     // 新增
     @PostMapping("/add")
-    public ResponseEntity<?> add(@RequestBody Annotation annotation) {
+    public ResponseEntity<?> add(@RequestBody Annotation annotation,
+                                 @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        annotation.setUserId(JwtAuthFilter.resolveUserId(authUserId, annotation.getUserId()));
         annotationService.addAnnotation(annotation);
         return ResponseEntity.ok(Map.of("success", true, "id", annotation.getId()));
     }
 
+    // 批量同步：一次提交多条新建 / 修改 / 删除（新建带 clientId），返回 clientId → id 映射
+    @PostMapping("/sync")
+    public AnnotationSyncResult sync(@RequestBody AnnotationSyncRequest request,
+                                     @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        request.setUserId(JwtAuthFilter.resolveUserId(authUserId, request.getUserId()));
+        return annotationService.sync(request);
+    }
+
     // 查询某本书所有批注
     @GetMapping("/book/{bookId}")
-    public List<Annotation> getByBook(@PathVariable Long bookId, @RequestParam Long userId) {
-        return annotationService.getAnnotationsByBook(userId, bookId);
+    public List<Annotation> getByBook(@PathVariable Long bookId, @RequestParam(required = false) Long userId,
+                                      @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        return annotationService.getAnnotationsByBook(JwtAuthFilter.resolveUserId(authUserId, userId), bookId);
+    }
+
+    // 增量同步：只返回版本号大于 since 的变更（含 deleted=true 的墓碑）；bookId 不传则返回该用户所有书的变更
+    @GetMapping("/changes")
+    public AnnotationChangesPage changes(@RequestParam(required = false) Long userId,
+                                         @RequestParam(required = false) Long bookId,
+                                         @RequestParam(defaultValue = "0") Long since,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        return annotationService.getChanges(JwtAuthFilter.resolveUserId(authUserId, userId), bookId, since, limit);
     }
 
     // 查询某章节批注
     @GetMapping("/chapter/{bookContentId}")
-    public List<Annotation> getByChapter(@PathVariable Long bookContentId, @RequestParam Long userId) {
-        return annotationService.getAnnotationsByChapter(userId, bookContentId);
+    public List<Annotation> getByChapter(@PathVariable Long bookContentId, @RequestParam(required = false) Long userId,
+                                         @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        return annotationService.getAnnotationsByChapter(JwtAuthFilter.resolveUserId(authUserId, userId), bookContentId);
+    }
+
+    // 查询章节内与偏移范围 [from, to) 重叠的批注（渲染某一页时只取这一页的），from / to 不传表示不限
+    @GetMapping("/chapter/{bookContentId}/range")
+    public List<Annotation> getByRange(@PathVariable Long bookContentId, @RequestParam(required = false) Long userId,
+                                       @RequestParam(required = false) Integer from,
+                                       @RequestParam(required = false) Integer to,
+                                       @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        return annotationService.getAnnotationsInRange(JwtAuthFilter.resolveUserId(authUserId, userId), bookContentId, from, to);
+    }
+
+    // 查询章节内与偏移范围重叠的高亮，同色且重叠 / 首尾相接的合并为一段
+    @GetMapping("/chapter/{bookContentId}/highlights")
+    public List<HighlightSpan> getHighlights(@PathVariable Long bookContentId, @RequestParam(required = false) Long userId,
+                                             @RequestParam(required = false) Integer from,
+                                             @RequestParam(required = false) Integer to,
+                                             @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        return annotationService.getMergedHighlights(JwtAuthFilter.resolveUserId(authUserId, userId), bookContentId, from, to);
     }
 
-    // 删除
+    // 删除（带令牌时只能删自己的批注，别人的不做改动）
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> delete(@PathVariable Long id) {
-        annotationService.deleteAnnotation(id);
+    public ResponseEntity<?> delete(@PathVariable Long id,
+                                    @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        annotationService.deleteAnnotation(id, authUserId);
         return ResponseEntity.ok(Map.of("success", true, "message", "删除成功"));
     }
 
-    // 更新
+    // 更新（同上，带令牌时只能改自己的批注）
     @PutMapping("/{id}")
-    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody Annotation annotation) {
+    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody Annotation annotation,
+                                    @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
         annotation.setId(id);
-        annotationService.updateAnnotation(annotation);
+        annotationService.updateAnnotation(annotation, authUserId);
         return ResponseEntity.ok(Map.of("success", true, "message", "更新成功"));
     }
 }
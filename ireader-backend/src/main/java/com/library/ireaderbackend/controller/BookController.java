@@ -1,12 +1,30 @@
 package com.library.ireaderbackend.controller;
 
+import com.library.ireaderbackend.Utils.ChapterCodec;
+import com.library.ireaderbackend.dto.BookCatalogPage;
+import com.library.ireaderbackend.dto.BookSearchResult;
+import com.library.ireaderbackend.dto.BookSuggestion;
+import com.library.ireaderbackend.dto.CategoryCount;
+import com.library.ireaderbackend.dto.ChapterTocPage;
 import com.library.ireaderbackend.entity.Book;
 import com.library.ireaderbackend.entity.BookContent;
+import com.library.ireaderbackend.filter.JwtAuthFilter;
+import com.library.ireaderbackend.service.BookCatalogService;
 import com.library.ireaderbackend.service.BookContentService;
 import com.library.ireaderbackend.service.BookService;
+import com.library.ireaderbackend.service.BookSuggestService;
+import com.library.ireaderbackend.service.ChapterCache;
+import com.library.ireaderbackend.service.SearchService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -16,6 +34,12 @@ public class BookController {
     private BookService bookService;
     @Autowired
     private BookContentService bookContentService;
+    @Autowired
+    private SearchService searchService;
+    @Autowired
+    private BookSuggestService bookSuggestService;
+    @Autowired
+    private BookCatalogService bookCatalogService;
 
     @GetMapping("/list")
     public List<Book> getBookList(@RequestParam(required = false) String keyword,
@@ -23,11 +47,43 @@ public class BookController {
         return bookService.getBookList(keyword, category);
     }
 
+    // 书目分页：只返回列表列；sort=latest（默认，按上架倒序）或 publish（按出版时间倒序），after 传上一页返回的 nextCursor
+    @GetMapping("/catalog")
+    public BookCatalogPage getCatalog(@RequestParam(required = false) String category,
+                                      @RequestParam(required = false) String keyword,
+                                      @RequestParam(defaultValue = "latest") String sort,
+                                      @RequestParam(required = false) String after,
+                                      @RequestParam(required = false) Integer size) {
+        return bookCatalogService.getCatalog(category, keyword, sort, after, size);
+    }
+
+    // 分类及各分类书籍数（内存缓存，书籍变动时失效）
+    @GetMapping("/categories")
+    public List<CategoryCount> getCategories() {
+        return bookCatalogService.getCategoryCounts();
+    }
+
+    // 输入联想：书名 / 作者前缀，支持全拼和首字母（如 "santi"、"st" 都能联想到《三体》），不查库
+    @GetMapping("/suggest")
+    public List<BookSuggestion> suggest(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return bookSuggestService.suggest(q, limit);
+    }
+
     @GetMapping("/detail/{id}")
     public Book getBookDetail(@PathVariable Long id) {
         return bookService.getBookDetail(id);
     }
 
+    // 书内查找：返回命中章节和章内字符区间（与批注 startOffset/endOffset 同一坐标，可直接高亮）
+    // 私有上传只有上传者本人（按令牌识别）能查，其余情况与书不存在一样返回 404
+    @GetMapping("/{bookId}/search")
+    public ResponseEntity<BookSearchResult> searchInBook(@PathVariable Long bookId, @RequestParam String q,
+                                                         @RequestParam(defaultValue = "200") int limit,
+                                                         @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        BookSearchResult result = searchService.searchInBook(bookId, authUserId, q, limit);
+        return result == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(result);
+    }
+
 
     // 获取章节列表（若 DB 无则解析 epub 并写入）
     @GetMapping("/content/{bookId}")
@@ -35,9 +91,55 @@ public class BookController {
         return bookContentService.getChapters(bookId);
     }
 
+    // 获取目录（只含标题/顺序/长度，按 chapterOrder 游标分页；正文请走 /chapter/{order}）
+    @GetMapping("/content/{bookId}/toc")
+    public ChapterTocPage getToc(@PathVariable Long bookId,
+                                 @RequestParam(required = false) Integer after,
+                                 @RequestParam(required = false) Integer size) throws Exception {
+        return bookContentService.getToc(bookId, after, size);
+    }
+
     // 获取某一章内容（返回 HTML 字符串）
+    // 响应体预先序列化并缓存 gzip 版本；带强 ETag，If-None-Match 命中时返回 304
     @GetMapping("/content/{bookId}/chapter/{order}")
-    public BookContent getChapter(@PathVariable Long bookId, @PathVariable Integer order) {
-        return bookContentService.getChapter(bookId, order);
+    public ResponseEntity<byte[]> getChapter(@PathVariable Long bookId, @PathVariable Integer order,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                             WebRequest request) {
+        ChapterCache.Encoded encoded = bookContentService.getChapterEncoded(bookId, order);
+        if (encoded == null) return ResponseEntity.ok().build();
+
+        // 不同压缩方式是不同的表示，强 ETag 需要区分
+        boolean gzip = ChapterCodec.acceptsGzip(acceptEncoding);
+        String etag = gzip ? encoded.etag().replaceFirst("\"$", "-gz\"") : encoded.etag();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+        }
+
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) return ok.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(encoded.gzip());
+        return ok.body(encoded.json());
+    }
+
+    // 只取某一章正文（text/html）；库里是 gzip 存储且客户端接受 gzip 时原样返回压缩字节，服务端不解压
+    @GetMapping("/content/{bookId}/chapter/{order}/body")
+    public ResponseEntity<byte[]> getChapterBody(@PathVariable Long bookId, @PathVariable Integer order,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        BookContent chapter = bookContentService.getStoredChapter(bookId, order);
+        if (chapter == null) return ResponseEntity.notFound().build();
+
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        boolean gzipStored = ChapterCodec.GZIP.equals(chapter.getContentCodec()) && chapter.getContentBlob() != null;
+        if (gzipStored && ChapterCodec.acceptsGzip(acceptEncoding)) {
+            return ok.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(chapter.getContentBlob());
+        }
+        String html = ChapterCodec.decode(chapter).getChapterContent();
+        return ok.body(html == null ? new byte[0] : html.getBytes(StandardCharsets.UTF_8));
     }
 }
\ No newline at end of file
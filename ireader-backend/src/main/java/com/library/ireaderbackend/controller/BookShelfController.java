@@ -1,16 +1,15 @@
 package com.library.ireaderbackend.controller;
 
-import com.library.ireaderbackend.Utils.EpubParser;
-import com.library.ireaderbackend.Utils.PdfParser;
-import com.library.ireaderbackend.Utils.TxtParser;
+import com.library.ireaderbackend.dto.IngestJob;
+import com.library.ireaderbackend.dto.ShelfPage;
+import com.library.ireaderbackend.dto.ShelfSyncRequest;
+import com.library.ireaderbackend.dto.ShelfSyncResult;
 import com.library.ireaderbackend.entity.Book;
-import com.library.ireaderbackend.entity.BookContent;
-import com.library.ireaderbackend.service.BookContentService;
-import com.library.ireaderbackend.service.BookService;
+import com.library.ireaderbackend.filter.JwtAuthFilter;
+import com.library.ireaderbackend.service.BookIngestService;
 import com.library.ireaderbackend.service.UserBookShelfService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -18,6 +17,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("api/bookshelf")
@@ -26,38 +27,47 @@ public class BookShelfController {
     @Autowired
     private UserBookShelfService userBookShelfService;
     @Autowired
-    private BookService bookService;
-    @Autowired
-    private BookContentService bookContentService;
-    @Autowired
-    private UserBookShelfService userShelfService;
+    private BookIngestService bookIngestService;
+
+    // 以下接口的 userId：带令牌时取令牌中的用户（参数可省略，给了必须一致），没带令牌时才用参数
     // 获取用户书架列表
     @GetMapping("/list")
     public ResponseEntity<List<Book>> getUserBooks(
-            @RequestParam Long userId,
-            @RequestParam(required = false) String keyword) {
-        List<Book> books = userBookShelfService.getBooksByUser(userId, keyword);
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String keyword,
+            @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        List<Book> books = userBookShelfService.getBooksByUser(JwtAuthFilter.resolveUserId(authUserId, userId), keyword);
         return ResponseEntity.ok(books);
     }
 
+    // 书架分页：按加入时间倒序，after 传上一页返回的 nextCursor
+    @GetMapping("/page")
+    public ShelfPage getShelfPage(@RequestParam(required = false) Long userId,
+                                  @RequestParam(required = false) String keyword,
+                                  @RequestParam(required = false) String after,
+                                  @RequestParam(required = false) Integer size,
+                                  @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        return userBookShelfService.getShelfPage(JwtAuthFilter.resolveUserId(authUserId, userId), keyword, after, size);
+    }
+
 //    @PostMapping("/add")
 //    public ResponseEntity<String> addBookToShelf(@RequestParam Long userId, @RequestParam Long bookId) {
 //        userBookShelfService.addBook(userId, bookId);
 //        return ResponseEntity.ok("添加成功");
 //    }
+// 加入书架：一条 INSERT IGNORE 完成（依赖 (user_id, book_id) 唯一键），并发重复点击也只会有一条记录
 @PostMapping("/add")
-public ResponseEntity<String> addBookToShelf(@RequestParam Long userId, @RequestParam Long bookId) {
+public ResponseEntity<String> addBookToShelf(@RequestParam(required = false) Long userId, @RequestParam Long bookId,
+                                             @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+    userId = JwtAuthFilter.resolveUserId(authUserId, userId);
     try {
         if (userId == null || bookId == null) {
             return ResponseEntity.badRequest().body("userId 或 bookId 不能为空");
         }
-        // 先检查是否已存在
-        boolean exists = userBookShelfService.existsByUserIdAndBookId(userId, bookId);
-        if (exists) {
+        if (!userBookShelfService.addBook(userId, bookId)) {
             // 409 表示冲突（资源已存在）
             return ResponseEntity.status(409).body("该书已在您的书架中");
         }
-        userBookShelfService.addBook(userId, bookId);
         return ResponseEntity.ok("添加成功");
     } catch (Exception e) {
         e.printStackTrace();
@@ -65,17 +75,37 @@ public ResponseEntity<String> addBookToShelf(@RequestParam Long userId, @Request
     }
 }
 
+    // 幂等加入：已在书架也返回 200，added 表示这次是否新加入
+    @PutMapping("/item")
+    public Map<String, Object> putBookToShelf(@RequestParam(required = false) Long userId, @RequestParam Long bookId,
+                                              @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        return Map.of("added", userBookShelfService.addBook(JwtAuthFilter.resolveUserId(authUserId, userId), bookId));
+    }
+
+    // 批量同步：{"userId":1,"add":[...],"remove":[...]}，返回实际新加入 / 移除的本数；带令牌时请求体的 userId 可省略
+    @PostMapping("/sync")
+    public ShelfSyncResult syncShelf(@RequestBody ShelfSyncRequest request,
+                                     @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        Long userId = JwtAuthFilter.resolveUserId(authUserId, request.getUserId());
+        return userBookShelfService.sync(userId, request.getAdd(), request.getRemove());
+    }
 
     @DeleteMapping("/remove")
-    public ResponseEntity<String> removeBookFromShelf(@RequestParam Long userId, @RequestParam Long bookId) {
-        userBookShelfService.removeBook(userId, bookId);
+    public ResponseEntity<String> removeBookFromShelf(@RequestParam(required = false) Long userId, @RequestParam Long bookId,
+                                                      @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        userBookShelfService.removeBook(JwtAuthFilter.resolveUserId(authUserId, userId), bookId);
         return ResponseEntity.ok("移除成功");
     }
 
+    /**
+     * 上传书籍：请求线程只负责落盘并提交解析任务，立即返回 jobId；
+     * 解析进度通过 GET /ingest/{jobId} 查询
+     */
     @PostMapping("/uploadAndParse")
-    @Transactional
-    public ResponseEntity<String> uploadAndParse(@RequestParam("file") MultipartFile file,
-                                                 @RequestParam("userId") Long userId) {
+    public ResponseEntity<?> uploadAndParse(@RequestParam("file") MultipartFile file,
+                                            @RequestParam(value = "userId", required = false) Long userId,
+                                            @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        userId = JwtAuthFilter.resolveUserId(authUserId, userId);
         try {
             String filename = file.getOriginalFilename();
             if (filename == null) return ResponseEntity.badRequest().body("文件名为空");
@@ -83,6 +113,10 @@ public ResponseEntity<String> addBookToShelf(@RequestParam Long userId, @Request
             if (!List.of("txt", "epub", "pdf").contains(ext)) {
                 return ResponseEntity.badRequest().body("仅支持 txt / epub / pdf");
             }
+            // 队列已满时直接拒绝，不再落盘
+            if (bookIngestService.isSaturated()) {
+                return ResponseEntity.status(503).header("Retry-After", "30").body("解析队列已满，请稍后重试");
+            }
 
             // 替换原来的 Path baseDir
             Path baseDir = Paths.get(System.getProperty("user.dir"), "uploads", "books");
@@ -90,55 +124,25 @@ public ResponseEntity<String> addBookToShelf(@RequestParam Long userId, @Request
             Path savePath = baseDir.resolve(System.currentTimeMillis() + "_" + filename);
             file.transferTo(savePath.toFile());
 
-
-            Book book = new Book();
-            book.setTitle(stripExtension(filename));
-            book.setAuthor("未知");      // 必须非空
-            book.setCover("");           // 可选
-            book.setCategory("");        // 可选
-            book.setIntro("");           // 可选
-            book.setFilePath(savePath.toAbsolutePath().toString());
-            book.setFileType(ext);
-            book.setIsFree(1);
-            book.setPublisher("");
-            book.setPublishTime(null);
-            book.setIsbn("");
-            book.setBrand("");
-            book.setUploader_id(userId);
-            book.setVisibility("private"); // 或者 "pending"，区分后台审核
-            bookService.save(book);
-
-            // 2. 解析成章节
-            List<BookContent> contents;
-            if ("txt".equals(ext)) {
-                contents = TxtParser.parseTxt(savePath, book.getId());
-            } else if ("pdf".equals(ext)) {
-              //  contents = PdfParser.parsePdf(savePath.toFile(), book.getId());
-                contents = PdfParser.parseEbook(savePath.toFile(), book.getId());
-            } else { // epub
-                // 这里调用 EpubParser。若你的 EpubParser 只接受 classpath resource, 我建议把它改为 File/InputStream 版本。
-                // 假设我们有 parseEpubFile(File, bookId, staticImgDir)
-                String staticImgDir = "ireader/uploads/static/book/" + book.getId();
-                contents = EpubParser.parseEpubFile(savePath.toFile(), book.getId(), staticImgDir);
+            try {
+                IngestJob job = bookIngestService.submit(savePath, filename, ext, userId);
+                return ResponseEntity.accepted().body(job);
+            } catch (RejectedExecutionException e) {
+                Files.deleteIfExists(savePath);
+                return ResponseEntity.status(503).header("Retry-After", "30").body("解析队列已满，请稍后重试");
             }
-
-            // 3. 批量插入 BookContent
-            bookContentService.saveAll(contents);
-
-            // 4. 自动加入用户书架
-            userShelfService.addBook(userId, book.getId());
-
-            return ResponseEntity.ok("上传并解析成功");
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(500).body("上传解析出错：" + e.getMessage());
         }
     }
 
-    private String stripExtension(String name) {
-        if (name == null) return "";
-        int i = name.lastIndexOf('.');
-        return i > 0 ? name.substring(0, i) : name;
+    // 查询上传解析任务状态 / 进度
+    @GetMapping("/ingest/{jobId}")
+    public ResponseEntity<?> getIngestJob(@PathVariable String jobId) {
+        IngestJob job = bookIngestService.getJob(jobId);
+        if (job == null) return ResponseEntity.status(404).body("任务不存在或已过期");
+        return ResponseEntity.ok(job);
     }
 
 }
\ No newline at end of file
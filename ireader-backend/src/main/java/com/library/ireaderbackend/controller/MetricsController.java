@@ -0,0 +1,104 @@
+package com.library.ireaderbackend.controller;
+
+import com.library.ireaderbackend.filter.JwtAuthFilter;
+import com.library.ireaderbackend.service.AnnotationIntervalIndex;
+import com.library.ireaderbackend.service.AnnotationWriteBuffer;
+import com.library.ireaderbackend.service.BookParseCoordinator;
+import com.library.ireaderbackend.service.BookSuggestService;
+import com.library.ireaderbackend.service.ChapterCache;
+import com.library.ireaderbackend.service.ImageStore;
+import com.library.ireaderbackend.service.ReadingProgressService;
+import com.library.ireaderbackend.service.SearchService;
+import com.library.ireaderbackend.service.UserBookShelfService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+// 运行指标（本节点）
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+    @Autowired
+    private BookParseCoordinator bookParseCoordinator;
+    @Autowired
+    private ChapterCache chapterCache;
+    @Autowired
+    private ImageStore imageStore;
+    @Autowired
+    private SearchService searchService;
+    @Autowired
+    private BookSuggestService bookSuggestService;
+    @Autowired
+    private UserBookShelfService userBookShelfService;
+    @Autowired
+    private AnnotationWriteBuffer annotationWriteBuffer;
+    @Autowired
+    private AnnotationIntervalIndex annotationIntervalIndex;
+    @Autowired
+    private ReadingProgressService readingProgressService;
+    @Autowired
+    private JwtAuthFilter jwtAuthFilter;
+
+    // 懒解析单飞统计：实际解析次数、合并等待的调用方数量等
+    @GetMapping("/parse")
+    public Map<String, Object> parse() {
+        return bookParseCoordinator.stats();
+    }
+
+    // 章节缓存：命中/未命中/占用字节
+    @GetMapping("/chapter-cache")
+    public Map<String, Object> chapterCache() {
+        return chapterCache.stats();
+    }
+
+    // 图片库：实际写盘数、去重命中数、节省的字节
+    @GetMapping("/image-store")
+    public Map<String, Object> imageStore() {
+        return imageStore.stats();
+    }
+
+    // 全文索引：段数、文档数、磁盘占用、合并次数、最近一次重建
+    @GetMapping("/search")
+    public Map<String, Object> search() {
+        return searchService.stats();
+    }
+
+    // 输入联想：是否已加载、收录书籍数、前缀键数
+    @GetMapping("/suggest")
+    public Map<String, Object> suggest() {
+        return bookSuggestService.stats();
+    }
+
+    // 书架缓存：缓存的用户数、命中 / 未命中（未命中即一次连表查询）
+    @GetMapping("/shelf-cache")
+    public Map<String, Object> shelfCache() {
+        return userBookShelfService.stats();
+    }
+
+    // 批注写缓冲：待落库条数、累计合并 / 写入条数
+    @GetMapping("/annotation-buffer")
+    public Map<String, Object> annotationBuffer() {
+        return annotationWriteBuffer.stats();
+    }
+
+    // 批注区间索引：缓存的用户数、按章命中 / 未命中（未命中即一次查库建索引）
+    @GetMapping("/annotation-index")
+    public Map<String, Object> annotationIndex() {
+        return annotationIntervalIndex.stats();
+    }
+
+    // 阅读进度：待落库条数、累计上报 / 写入条数（两者之差即被合并掉的上报）
+    @GetMapping("/reading-progress")
+    public Map<String, Object> readingProgress() {
+        return readingProgressService.stats();
+    }
+
+    // 令牌校验：缓存的令牌数、命中（免验签）/ 未命中 / 被拒次数
+    @GetMapping("/auth")
+    public Map<String, Object> auth() {
+        return jwtAuthFilter.stats();
+    }
+}
@@ -0,0 +1,49 @@
+package com.library.ireaderbackend.controller;
+
+import com.library.ireaderbackend.dto.ContinueReadingItem;
+import com.library.ireaderbackend.entity.ReadingProgress;
+import com.library.ireaderbackend.filter.JwtAuthFilter;
+import com.library.ireaderbackend.service.ReadingProgressService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/progress")
+public class ReadingProgressController {
+
+    @Autowired
+    private ReadingProgressService readingProgressService;
+
+    // userId（参数或请求体）：带令牌时以令牌中的用户为准，可省略，给了必须一致；没带令牌时才用调用方给的
+    // 上报阅读进度（翻页时可频繁调用，服务端合并后定时落库）
+    @PostMapping
+    public ResponseEntity<?> report(@RequestBody ReadingProgress progress,
+                                    @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        progress.setUserId(JwtAuthFilter.resolveUserId(authUserId, progress.getUserId()));
+        if (!readingProgressService.report(progress)) {
+            // 待写进度积压到上限（通常是数据库暂时不可用），客户端稍后带最新位置重报即可
+            return ResponseEntity.status(503).header("Retry-After", "5")
+                    .body(Map.of("success", false, "message", "进度暂存已满，请稍后重试"));
+        }
+        return ResponseEntity.ok(Map.of("success", true));
+    }
+
+    // 某本书的阅读进度，没读过返回空
+    @GetMapping
+    public ReadingProgress get(@RequestParam(required = false) Long userId, @RequestParam Long bookId,
+                               @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        return readingProgressService.getProgress(JwtAuthFilter.resolveUserId(authUserId, userId), bookId);
+    }
+
+    // 继续阅读：最近读过的书（含书名、封面和进度），按最近阅读时间倒序
+    @GetMapping("/continue")
+    public List<ContinueReadingItem> continueReading(@RequestParam(required = false) Long userId,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        return readingProgressService.continueReading(JwtAuthFilter.resolveUserId(authUserId, userId), limit);
+    }
+}
@@ -0,0 +1,46 @@
+package com.library.ireaderbackend.controller;
+
+import com.library.ireaderbackend.dto.SearchHit;
+import com.library.ireaderbackend.filter.JwtAuthFilter;
+import com.library.ireaderbackend.service.SearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+// 全文检索
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+    @Autowired
+    private SearchService searchService;
+
+    // 允许触发重建的用户 id（逗号分隔），为空时谁都不能调用
+    @Value("${ireader.admin.user-ids:}")
+    private List<Long> adminUserIds;
+
+    // 按正文检索，返回按相关度排序的 书 / 章节 / 偏移 + 摘要（只含公开书籍）
+    @GetMapping
+    public List<SearchHit> search(@RequestParam String q,
+                                  @RequestParam(defaultValue = "20") int limit) {
+        return searchService.search(q, limit);
+    }
+
+    // 从数据库全量重建索引（后台执行，进度见 /api/metrics/search）；需管理员令牌
+    @PostMapping("/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuild(
+            @RequestAttribute(name = JwtAuthFilter.USER_ID, required = false) Long authUserId) {
+        if (authUserId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("started", false, "message", "未登录"));
+        }
+        if (!adminUserIds.contains(authUserId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("started", false, "message", "无权重建索引"));
+        }
+        boolean started = searchService.rebuildAsync();
+        return ResponseEntity.ok(Map.of("started", started, "message", started ? "已开始重建" : "已有重建在进行"));
+    }
+}
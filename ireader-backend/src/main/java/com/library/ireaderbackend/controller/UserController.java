@@ -1,8 +1,8 @@
 package com.library.ireaderbackend.controller;
 
 import com.library.ireaderbackend.Response.Result;
-import com.library.ireaderbackend.Utils.JwtUtils;
 import com.library.ireaderbackend.dto.UserRegisterDto;
+import com.library.ireaderbackend.filter.JwtAuthFilter;
 import com.library.ireaderbackend.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,8 +13,6 @@ import org.springframework.web.bind.annotation.*;
 public class UserController {
     @Autowired
     private UserService userService;
-    @Autowired
-    private JwtUtils jwtUtils;
 
     // 注册接口
     @PostMapping("/register")
@@ -28,16 +26,13 @@ public class UserController {
         return userService.login(dto.getPhone(), dto.getPassword());
     }
 
-    // 获取当前用户信息（需要登录）
+    // 获取当前用户信息（需要登录）：令牌已由 JwtAuthFilter 校验，用户 id 在请求属性中
     @GetMapping("/info")
     public Result getUserInfo(HttpServletRequest request) {
-        // 从请求头获取令牌
-        String token = request.getHeader("Authorization");
-        if (token == null || !jwtUtils.validateToken(token)) {
+        Long userId = (Long) request.getAttribute(JwtAuthFilter.USER_ID);
+        if (userId == null) {
             return Result.fail("未登录或令牌失效");
         }
-        // 解析用户ID
-        Long userId = jwtUtils.getUserIdFromToken(token);
         return userService.getUserInfo(userId);
     }
 }
\ No newline at end of file
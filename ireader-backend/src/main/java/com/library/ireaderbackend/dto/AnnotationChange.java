@@ -0,0 +1,109 @@
+package com.library.ireaderbackend.dto;
+
+/**
+ * 批注同步中的一项变更
+ *  - 新建：必须带 clientId（客户端临时 id），其余字段同 Annotation
+ *  - 修改 / 删除：带服务端 id；也可以用 clientId 引用同一批次中新建的批注
+ *  - 修改只更新非空字段（textContent、color）
+ */
+public class AnnotationChange {
+    private String clientId;
+    private Long id;
+    private Long bookId;
+    private Long bookContentId;
+    private Integer chapterOrder;
+    private String type;  // BOOKMARK / HIGHLIGHT / NOTE
+    private String textContent;
+    private String color;
+    private String cfi;
+    private Integer startOffset;
+    private Integer endOffset;
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public Long getBookContentId() {
+        return bookContentId;
+    }
+
+    public void setBookContentId(Long bookContentId) {
+        this.bookContentId = bookContentId;
+    }
+
+    public Integer getChapterOrder() {
+        return chapterOrder;
+    }
+
+    public void setChapterOrder(Integer chapterOrder) {
+        this.chapterOrder = chapterOrder;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getTextContent() {
+        return textContent;
+    }
+
+    public void setTextContent(String textContent) {
+        this.textContent = textContent;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public void setColor(String color) {
+        this.color = color;
+    }
+
+    public String getCfi() {
+        return cfi;
+    }
+
+    public void setCfi(String cfi) {
+        this.cfi = cfi;
+    }
+
+    public Integer getStartOffset() {
+        return startOffset;
+    }
+
+    public void setStartOffset(Integer startOffset) {
+        this.startOffset = startOffset;
+    }
+
+    public Integer getEndOffset() {
+        return endOffset;
+    }
+
+    public void setEndOffset(Integer endOffset) {
+        this.endOffset = endOffset;
+    }
+}
@@ -0,0 +1,48 @@
+package com.library.ireaderbackend.dto;
+
+import com.library.ireaderbackend.entity.Annotation;
+
+import java.util.List;
+
+/**
+ * 批注增量同步结果：items 按版本号升序，deleted=true 的为墓碑
+ * cursor 为本页最后一条的版本号（无变更时原样返回 since），下次请求作为 since 传回；hasMore=true 时应继续拉取
+ */
+public class AnnotationChangesPage {
+    private List<Annotation> items;
+    private long cursor;
+    private boolean hasMore;
+
+    public AnnotationChangesPage() {
+    }
+
+    public AnnotationChangesPage(List<Annotation> items, long cursor, boolean hasMore) {
+        this.items = items;
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<Annotation> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Annotation> items) {
+        this.items = items;
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(long cursor) {
+        this.cursor = cursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,45 @@
+package com.library.ireaderbackend.dto;
+
+import java.util.List;
+
+/**
+ * 批注批量同步请求：一次提交多条新建 / 修改 / 删除，服务端在一个事务中按 JDBC batch 执行
+ */
+public class AnnotationSyncRequest {
+    private Long userId;
+    private List<AnnotationChange> creates;
+    private List<AnnotationChange> updates;
+    private List<AnnotationChange> deletes;
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public List<AnnotationChange> getCreates() {
+        return creates;
+    }
+
+    public void setCreates(List<AnnotationChange> creates) {
+        this.creates = creates;
+    }
+
+    public List<AnnotationChange> getUpdates() {
+        return updates;
+    }
+
+    public void setUpdates(List<AnnotationChange> updates) {
+        this.updates = updates;
+    }
+
+    public List<AnnotationChange> getDeletes() {
+        return deletes;
+    }
+
+    public void setDeletes(List<AnnotationChange> deletes) {
+        this.deletes = deletes;
+    }
+}
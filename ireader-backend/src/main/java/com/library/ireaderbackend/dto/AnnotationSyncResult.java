@@ -0,0 +1,69 @@
+package com.library.ireaderbackend.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批注批量同步结果
+ * idMap：clientId → 服务端 id（同一批次中新建后又删除的，对应 null）
+ * created / updated / deleted：实际生效的各类操作条数（同批次内合并后、按影响行数计；开启写缓冲时 updated 为进入缓冲的条数）
+ * rejectedIds：没有生效的修改 / 删除的 id（批注不存在、不属于该用户或已删除）
+ */
+public class AnnotationSyncResult {
+    private Map<String, Long> idMap;
+    private int created;
+    private int updated;
+    private int deleted;
+    private List<Long> rejectedIds;
+
+    public AnnotationSyncResult() {
+    }
+
+    public AnnotationSyncResult(Map<String, Long> idMap, int created, int updated, int deleted, List<Long> rejectedIds) {
+        this.idMap = idMap;
+        this.created = created;
+        this.updated = updated;
+        this.deleted = deleted;
+        this.rejectedIds = rejectedIds;
+    }
+
+    public Map<String, Long> getIdMap() {
+        return idMap;
+    }
+
+    public void setIdMap(Map<String, Long> idMap) {
+        this.idMap = idMap;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(int updated) {
+        this.updated = updated;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(int deleted) {
+        this.deleted = deleted;
+    }
+
+    public List<Long> getRejectedIds() {
+        return rejectedIds;
+    }
+
+    public void setRejectedIds(List<Long> rejectedIds) {
+        this.rejectedIds = rejectedIds;
+    }
+}
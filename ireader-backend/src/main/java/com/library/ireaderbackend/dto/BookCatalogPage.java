@@ -0,0 +1,46 @@
+package com.library.ireaderbackend.dto;
+
+import java.util.List;
+
+/**
+ * 书目分页结果（游标翻页，不用 OFFSET）
+ * nextCursor 为下一页请求时传入的 after 参数，hasMore=false 时为 null
+ */
+public class BookCatalogPage {
+    private List<BookListItem> items;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public BookCatalogPage() {
+    }
+
+    public BookCatalogPage(List<BookListItem> items, String nextCursor, boolean hasMore) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<BookListItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BookListItem> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
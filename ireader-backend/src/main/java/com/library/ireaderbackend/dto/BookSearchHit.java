@@ -0,0 +1,43 @@
+package com.library.ireaderbackend.dto;
+
+/**
+ * 书内查找命中：章节 + 章内字符区间 [startOffset, endOffset)，坐标与 Annotation.startOffset/endOffset 一致
+ */
+public class BookSearchHit {
+    private Long chapterId;
+    private Integer chapterOrder;
+    private Integer startOffset;
+    private Integer endOffset;
+
+    public Long getChapterId() {
+        return chapterId;
+    }
+
+    public void setChapterId(Long chapterId) {
+        this.chapterId = chapterId;
+    }
+
+    public Integer getChapterOrder() {
+        return chapterOrder;
+    }
+
+    public void setChapterOrder(Integer chapterOrder) {
+        this.chapterOrder = chapterOrder;
+    }
+
+    public Integer getStartOffset() {
+        return startOffset;
+    }
+
+    public void setStartOffset(Integer startOffset) {
+        this.startOffset = startOffset;
+    }
+
+    public Integer getEndOffset() {
+        return endOffset;
+    }
+
+    public void setEndOffset(Integer endOffset) {
+        this.endOffset = endOffset;
+    }
+}
@@ -0,0 +1,45 @@
+package com.library.ireaderbackend.dto;
+
+import java.util.List;
+
+/**
+ * 书内查找结果：total 为全书命中总数，hits 按阅读顺序最多返回 limit 条
+ */
+public class BookSearchResult {
+    private Long bookId;
+    private String query;
+    private Integer total;
+    private List<BookSearchHit> hits;
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public Integer getTotal() {
+        return total;
+    }
+
+    public void setTotal(Integer total) {
+        this.total = total;
+    }
+
+    public List<BookSearchHit> getHits() {
+        return hits;
+    }
+
+    public void setHits(List<BookSearchHit> hits) {
+        this.hits = hits;
+    }
+}
@@ -0,0 +1,53 @@
+package com.library.ireaderbackend.dto;
+
+/**
+ * 搜索联想项：只带列表展示需要的字段
+ */
+public class BookSuggestion {
+    private Long id;
+    private String title;
+    private String author;
+    private String cover;
+
+    public BookSuggestion() {
+    }
+
+    public BookSuggestion(Long id, String title, String author, String cover) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.cover = cover;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+
+    public String getCover() {
+        return cover;
+    }
+
+    public void setCover(String cover) {
+        this.cover = cover;
+    }
+}
@@ -0,0 +1,25 @@
+package com.library.ireaderbackend.dto;
+
+/**
+ * 分类计数（书目筛选栏）
+ */
+public class CategoryCount {
+    private String category;
+    private Long count;
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    public void setCount(Long count) {
+        this.count = count;
+    }
+}
@@ -0,0 +1,46 @@
+package com.library.ireaderbackend.dto;
+
+import java.util.List;
+
+/**
+ * 目录分页结果（按 chapterOrder 游标翻页）
+ * nextAfter 为下一页请求时传入的 after 参数，hasMore=false 时为 null
+ */
+public class ChapterTocPage {
+    private List<ChapterTocItem> items;
+    private Integer nextAfter;
+    private boolean hasMore;
+
+    public ChapterTocPage() {
+    }
+
+    public ChapterTocPage(List<ChapterTocItem> items, Integer nextAfter, boolean hasMore) {
+        this.items = items;
+        this.nextAfter = nextAfter;
+        this.hasMore = hasMore;
+    }
+
+    public List<ChapterTocItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<ChapterTocItem> items) {
+        this.items = items;
+    }
+
+    public Integer getNextAfter() {
+        return nextAfter;
+    }
+
+    public void setNextAfter(Integer nextAfter) {
+        this.nextAfter = nextAfter;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,81 @@
+package com.library.ireaderbackend.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * "继续阅读"列表项：阅读进度与书籍列表列一次连表查出，按最近阅读时间倒序
+ */
+public class ContinueReadingItem {
+    private Long bookId;
+    private String title;
+    private String author;
+    private String cover;
+    private String fileType;
+    private Integer chapterOrder;
+    private Integer chapterOffset;
+    private LocalDateTime updateTime;
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+
+    public String getCover() {
+        return cover;
+    }
+
+    public void setCover(String cover) {
+        this.cover = cover;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public void setFileType(String fileType) {
+        this.fileType = fileType;
+    }
+
+    public Integer getChapterOrder() {
+        return chapterOrder;
+    }
+
+    public void setChapterOrder(Integer chapterOrder) {
+        this.chapterOrder = chapterOrder;
+    }
+
+    public Integer getChapterOffset() {
+        return chapterOffset;
+    }
+
+    public void setChapterOffset(Integer chapterOffset) {
+        this.chapterOffset = chapterOffset;
+    }
+
+    public LocalDateTime getUpdateTime() {
+        return updateTime;
+    }
+
+    public void setUpdateTime(LocalDateTime updateTime) {
+        this.updateTime = updateTime;
+    }
+}
@@ -0,0 +1,56 @@
+package com.library.ireaderbackend.dto;
+
+import java.util.List;
+
+/**
+ * 合并后的高亮区间：同一章节内同色、相互重叠或首尾相接的高亮合成一段，ids 为参与合并的批注 id
+ * 偏移为章节正文中的字符位置，[startOffset, endOffset) 左闭右开
+ */
+public class HighlightSpan {
+    private int startOffset;
+    private int endOffset;
+    private String color;
+    private List<Long> ids;
+
+    public HighlightSpan() {
+    }
+
+    public HighlightSpan(int startOffset, int endOffset, String color, List<Long> ids) {
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.color = color;
+        this.ids = ids;
+    }
+
+    public int getStartOffset() {
+        return startOffset;
+    }
+
+    public void setStartOffset(int startOffset) {
+        this.startOffset = startOffset;
+    }
+
+    public int getEndOffset() {
+        return endOffset;
+    }
+
+    public void setEndOffset(int endOffset) {
+        this.endOffset = endOffset;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public void setColor(String color) {
+        this.color = color;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+}
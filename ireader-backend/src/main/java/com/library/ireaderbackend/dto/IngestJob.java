@@ -0,0 +1,95 @@
+package com.library.ireaderbackend.dto;
+
+/**
+ * 上传解析任务状态（仅保存在接收上传的节点内存中）
+ */
+public class IngestJob {
+
+    public enum Status { QUEUED, PARSING, SAVING, DONE, FAILED }
+
+    private final String jobId;
+    private final Long userId;
+    private final String fileName;
+    private final long createTime = System.currentTimeMillis();
+    private volatile Long bookId;
+    private volatile Status status = Status.QUEUED;
+    private volatile int chapterCount;
+    private volatile String message;
+    private volatile Long finishTime;
+
+    public IngestJob(String jobId, Long userId, String fileName) {
+        this.jobId = jobId;
+        this.userId = userId;
+        this.fileName = fileName;
+    }
+
+    // 粗粒度进度（百分比），按阶段给出
+    public int getProgress() {
+        switch (status) {
+            case QUEUED: return 0;
+            case PARSING: return 10;
+            case SAVING: return 80;
+            default: return 100;
+        }
+    }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getChapterCount() {
+        return chapterCount;
+    }
+
+    public void setChapterCount(int chapterCount) {
+        this.chapterCount = chapterCount;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public Long getFinishTime() {
+        return finishTime;
+    }
+
+    public void setFinishTime(Long finishTime) {
+        this.finishTime = finishTime;
+    }
+}
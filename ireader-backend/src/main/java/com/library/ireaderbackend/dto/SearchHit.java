@@ -0,0 +1,100 @@
+package com.library.ireaderbackend.dto;
+
+/**
+ * 全文检索命中：定位到书 / 章节 / 章节纯文本中的字符偏移，附带命中处前后的摘要
+ */
+public class SearchHit {
+    private Long bookId;
+    private String bookTitle;
+    private Long chapterId;
+    private Integer chapterOrder;
+    private String chapterTitle;
+    // 第一处命中在章节纯文本中的字符偏移
+    private Integer offset;
+    // 本章命中次数
+    private Integer matches;
+    private Double score;
+    private String snippet;
+    // 摘要第一个字符在章节纯文本中的偏移（命中位置 = offset - snippetOffset）
+    private Integer snippetOffset;
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public String getBookTitle() {
+        return bookTitle;
+    }
+
+    public void setBookTitle(String bookTitle) {
+        this.bookTitle = bookTitle;
+    }
+
+    public Long getChapterId() {
+        return chapterId;
+    }
+
+    public void setChapterId(Long chapterId) {
+        this.chapterId = chapterId;
+    }
+
+    public Integer getChapterOrder() {
+        return chapterOrder;
+    }
+
+    public void setChapterOrder(Integer chapterOrder) {
+        this.chapterOrder = chapterOrder;
+    }
+
+    public String getChapterTitle() {
+        return chapterTitle;
+    }
+
+    public void setChapterTitle(String chapterTitle) {
+        this.chapterTitle = chapterTitle;
+    }
+
+    public Integer getOffset() {
+        return offset;
+    }
+
+    public void setOffset(Integer offset) {
+        this.offset = offset;
+    }
+
+    public Integer getMatches() {
+        return matches;
+    }
+
+    public void setMatches(Integer matches) {
+        this.matches = matches;
+    }
+
+    public Double getScore() {
+        return score;
+    }
+
+    public void setScore(Double score) {
+        this.score = score;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+
+    public Integer getSnippetOffset() {
+        return snippetOffset;
+    }
+
+    public void setSnippetOffset(Integer snippetOffset) {
+        this.snippetOffset = snippetOffset;
+    }
+}
@@ -0,0 +1,90 @@
+package com.library.ireaderbackend.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 书架列表项：书架记录与书籍列表列一次连表查出（shelfId 为 user_shelf 主键，用作翻页游标）
+ */
+public class ShelfItem {
+    private Long shelfId;
+    private Long id;
+    private String title;
+    private String author;
+    private String cover;
+    private String category;
+    private String fileType;
+    private Integer isFree;
+    private LocalDateTime addedTime;
+
+    public Long getShelfId() {
+        return shelfId;
+    }
+
+    public void setShelfId(Long shelfId) {
+        this.shelfId = shelfId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+
+    public String getCover() {
+        return cover;
+    }
+
+    public void setCover(String cover) {
+        this.cover = cover;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public void setFileType(String fileType) {
+        this.fileType = fileType;
+    }
+
+    public Integer getIsFree() {
+        return isFree;
+    }
+
+    public void setIsFree(Integer isFree) {
+        this.isFree = isFree;
+    }
+
+    public LocalDateTime getAddedTime() {
+        return addedTime;
+    }
+
+    public void setAddedTime(LocalDateTime addedTime) {
+        this.addedTime = addedTime;
+    }
+}
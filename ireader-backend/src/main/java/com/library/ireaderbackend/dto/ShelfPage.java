@@ -0,0 +1,46 @@
+package com.library.ireaderbackend.dto;
+
+import java.util.List;
+
+/**
+ * 书架分页结果（按加入时间倒序，游标翻页）
+ * nextCursor 为下一页请求时传入的 after 参数，hasMore=false 时为 null
+ */
+public class ShelfPage {
+    private List<ShelfItem> items;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public ShelfPage() {
+    }
+
+    public ShelfPage(List<ShelfItem> items, String nextCursor, boolean hasMore) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<ShelfItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<ShelfItem> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,36 @@
+package com.library.ireaderbackend.dto;
+
+import java.util.List;
+
+/**
+ * 书架批量同步请求：add 中的书加入书架，remove 中的书移出书架（已在 / 不在书架的忽略）
+ */
+public class ShelfSyncRequest {
+    private Long userId;
+    private List<Long> add;
+    private List<Long> remove;
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public List<Long> getAdd() {
+        return add;
+    }
+
+    public void setAdd(List<Long> add) {
+        this.add = add;
+    }
+
+    public List<Long> getRemove() {
+        return remove;
+    }
+
+    public void setRemove(List<Long> remove) {
+        this.remove = remove;
+    }
+}
@@ -0,0 +1,33 @@
+package com.library.ireaderbackend.dto;
+
+/**
+ * 书架批量同步结果：实际新加入 / 移除的本数
+ */
+public class ShelfSyncResult {
+    private int added;
+    private int removed;
+
+    public ShelfSyncResult() {
+    }
+
+    public ShelfSyncResult(int added, int removed) {
+        this.added = added;
+        this.removed = removed;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public void setAdded(int added) {
+        this.added = added;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(int removed) {
+        this.removed = removed;
+    }
+}
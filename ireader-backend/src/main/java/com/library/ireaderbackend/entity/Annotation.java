@@ -112,5 +112,23 @@ public class Annotation {
     private Integer startOffset;
     private Integer endOffset;
     private LocalDateTime createTime;
+    private Long version;        // 用户级变更版本号（增量同步游标）
+    private Boolean deleted;     // 墓碑：已删除，只在增量同步结果中出现
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Boolean getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(Boolean deleted) {
+        this.deleted = deleted;
+    }
 
 }
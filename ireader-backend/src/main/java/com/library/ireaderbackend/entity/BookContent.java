@@ -1,6 +1,7 @@
 package com.library.ireaderbackend.entity;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 public class BookContent {
@@ -9,6 +10,11 @@ public class BookContent {
     private String chapterTitle;
     private String chapterContent;
     private Integer chapterOrder;
+    private Integer contentLength; // 正文字符数，目录接口直接返回，避免读取大字段
+    private Integer pageStart; // PDF 懒加载：章节起止页（从 1 开始），正文为空时按页区间提取
+    private Integer pageEnd;
+    private String contentCodec; // 存储编码：空为明文，gzip 时正文在 contentBlob（见 ChapterCodec）
+    private byte[] contentBlob;
 
     public Long getId() {
         return id;
@@ -49,4 +55,46 @@ public class BookContent {
     public void setChapterOrder(Integer chapterOrder) {
         this.chapterOrder = chapterOrder;
     }
+
+    public Integer getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(Integer contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public Integer getPageStart() {
+        return pageStart;
+    }
+
+    public void setPageStart(Integer pageStart) {
+        this.pageStart = pageStart;
+    }
+
+    public Integer getPageEnd() {
+        return pageEnd;
+    }
+
+    public void setPageEnd(Integer pageEnd) {
+        this.pageEnd = pageEnd;
+    }
+
+    @JsonIgnore
+    public String getContentCodec() {
+        return contentCodec;
+    }
+
+    public void setContentCodec(String contentCodec) {
+        this.contentCodec = contentCodec;
+    }
+
+    @JsonIgnore
+    public byte[] getContentBlob() {
+        return contentBlob;
+    }
+
+    public void setContentBlob(byte[] contentBlob) {
+        this.contentBlob = contentBlob;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.library.ireaderbackend.entity;
+
+import java.time.LocalDateTime;
+
+// 阅读进度：每个用户每本书一条，(user_id, book_id) 为主键
+public class ReadingProgress {
+    private Long userId;
+    private Long bookId;
+    private Integer chapterOrder;
+    private Integer chapterOffset;   // 章节正文内的字符偏移
+    private LocalDateTime updateTime; // 服务端收到上报的时间，较新的覆盖较旧的
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public Integer getChapterOrder() {
+        return chapterOrder;
+    }
+
+    public void setChapterOrder(Integer chapterOrder) {
+        this.chapterOrder = chapterOrder;
+    }
+
+    public Integer getChapterOffset() {
+        return chapterOffset;
+    }
+
+    public void setChapterOffset(Integer chapterOffset) {
+        this.chapterOffset = chapterOffset;
+    }
+
+    public LocalDateTime getUpdateTime() {
+        return updateTime;
+    }
+
+    public void setUpdateTime(LocalDateTime updateTime) {
+        this.updateTime = updateTime;
+    }
+}
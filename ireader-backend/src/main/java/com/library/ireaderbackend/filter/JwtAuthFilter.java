@@ -0,0 +1,187 @@
+package com.library.ireaderbackend.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.library.ireaderbackend.Utils.JwtUtils;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 统一的令牌校验过滤器（/api/**）
+ *  - 每个请求最多验签一次：验过的令牌按其 SHA-256 缓存用户 id，缓存项在令牌过期时（最长 max-ttl-seconds）失效，
+ *    同一令牌的后续请求不再做 HMAC 和 JSON 解析；缓存键是哈希，内存中不留原始令牌
+ *  - 令牌有效时把用户 id 放进请求属性 USER_ID，控制器用 @RequestAttribute 读取，再经 resolveUserId 确定当前用户
+ *  - 令牌有效且请求参数带 userId 时，两者必须一致，否则 403（不能拿自己的令牌查别人的数据）
+ *  - 带了 Authorization 头但令牌无效 / 过期时一律 401（不论 required）
+ *  - ireader.auth.required=true 时没有令牌也 401；默认 false，只对完全不带令牌、仍只传 userId 参数的调用方兼容
+ *  - 登录、注册、CORS 预检不校验
+ */
+@Component
+public class JwtAuthFilter extends OncePerRequestFilter {
+
+    // 请求属性名：已验证的用户 id（Long）
+    public static final String USER_ID = "authUserId";
+    private static final Set<String> OPEN_PATHS = Set.of("/api/user/login", "/api/user/register");
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Value("${ireader.auth.required:false}")
+    private boolean required;
+
+    @Value("${ireader.auth.cache.max-size:100000}")
+    private long cacheMaxSize;
+
+    @Value("${ireader.auth.cache.max-ttl-seconds:600}")
+    private long cacheMaxTtlSeconds;
+
+    // 已验证的令牌：用户 id 与令牌过期时间
+    private record Verified(long userId, long expiresAt) {
+    }
+
+    private Cache<String, Verified> verified;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        long maxTtlMillis = cacheMaxTtlSeconds * 1000;
+        verified = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(Expiry.creating((String k, Verified v) -> Duration.ofMillis(
+                        Math.max(0, Math.min(v.expiresAt() - System.currentTimeMillis(), maxTtlMillis)))))
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith("/api/") || OPEN_PATHS.contains(path) || "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader("Authorization");
+        if (header == null) {
+            if (required) {
+                reject(response, HttpServletResponse.SC_UNAUTHORIZED, "未登录");
+                return;
+            }
+            chain.doFilter(request, response);
+            return;
+        }
+        // 带了令牌就必须有效：无效 / 过期的令牌不能降级成匿名请求，否则配合 userId 参数即可冒充他人
+        String token = JwtUtils.stripBearer(header);
+        Long userId = token == null ? null : authenticate(token);
+        if (userId == null) {
+            reject(response, HttpServletResponse.SC_UNAUTHORIZED, "令牌无效或已过期");
+            return;
+        }
+        String param = request.getParameter("userId");
+        if (param != null && differs(param, userId)) {
+            reject(response, HttpServletResponse.SC_FORBIDDEN, "userId 与登录用户不一致");
+            return;
+        }
+        request.setAttribute(USER_ID, userId);
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * 令牌有效返回用户 id，无效返回 null；命中缓存时不验签
+     */
+    public Long authenticate(String token) {
+        String key = hash(token);
+        Verified v = verified.getIfPresent(key);
+        if (v != null && v.expiresAt() > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return v.userId();
+        }
+        misses.incrementAndGet();
+        try {
+            Claims claims = jwtUtils.parseClaims(token);
+            long userId = Long.parseLong(claims.getSubject());
+            long expiresAt = claims.getExpiration() == null ? Long.MAX_VALUE : claims.getExpiration().getTime();
+            verified.put(key, new Verified(userId, expiresAt));
+            return userId;
+        } catch (JwtException | IllegalArgumentException e) {
+            rejected.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * 控制器确定当前用户：带了有效令牌时以令牌为准，参数 / 请求体里的 userId 只用来校验（不一致 403）；
+     * 完全没带令牌（ireader.auth.required=false 的兼容模式）时才使用调用方给的 userId；带了无效令牌的请求在过滤器里已 401
+     * @param authUserId 请求属性 USER_ID，没有令牌时为 null
+     * @param claimed 参数或请求体中的 userId
+     */
+    public static Long resolveUserId(Long authUserId, Long claimed) {
+        if (authUserId == null) {
+            if (claimed == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "userId 不能为空");
+            return claimed;
+        }
+        if (claimed != null && !claimed.equals(authUserId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "userId 与登录用户不一致");
+        }
+        return authUserId;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("required", required);
+        m.put("cachedTokens", verified.estimatedSize());
+        m.put("hits", hits.get());
+        m.put("misses", misses.get());
+        m.put("rejected", rejected.get());
+        return m;
+    }
+
+    // 参数中的 userId 与令牌不一致；非数字不在这里拦，交给控制器按参数错误处理
+    private static boolean differs(String param, long userId) {
+        try {
+            return Long.parseLong(param.trim()) != userId;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void reject(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write("{\"success\":false,\"message\":\"" + message + "\"}");
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -13,4 +13,29 @@ public interface AnnotationMapper {
     List<Annotation> findByChapter(@Param("userId") Long userId, @Param("bookContentId") Long bookContentId);
     int delete(Long id);
     int update(Annotation annotation);
+
+    int updateForUser(Annotation annotation);
+
+    int deleteForUser(@Param("id") Long id, @Param("userId") Long userId, @Param("version") Long version);
+
+    // 增量同步（版本号游标），bookId 为空时返回该用户所有书的变更
+    List<Annotation> findChangesSince(@Param("userId") Long userId, @Param("bookId") Long bookId,
+                                      @Param("since") long since, @Param("limit") int limit);
+
+    Long findOwner(@Param("id") Long id);
+
+    void allocateVersions(@Param("userId") Long userId, @Param("count") int count);
+
+    long lastInsertId();
+
+    /**
+     * 为用户分配 count 个连续版本号，返回其中最大的一个
+     * 必须在事务内调用：两条语句要落在同一连接上，且版本行锁要持有到提交
+     */
+    default long nextVersions(Long userId, int count) {
+        allocateVersions(userId, count);
+        return lastInsertId();
+    }
+
+    Long findUserVersion(@Param("userId") Long userId);
 }
@@ -1,5 +1,6 @@
 package com.library.ireaderbackend.mapper;
 
+import com.library.ireaderbackend.dto.ChapterTocItem;
 import com.library.ireaderbackend.entity.BookContent;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
@@ -11,7 +12,13 @@ import java.util.List;
 public interface BookContentMapper {
     List<BookContent> findByBookId(@Param("bookId") Long bookId);
     BookContent findByBookIdAndOrder(@Param("bookId") Long bookId, @Param("order") Integer order);
+    // 目录投影：不读取 chapter_content，按 chapter_order 游标分页
+    List<ChapterTocItem> findTocByBookId(@Param("bookId") Long bookId,
+                                         @Param("afterOrder") Integer afterOrder,
+                                         @Param("limit") int limit);
+    int countByBookId(@Param("bookId") Long bookId);
     void insert(BookContent bc);
     void insertBatch(List<BookContent> list);
+    int fillContent(BookContent bc);
     void deleteByBookId(@Param("bookId") Long bookId);
 }
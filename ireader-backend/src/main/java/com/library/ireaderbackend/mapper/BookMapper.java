@@ -1,10 +1,13 @@
 package com.library.ireaderbackend.mapper;
 
+import com.library.ireaderbackend.dto.BookListItem;
+import com.library.ireaderbackend.dto.CategoryCount;
 import com.library.ireaderbackend.entity.Book;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Date;
 import java.util.List;
 
 @Mapper
@@ -21,4 +24,18 @@ public interface BookMapper {
     List<Book> findByIdsAndKeyword(List<Long> bookIds, String keyword);
 
     List<Book> findByIds(List<Long> bookIds);
+
+    // 全部公开书籍 id，全文索引重建用（私有上传不进全站索引）
+    List<Long> findAllIds();
+
+    // 书目分页（列表投影 + 游标），见 BookCatalogService
+    List<BookListItem> findCatalogPage(@Param("category") String category,
+                                       @Param("keyword") String keyword,
+                                       @Param("byPublishTime") boolean byPublishTime,
+                                       @Param("nullPublishTime") boolean nullPublishTime,
+                                       @Param("afterTime") Date afterTime,
+                                       @Param("afterId") Long afterId,
+                                       @Param("limit") int limit);
+
+    List<CategoryCount> countByCategory();
 }
@@ -0,0 +1,29 @@
+package com.library.ireaderbackend.mapper;
+
+import org.apache.ibatis.annotations.*;
+
+/**
+ * 书籍解析租约（多节点共用一个 MySQL 时，保证同一本书同一时刻只有一个节点在解析）
+ */
+@Mapper
+public interface BookParseLeaseMapper {
+
+    // 无记录则插入；已有记录且已过期则抢占；自己持有则续期
+    @Insert("INSERT INTO book_parse_lease(book_id, owner, lease_until) " +
+            "VALUES(#{bookId}, #{owner}, DATE_ADD(NOW(), INTERVAL #{leaseSeconds} SECOND)) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "owner = IF(lease_until < NOW(), VALUES(owner), owner), " +
+            "lease_until = IF(owner = VALUES(owner), VALUES(lease_until), lease_until)")
+    int tryAcquire(@Param("bookId") Long bookId, @Param("owner") String owner, @Param("leaseSeconds") int leaseSeconds);
+
+    // 持有者续期：返回 0 表示租约已不归自己（已过期被他人抢占）
+    @Update("UPDATE book_parse_lease SET lease_until = DATE_ADD(NOW(), INTERVAL #{leaseSeconds} SECOND) " +
+            "WHERE book_id=#{bookId} AND owner=#{owner}")
+    int renew(@Param("bookId") Long bookId, @Param("owner") String owner, @Param("leaseSeconds") int leaseSeconds);
+
+    @Select("SELECT owner FROM book_parse_lease WHERE book_id=#{bookId}")
+    String findOwner(@Param("bookId") Long bookId);
+
+    @Delete("DELETE FROM book_parse_lease WHERE book_id=#{bookId} AND owner=#{owner}")
+    int release(@Param("bookId") Long bookId, @Param("owner") String owner);
+}
@@ -0,0 +1,20 @@
+package com.library.ireaderbackend.mapper;
+
+import com.library.ireaderbackend.dto.ContinueReadingItem;
+import com.library.ireaderbackend.entity.ReadingProgress;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+@Mapper
+public interface ReadingProgressMapper {
+
+    @Select("SELECT * FROM reading_progress WHERE user_id=#{userId} AND book_id=#{bookId}")
+    ReadingProgress findOne(Long userId, Long bookId);
+
+    // 多行 upsert（较新的覆盖较旧的），见 ReadingProgressMapper.xml
+    int upsertBatch(@Param("list") List<ReadingProgress> list);
+
+    // 最近阅读的书（连表书籍），走 (user_id, update_time) 索引
+    List<ContinueReadingItem> findRecent(@Param("userId") Long userId, @Param("limit") int limit);
+}
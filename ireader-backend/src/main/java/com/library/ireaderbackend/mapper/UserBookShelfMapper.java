@@ -1,9 +1,11 @@
 package com.library.ireaderbackend.mapper;
 
+import com.library.ireaderbackend.dto.ShelfItem;
 import com.library.ireaderbackend.entity.Book;
 import com.library.ireaderbackend.entity.UserBookShelf;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Mapper
@@ -12,13 +14,28 @@ public interface UserBookShelfMapper {
     @Select("SELECT * FROM user_shelf WHERE user_id=#{userId}")
     List<UserBookShelf> findByUserId(Long userId);
 
-    @Insert("INSERT INTO user_shelf(user_id, book_id, added_time) VALUES(#{userId}, #{bookId}, NOW())")
-    void addBook(Long userId, Long bookId);
+    // 依赖 (user_id, book_id) 唯一键：已在书架时忽略，返回 1 表示新加入，0 表示原本就在
+    @Insert("INSERT IGNORE INTO user_shelf(user_id, book_id, added_time) VALUES(#{userId}, #{bookId}, NOW())")
+    int addBook(Long userId, Long bookId);
 
     @Delete("DELETE FROM user_shelf WHERE user_id=#{userId} AND book_id=#{bookId}")
-    void removeBook(Long userId, Long bookId);
+    int removeBook(Long userId, Long bookId);
 
     @Select("SELECT COUNT(*) FROM user_shelf WHERE user_id=#{userId} AND book_id=#{bookId}")
     int existsByUserIdAndBookId(Long userId, Long bookId);
+
+    // 书架分页（连表 + 游标），见 UserBookShelfMapper.xml
+    List<ShelfItem> findShelfPage(@Param("userId") Long userId,
+                                  @Param("keyword") String keyword,
+                                  @Param("afterTime") LocalDateTime afterTime,
+                                  @Param("afterId") Long afterId,
+                                  @Param("limit") int limit);
+
+    List<Book> findBooksByUserId(@Param("userId") Long userId, @Param("keyword") String keyword);
+
+    // 批量加入 / 移除，返回实际新增 / 删除的行数
+    int addBooks(@Param("userId") Long userId, @Param("bookIds") List<Long> bookIds);
+
+    int removeBooks(@Param("userId") Long userId, @Param("bookIds") List<Long> bookIds);
 }
 
@@ -0,0 +1,229 @@
+package com.library.ireaderbackend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.library.ireaderbackend.dto.HighlightSpan;
+import com.library.ireaderbackend.entity.Annotation;
+import com.library.ireaderbackend.mapper.AnnotationMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * 批注区间索引：按 (用户, 章节) 懒加载并缓存，渲染某一页时只取落在该页偏移范围内的批注
+ *  - 只收录带 startOffset / endOffset 的批注（按 CFI 定位的 EPUB 批注、书签不在其中，仍走 /chapter 整章查询）
+ *  - 偏移为章节正文中的字符位置，区间左闭右开；零长度的批注按一个字符处理
+ *  - 每章建一棵静态的增强区间树（按起点排序的数组 + 各子树的最大终点），重叠查询 O(log n + k)，结果按起点升序
+ *  - 同时预先合并同色、相互重叠或首尾相接的高亮，供渲染直接使用
+ *  - 按用户缓存（同一用户的各章挂在同一个缓存项下），该用户的批注有任何增删改时整项失效
+ */
+@Component
+public class AnnotationIntervalIndex {
+
+    // 每个用户最多缓存多少章
+    private static final int MAX_CACHED_CHAPTERS = 64;
+    private static final String HIGHLIGHT = "HIGHLIGHT";
+
+    @Autowired
+    private AnnotationMapper annotationMapper;
+
+    @Autowired
+    private AnnotationWriteBuffer writeBuffer;
+
+    @Value("${ireader.annotation.interval-cache.max-users:10000}")
+    private long maxUsers;
+
+    @Value("${ireader.annotation.interval-cache.expire-minutes:30}")
+    private long expireMinutes;
+
+    private Cache<Long, Map<Long, ChapterIntervals>> cache;
+    // 按章节查询计：命中不查库，未命中查一次并建索引
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * 与 [from, to) 重叠的批注，按起点升序；from / to 不传表示不限
+     */
+    public List<Annotation> findOverlapping(Long userId, Long bookContentId, Integer from, Integer to) {
+        List<Annotation> out = new ArrayList<>();
+        chapter(userId, bookContentId).annotations.query(lower(from), upper(to), out);
+        return out;
+    }
+
+    /**
+     * 与 [from, to) 重叠的合并后高亮区间（合并按整章计算，区间可能超出查询范围）
+     */
+    public List<HighlightSpan> findHighlights(Long userId, Long bookContentId, Integer from, Integer to) {
+        List<HighlightSpan> out = new ArrayList<>();
+        chapter(userId, bookContentId).highlights.query(lower(from), upper(to), out);
+        return out;
+    }
+
+    // 在事务中调用时，提交后再失效一次：避免提交前有请求把旧数据重新缓存
+    public void evictUser(Long userId) {
+        if (userId == null) return;
+        cache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(userId);
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("users", cache.estimatedSize());
+        m.put("hitCount", hits.get());
+        m.put("missCount", misses.get());
+        return m;
+    }
+
+    private ChapterIntervals chapter(Long userId, Long bookContentId) {
+        Map<Long, ChapterIntervals> chapters = cache.get(userId, k -> new ConcurrentHashMap<>());
+        ChapterIntervals c = chapters.get(bookContentId);
+        if (c != null) {
+            hits.incrementAndGet();
+            return c;
+        }
+        misses.incrementAndGet();
+        // 查出的是新对象，尚未落库的修改（写缓冲）在建索引前覆盖上去
+        c = build(writeBuffer.overlay(annotationMapper.findByChapter(userId, bookContentId)));
+        if (chapters.size() < MAX_CACHED_CHAPTERS) chapters.put(bookContentId, c);
+        return c;
+    }
+
+    private static int lower(Integer from) {
+        return from == null ? Integer.MIN_VALUE : from;
+    }
+
+    private static int upper(Integer to) {
+        return to == null ? Integer.MAX_VALUE : to;
+    }
+
+    /**
+     * 一章的索引：批注区间树 + 合并后的高亮区间树
+     */
+    static final class ChapterIntervals {
+        final Intervals<Annotation> annotations;
+        final Intervals<HighlightSpan> highlights;
+
+        ChapterIntervals(Intervals<Annotation> annotations, Intervals<HighlightSpan> highlights) {
+            this.annotations = annotations;
+            this.highlights = highlights;
+        }
+    }
+
+    static ChapterIntervals build(List<Annotation> list) {
+        List<Annotation> positioned = new ArrayList<>(list.size());
+        for (Annotation a : list) {
+            Integer s = a.getStartOffset();
+            Integer e = a.getEndOffset();
+            if (s != null && e != null && e >= s) positioned.add(a);
+        }
+        positioned.sort(Comparator.comparingInt(Annotation::getStartOffset)
+                .thenComparingInt(Annotation::getEndOffset)
+                .thenComparing(Annotation::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+        List<HighlightSpan> spans = mergeHighlights(positioned);
+        return new ChapterIntervals(
+                new Intervals<>(positioned, Annotation::getStartOffset, Annotation::getEndOffset),
+                new Intervals<>(spans, HighlightSpan::getStartOffset, HighlightSpan::getEndOffset));
+    }
+
+    // 输入已按起点排序：每种颜色维护一段正在延伸的区间，下一条同色高亮的起点不超过其终点就并入，否则另起一段
+    static List<HighlightSpan> mergeHighlights(List<Annotation> sorted) {
+        Map<String, HighlightSpan> open = new HashMap<>();
+        List<HighlightSpan> spans = new ArrayList<>();
+        for (Annotation a : sorted) {
+            if (!HIGHLIGHT.equalsIgnoreCase(a.getType())) continue;
+            String color = a.getColor() == null ? "" : a.getColor();
+            HighlightSpan span = open.get(color);
+            if (span != null && a.getStartOffset() <= span.getEndOffset()) {
+                span.setEndOffset(Math.max(span.getEndOffset(), a.getEndOffset()));
+                span.getIds().add(a.getId());
+            } else {
+                List<Long> ids = new ArrayList<>();
+                ids.add(a.getId());
+                span = new HighlightSpan(a.getStartOffset(), a.getEndOffset(), a.getColor(), ids);
+                open.put(color, span);
+                spans.add(span);
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * 静态区间树：元素按起点排序存放在数组中，以区间中点为根隐式构成平衡二叉树，
+     * maxEnd[mid] 为以 mid 为根的子树中终点的最大值；建好后只读，可多线程共享
+     */
+    static final class Intervals<T> {
+        private final List<T> items;
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] maxEnd;
+
+        Intervals(List<T> sorted, ToIntFunction<T> start, ToIntFunction<T> end) {
+            int n = sorted.size();
+            items = List.copyOf(sorted);
+            starts = new int[n];
+            ends = new int[n];
+            maxEnd = new int[n];
+            for (int i = 0; i < n; i++) {
+                starts[i] = start.applyAsInt(sorted.get(i));
+                // 零长度按一个字符处理，否则永远不会与任何区间重叠
+                ends[i] = Math.max(end.applyAsInt(sorted.get(i)), starts[i] + 1);
+            }
+            build(0, n - 1);
+        }
+
+        int size() {
+            return items.size();
+        }
+
+        private int build(int lo, int hi) {
+            if (lo > hi) return Integer.MIN_VALUE;
+            int mid = (lo + hi) >>> 1;
+            int max = Math.max(ends[mid], Math.max(build(lo, mid - 1), build(mid + 1, hi)));
+            maxEnd[mid] = max;
+            return max;
+        }
+
+        /**
+         * 与 [from, to) 重叠（start < to 且 end > from）的元素按起点升序加入 out
+         */
+        void query(int from, int to, List<T> out) {
+            query(0, items.size() - 1, from, to, out);
+        }
+
+        private void query(int lo, int hi, int from, int to, List<T> out) {
+            if (lo > hi) return;
+            int mid = (lo + hi) >>> 1;
+            // 整棵子树都在 from 之前结束
+            if (maxEnd[mid] <= from) return;
+            query(lo, mid - 1, from, to, out);
+            // mid 及右子树都从 to 之后开始
+            if (starts[mid] >= to) return;
+            if (ends[mid] > from) out.add(items.get(mid));
+            query(mid + 1, hi, from, to, out);
+        }
+    }
+}
@@ -1,34 +1,242 @@
 package com.library.ireaderbackend.service;
 
+import com.library.ireaderbackend.dto.AnnotationChange;
+import com.library.ireaderbackend.dto.AnnotationChangesPage;
+import com.library.ireaderbackend.dto.AnnotationSyncRequest;
+import com.library.ireaderbackend.dto.AnnotationSyncResult;
+import com.library.ireaderbackend.dto.HighlightSpan;
 import com.library.ireaderbackend.entity.Annotation;
 import com.library.ireaderbackend.mapper.AnnotationMapper;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.sql.Statement;
+import java.util.*;
 
 @Service
 public class AnnotationService {
+
+    private static final int DEFAULT_CHANGES_LIMIT = 500;
+    private static final int MAX_CHANGES_LIMIT = 2000;
+
     @Autowired
     private AnnotationMapper annotationMapper;
 
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private AnnotationWriteBuffer writeBuffer;
+
+    @Autowired
+    private AnnotationIntervalIndex intervalIndex;
+
+    // 写操作都在事务内：版本号分配与写入一起提交，增量同步的客户端不会越过尚未提交的版本
+    @Transactional
     public int addAnnotation(Annotation annotation) {
+        if (annotation.getUserId() == null) throw new RuntimeException("userId 不能为空");
+        annotation.setVersion(annotationMapper.nextVersions(annotation.getUserId(), 1));
+        intervalIndex.evictUser(annotation.getUserId());
         return annotationMapper.insert(annotation);
     }
 
     public List<Annotation> getAnnotationsByBook(Long userId, Long bookId) {
-        return annotationMapper.findByBook(userId, bookId);
+        return writeBuffer.overlay(annotationMapper.findByBook(userId, bookId));
     }
 
     public List<Annotation> getAnnotationsByChapter(Long userId, Long bookContentId) {
-        return annotationMapper.findByChapter(userId, bookContentId);
+        return writeBuffer.overlay(annotationMapper.findByChapter(userId, bookContentId));
     }
 
-    public int deleteAnnotation(Long id) {
-        return annotationMapper.delete(id);
+    /**
+     * 章节内与偏移范围 [from, to) 重叠的批注（只含带偏移的批注），按起点升序
+     */
+    public List<Annotation> getAnnotationsInRange(Long userId, Long bookContentId, Integer from, Integer to) {
+        return intervalIndex.findOverlapping(userId, bookContentId, from, to);
     }
 
-    public int updateAnnotation(Annotation annotation) {
+    /**
+     * 章节内与偏移范围 [from, to) 重叠的高亮，同色且重叠 / 相接的已合并成一段
+     */
+    public List<HighlightSpan> getMergedHighlights(Long userId, Long bookContentId, Integer from, Integer to) {
+        return intervalIndex.findHighlights(userId, bookContentId, from, to);
+    }
+
+    /**
+     * 增量同步：返回版本号大于 since 的变更（含 deleted=true 的墓碑），按版本号升序
+     * 客户端保存返回的 cursor，下次作为 since 传回；since=0 为首次全量（不含墓碑）
+     */
+    public AnnotationChangesPage getChanges(Long userId, Long bookId, Long since, Integer limit) {
+        long from = since == null ? 0 : Math.max(since, 0);
+        int size = limit == null || limit <= 0 ? DEFAULT_CHANGES_LIMIT : Math.min(limit, MAX_CHANGES_LIMIT);
+        // 多取一条用于判断是否还有下一页
+        List<Annotation> items = annotationMapper.findChangesSince(userId, bookId, from, size + 1);
+        boolean hasMore = items.size() > size;
+        if (hasMore) items = items.subList(0, size);
+        long cursor = items.isEmpty() ? from : items.get(items.size() - 1).getVersion();
+        return new AnnotationChangesPage(writeBuffer.overlay(items), cursor, hasMore);
+    }
+
+    /**
+     * 删除改为墓碑：标记 deleted 并占用新版本号
+     * @param userId 当前登录用户；不为空时只能删自己的批注，否则返回 0
+     */
+    @Transactional
+    public int deleteAnnotation(Long id, Long userId) {
+        Long owner = annotationMapper.findOwner(id);
+        if (owner == null || userId != null && !userId.equals(owner)) return 0;
+        writeBuffer.cancel(id);
+        intervalIndex.evictUser(owner);
+        return annotationMapper.deleteForUser(id, owner, annotationMapper.nextVersions(owner, 1));
+    }
+
+    // userId 同 deleteAnnotation：不为空时只能改自己的批注
+    @Transactional
+    public int updateAnnotation(Annotation annotation, Long userId) {
+        // 版本号按批注的归属用户分配（单条修改接口的请求体不一定带 userId）
+        Long owner = annotationMapper.findOwner(annotation.getId());
+        if (owner == null || userId != null && !userId.equals(owner)) return 0;
+        intervalIndex.evictUser(owner);
+        if (writeBuffer.isEnabled()) {
+            annotation.setUserId(owner);
+            writeBuffer.update(annotation);
+            return 1;
+        }
+        annotation.setVersion(annotationMapper.nextVersions(owner, 1));
         return annotationMapper.update(annotation);
     }
+
+    /**
+     * 批量同步：一个事务内按 新建 → 修改 → 删除 的顺序执行，每类操作走 MyBatis BATCH 执行器（驱动合并成批量语句）
+     *  - 同批次内先合并：对本批新建项（按 clientId 引用）的修改直接并入新建，新建后又删除的不再落库
+     *  - 同一条批注在本批中既修改又删除时只执行删除
+     *  - 修改 / 删除都校验 user_id，只能改自己的批注；开启写缓冲时修改进入缓冲，由定时任务落库
+     *  - 返回的 updated / deleted 按批量执行的实际影响行数计，没有生效的（不存在、不属于该用户或已删除）id 放进 rejectedIds
+     */
+    @Transactional
+    public AnnotationSyncResult sync(AnnotationSyncRequest request) {
+        Long userId = request.getUserId();
+        if (userId == null) throw new RuntimeException("userId 不能为空");
+
+        Map<String, Annotation> creates = new LinkedHashMap<>();
+        for (AnnotationChange c : orEmpty(request.getCreates())) {
+            if (c.getClientId() == null) throw new RuntimeException("新建批注缺少 clientId");
+            if (creates.containsKey(c.getClientId())) throw new RuntimeException("clientId 重复: " + c.getClientId());
+            creates.put(c.getClientId(), toAnnotation(c, userId));
+        }
+
+        Map<String, Long> idMap = new LinkedHashMap<>();
+        Set<Long> deletes = new LinkedHashSet<>();
+        for (AnnotationChange d : orEmpty(request.getDeletes())) {
+            if (d.getId() != null) {
+                deletes.add(d.getId());
+            } else if (d.getClientId() != null && creates.remove(d.getClientId()) != null) {
+                idMap.put(d.getClientId(), null);
+            } else {
+                throw new RuntimeException("删除项缺少 id 或 clientId 无对应的新建批注");
+            }
+        }
+
+        Map<Long, Annotation> updates = new LinkedHashMap<>();
+        for (AnnotationChange u : orEmpty(request.getUpdates())) {
+            if (u.getId() != null) {
+                if (deletes.contains(u.getId())) continue;
+                Annotation change = new Annotation();
+                change.setId(u.getId());
+                change.setUserId(userId);
+                change.setTextContent(u.getTextContent());
+                change.setColor(u.getColor());
+                updates.merge(u.getId(), change, AnnotationService::mergeChange);
+            } else if (u.getClientId() != null && idMap.containsKey(u.getClientId())) {
+                // 同批次中已删除的新建项，忽略
+            } else if (u.getClientId() != null && creates.containsKey(u.getClientId())) {
+                Annotation created = creates.get(u.getClientId());
+                if (u.getTextContent() != null) created.setTextContent(u.getTextContent());
+                if (u.getColor() != null) created.setColor(u.getColor());
+            } else {
+                throw new RuntimeException("修改项缺少 id 或 clientId 无对应的新建批注");
+            }
+        }
+
+        // 本批次需要的版本号一次分配：按 新建 → 修改 → 删除 的顺序依次使用
+        boolean buffered = writeBuffer.isEnabled();
+        int count = creates.size() + (buffered ? 0 : updates.size()) + deletes.size();
+        long version = count == 0 ? 0 : annotationMapper.nextVersions(userId, count) - count;
+
+        List<Long> rejectedIds = new ArrayList<>();
+        int updated = buffered ? updates.size() : 0;
+        int deleted;
+        // 外层有 Spring 事务，BATCH 会话与其共用同一连接，由外层统一提交
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            AnnotationMapper mapper = session.getMapper(AnnotationMapper.class);
+            for (Annotation a : creates.values()) {
+                a.setVersion(++version);
+                mapper.insert(a);
+            }
+            // 执行新建的批次，自增 id 回填到对象上
+            session.flushStatements();
+            if (!buffered) {
+                for (Annotation a : updates.values()) {
+                    a.setVersion(++version);
+                    mapper.updateForUser(a);
+                }
+                updated = applied(session.flushStatements(), new ArrayList<>(updates.keySet()), rejectedIds);
+            }
+            for (Long id : deletes) mapper.deleteForUser(id, userId, ++version);
+            deleted = applied(session.flushStatements(), new ArrayList<>(deletes), rejectedIds);
+            session.commit();
+        }
+        if (buffered) updates.values().forEach(writeBuffer::update);
+        intervalIndex.evictUser(userId);
+        // 只撤销确实删掉的批注的缓冲修改（被拒绝的 id 可能属于别的用户）
+        deletes.stream().filter(id -> !rejectedIds.contains(id)).forEach(writeBuffer::cancel);
+
+        creates.forEach((clientId, a) -> idMap.put(clientId, a.getId()));
+        return new AnnotationSyncResult(idMap, creates.size(), updated, deleted, rejectedIds);
+    }
+
+    // 批量结果与提交顺序一一对应：影响 0 行的 id 记入 rejectedIds，返回生效条数
+    private static int applied(List<BatchResult> results, List<Long> ids, List<Long> rejectedIds) {
+        int applied = 0;
+        int i = 0;
+        for (BatchResult r : results) {
+            for (int count : r.getUpdateCounts()) {
+                Long id = ids.get(i++);
+                // 驱动合并执行时可能拿不到逐条行数（SUCCESS_NO_INFO），按生效计
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO) applied++;
+                else rejectedIds.add(id);
+            }
+        }
+        return applied;
+    }
+
+    private static Annotation mergeChange(Annotation old, Annotation neu) {
+        if (neu.getTextContent() != null) old.setTextContent(neu.getTextContent());
+        if (neu.getColor() != null) old.setColor(neu.getColor());
+        return old;
+    }
+
+    private static Annotation toAnnotation(AnnotationChange c, Long userId) {
+        Annotation a = new Annotation();
+        a.setUserId(userId);
+        a.setBookId(c.getBookId());
+        a.setBookContentId(c.getBookContentId());
+        a.setChapterOrder(c.getChapterOrder());
+        a.setType(c.getType());
+        a.setTextContent(c.getTextContent());
+        a.setColor(c.getColor());
+        a.setCfi(c.getCfi());
+        a.setStartOffset(c.getStartOffset());
+        a.setEndOffset(c.getEndOffset());
+        return a;
+    }
+
+    private static List<AnnotationChange> orEmpty(List<AnnotationChange> list) {
+        return list == null ? List.of() : list;
+    }
 }
@@ -0,0 +1,147 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.entity.Annotation;
+import com.library.ireaderbackend.mapper.AnnotationMapper;
+import jakarta.annotation.PreDestroy;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 批注修改写缓冲（ireader.annotation.write-behind.enabled，默认关闭）
+ *  - 对已有批注的修改（改颜色、改笔记）先按 id 合并在内存，连续多次修改同一条只落库最后的结果
+ *  - 定时把缓冲中的修改作为一次 JDBC batch 写入（落库时才分配版本号）；应用关闭前再写一次
+ *  - 查询批注时把尚未落库的修改覆盖到查询结果上，用户看到的总是最新内容
+ *  - 新建和删除不经过缓冲（新建要立即返回 id；删除时丢弃该条的待写修改）
+ *  - 缓冲只在本节点内存中：多节点部署、或进程被强杀时最多丢失一个刷新间隔内的修改
+ */
+@Component
+public class AnnotationWriteBuffer {
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private AnnotationMapper annotationMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${ireader.annotation.write-behind.enabled:false}")
+    private boolean enabled;
+
+    // 批注 id → 待落库的修改；每次合并都生成新对象，落库后按对象身份移除，不会误删期间的新修改
+    private final Map<Long, Annotation> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong buffered = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 放入一条修改（只含非空字段），与同一批注尚未落库的修改合并
+     */
+    public void update(Annotation change) {
+        buffered.incrementAndGet();
+        pending.merge(change.getId(), copy(change), (old, neu) -> {
+            Annotation merged = copy(old);
+            if (neu.getTextContent() != null) merged.setTextContent(neu.getTextContent());
+            if (neu.getColor() != null) merged.setColor(neu.getColor());
+            if (neu.getUserId() != null) merged.setUserId(neu.getUserId());
+            return merged;
+        });
+    }
+
+    /**
+     * 批注被删除：丢弃它的待写修改
+     */
+    public void cancel(Long id) {
+        pending.remove(id);
+    }
+
+    /**
+     * 把尚未落库的修改覆盖到查询结果上
+     */
+    public List<Annotation> overlay(List<Annotation> list) {
+        if (pending.isEmpty()) return list;
+        for (Annotation a : list) {
+            Annotation p = pending.get(a.getId());
+            if (p == null) continue;
+            if (p.getUserId() != null && !p.getUserId().equals(a.getUserId())) continue;
+            if (p.getTextContent() != null) a.setTextContent(p.getTextContent());
+            if (p.getColor() != null) a.setColor(p.getColor());
+        }
+        return list;
+    }
+
+    @Scheduled(fixedDelayString = "${ireader.annotation.write-behind.flush-interval-ms:2000}")
+    public void flush() {
+        if (pending.isEmpty()) return;
+        List<Annotation> batch = new ArrayList<>(pending.values());
+        // 按用户分配版本号（增量同步），与批量更新在同一事务内提交
+        Map<Long, List<Annotation>> byUser = batch.stream()
+                .filter(a -> a.getUserId() != null)
+                .collect(Collectors.groupingBy(Annotation::getUserId));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                byUser.forEach((userId, list) -> {
+                    long version = annotationMapper.nextVersions(userId, list.size()) - list.size();
+                    for (Annotation a : list) a.setVersion(++version);
+                });
+                try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+                    AnnotationMapper mapper = session.getMapper(AnnotationMapper.class);
+                    for (Annotation a : batch) mapper.updateForUser(a);
+                    session.flushStatements();
+                    session.commit();
+                }
+            });
+        } catch (Exception e) {
+            // 保留在缓冲中，下次重试
+            System.out.println("[批注写缓冲] 落库失败，稍后重试: " + e.getMessage());
+            return;
+        }
+        for (Annotation a : batch) pending.remove(a.getId(), a);
+        written.addAndGet(batch.size());
+        flushes.incrementAndGet();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("pending", pending.size());
+        m.put("buffered", buffered.get());
+        m.put("written", written.get());
+        m.put("flushes", flushes.get());
+        return m;
+    }
+
+    private static Annotation copy(Annotation src) {
+        Annotation a = new Annotation();
+        a.setId(src.getId());
+        a.setUserId(src.getUserId());
+        a.setTextContent(src.getTextContent());
+        a.setColor(src.getColor());
+        return a;
+    }
+}
@@ -0,0 +1,123 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.dto.BookCatalogPage;
+import com.library.ireaderbackend.dto.BookListItem;
+import com.library.ireaderbackend.dto.CategoryCount;
+import com.library.ireaderbackend.mapper.BookMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 书目（公开书籍）分页与分类计数
+ *  - 列表只查列表列（BookListItem），按游标翻页：sort=latest 按 id 倒序，游标为上一页最后一本的 id；
+ *    sort=publish 按出版时间倒序（同一天按 id），游标为 "毫秒时间戳,id"，出版时间为空的书排在最后，游标为 "null,id"
+ *  - 分类计数缓存在内存：书籍新增 / 修改 / 删除时失效，另有过期时间兜底（直接改库的情况）
+ */
+@Service
+public class BookCatalogService {
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String NULL_TIME = "null";
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Value("${ireader.catalog.facet-ttl-seconds:300}")
+    private long facetTtlSeconds;
+
+    private record Facets(List<CategoryCount> counts, long loadedAt) {}
+
+    private volatile Facets facets;
+    // 每次失效加一：计数查询期间若发生过失效，查到的结果可能已过时，不写回缓存
+    private final AtomicLong generation = new AtomicLong();
+
+    public BookCatalogPage getCatalog(String category, String keyword, String sort, String after, Integer size) {
+        int limit = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        boolean byPublishTime = "publish".equals(sort);
+
+        // 多取一条用于判断是否还有下一页
+        List<BookListItem> items;
+        if (!byPublishTime) {
+            items = bookMapper.findCatalogPage(category, keyword, false, false, null, parseId(after), limit + 1);
+        } else {
+            Date afterTime = null;
+            Long afterId = null;
+            boolean inNullPhase = false;
+            if (after != null && !after.isEmpty()) {
+                int comma = after.indexOf(',');
+                if (comma < 0) throw new RuntimeException("翻页游标格式不正确: " + after);
+                String time = after.substring(0, comma);
+                inNullPhase = NULL_TIME.equals(time);
+                if (!inNullPhase) afterTime = new Date(parseLong(time, after));
+                afterId = parseLong(after.substring(comma + 1), after);
+            }
+            items = new ArrayList<>(limit + 1);
+            if (!inNullPhase) {
+                items.addAll(bookMapper.findCatalogPage(category, keyword, true, false, afterTime, afterId, limit + 1));
+            }
+            // 有出版时间的书翻完了，接着翻出版时间为空的
+            if (items.size() <= limit) {
+                items.addAll(bookMapper.findCatalogPage(category, keyword, true, true, null,
+                        inNullPhase ? afterId : null, limit + 1 - items.size()));
+            }
+        }
+
+        boolean hasMore = items.size() > limit;
+        if (hasMore) items = items.subList(0, limit);
+        String nextCursor = hasMore ? cursorOf(items.get(items.size() - 1), byPublishTime) : null;
+        return new BookCatalogPage(items, nextCursor, hasMore);
+    }
+
+    /**
+     * 各分类的公开书籍数量（按数量倒序）
+     */
+    public List<CategoryCount> getCategoryCounts() {
+        Facets f = facets;
+        if (f != null && !expired(f)) return f.counts();
+        synchronized (this) {
+            f = facets;
+            if (f != null && !expired(f)) return f.counts();
+            long gen = generation.get();
+            List<CategoryCount> counts = List.copyOf(bookMapper.countByCategory());
+            if (generation.get() == gen) facets = new Facets(counts, System.currentTimeMillis());
+            return counts;
+        }
+    }
+
+    /**
+     * 书籍新增 / 修改 / 删除后调用
+     */
+    public void invalidateFacets() {
+        generation.incrementAndGet();
+        facets = null;
+    }
+
+    private boolean expired(Facets f) {
+        return System.currentTimeMillis() - f.loadedAt() > facetTtlSeconds * 1000;
+    }
+
+    private static String cursorOf(BookListItem last, boolean byPublishTime) {
+        if (!byPublishTime) return String.valueOf(last.getId());
+        String time = last.getPublishTime() == null ? NULL_TIME : String.valueOf(last.getPublishTime().getTime());
+        return time + "," + last.getId();
+    }
+
+    private static Long parseId(String after) {
+        return after == null || after.isEmpty() ? null : parseLong(after, after);
+    }
+
+    private static long parseLong(String value, String cursor) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("翻页游标格式不正确: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.Utils.ChapterCodec;
+import com.library.ireaderbackend.entity.BookContent;
+import com.library.ireaderbackend.mapper.BookContentMapper;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 章节分块批量写入
+ *  - 逐行 INSERT 走 MyBatis BATCH 执行器，由驱动（rewriteBatchedStatements=true）合并成多值语句，
+ *    不再拼一条几十 MB 的 INSERT ... VALUES，不会超过 max_allowed_packet
+ *  - 按行数和字节数双重限制分块，可以作为 Consumer 直接挂在流式解析器后面边解析边写
+ *  - 写入前按 ChapterCodec 压缩正文
+ *  - 会话通过 Spring 管理的连接获取：在 @Transactional 内调用时与外层事务共用同一连接
+ */
+@Component
+public class BookContentBatchWriter {
+
+    // 每行固定开销估算（SQL 片段、数值列等）
+    private static final int ROW_OVERHEAD = 64;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private ChapterCache chapterCache;
+
+    @Value("${ireader.batch-insert.max-rows:200}")
+    private int maxRows;
+
+    @Value("${ireader.batch-insert.max-bytes:4194304}")
+    private long maxBytes;
+
+    /**
+     * 打开一个写入批次，用完必须 close（写出剩余数据并失效相关书籍缓存）
+     */
+    public Batch open() {
+        return new Batch();
+    }
+
+    /**
+     * 一次性写入已在内存中的章节列表（内部同样按块提交）
+     */
+    public void writeAll(List<BookContent> contents) {
+        if (contents == null || contents.isEmpty()) return;
+        try (Batch batch = open()) {
+            contents.forEach(batch);
+        }
+    }
+
+    public class Batch implements Consumer<BookContent>, AutoCloseable {
+        private final List<BookContent> buffer = new ArrayList<>();
+        private final Set<Long> bookIds = new HashSet<>();
+        private long bufferedBytes;
+        private long rows;
+        private int chunks;
+
+        @Override
+        public void accept(BookContent c) {
+            if (c.getContentLength() == null && c.getChapterContent() != null) {
+                c.setContentLength(c.getChapterContent().length());
+            }
+            ChapterCodec.encode(c);
+            buffer.add(c);
+            bookIds.add(c.getBookId());
+            bufferedBytes += estimateBytes(c);
+            if (buffer.size() >= maxRows || bufferedBytes >= maxBytes) flush();
+        }
+
+        /**
+         * 把当前块作为一次 JDBC batch 发出
+         */
+        public void flush() {
+            if (buffer.isEmpty()) return;
+            try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+                BookContentMapper mapper = session.getMapper(BookContentMapper.class);
+                for (BookContent c : buffer) mapper.insert(c);
+                session.flushStatements();
+                // 外层有 Spring 事务时这里不会真正提交，由外层事务统一提交
+                session.commit();
+            }
+            rows += buffer.size();
+            chunks++;
+            buffer.clear();
+            bufferedBytes = 0;
+        }
+
+        public long getRows() {
+            return rows + buffer.size();
+        }
+
+        @Override
+        public void close() {
+            flush();
+            bookIds.forEach(chapterCache::evictBook);
+            if (chunks > 1) System.out.printf("[批量写入] 共写入 %d 个章节，分 %d 块%n", rows, chunks);
+        }
+    }
+
+    // 按 UTF-8 估算：中文正文每字符 3 字节；压缩存储的按实际字节
+    private static long estimateBytes(BookContent c) {
+        long chars = 0;
+        if (c.getChapterContent() != null) chars += c.getChapterContent().length();
+        if (c.getChapterTitle() != null) chars += c.getChapterTitle().length();
+        long blob = c.getContentBlob() == null ? 0 : c.getContentBlob().length;
+        return chars * 3 + blob + ROW_OVERHEAD;
+    }
+}
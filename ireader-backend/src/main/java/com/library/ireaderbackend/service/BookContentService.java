@@ -1,53 +1,265 @@
 package com.library.ireaderbackend.service;
 
 
+import com.library.ireaderbackend.dto.ChapterTocItem;
+import com.library.ireaderbackend.dto.ChapterTocPage;
 import com.library.ireaderbackend.entity.BookContent;
 import com.library.ireaderbackend.mapper.BookContentMapper;
 import com.library.ireaderbackend.mapper.BookMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.ireaderbackend.Utils.ChapterCodec;
 import com.library.ireaderbackend.Utils.EpubParser;
+import com.library.ireaderbackend.Utils.PdfParser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 
 @Service
 public class BookContentService {
 
+    // 目录每页默认条数 / 上限
+    private static final int DEFAULT_TOC_PAGE_SIZE = 200;
+    private static final int MAX_TOC_PAGE_SIZE = 1000;
+
     @Autowired
     private BookContentMapper bookContentMapper;
 
     @Autowired
     private BookMapper bookMapper;
 
+    @Autowired
+    private BookParseCoordinator bookParseCoordinator;
+
+    @Autowired
+    private ChapterCache chapterCache;
+
+    @Autowired
+    private BookContentBatchWriter batchWriter;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserBookShelfService userBookShelfService;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
      * 获取某书的所有章节；若 DB 中为空则尝试解析 epub 并持久化
      */
     public List<BookContent> getChapters(Long bookId) throws Exception {
         List<BookContent> list = bookContentMapper.findByBookId(bookId);
         if (list == null || list.isEmpty()) {
-            // 从 book 表里拿 filePath（比如： books/一句顶一万句 - 刘震云.epub ）
-            com.library.ireaderbackend.entity.Book book = bookMapper.findById(bookId);
-            if (book == null) throw new RuntimeException("书籍不存在: " + bookId);
-            String path = book.getFilePath();
-            if (path == null) throw new RuntimeException("书籍文件路径未配置");
-            // 确保以 / 开头用于 classpath 资源读取
-            String cp = path.startsWith("/") ? path : ("/" + path);
-            // 后端存储路径，比如 D:/桌面/iReader/static/book/{bookId}/
-            String staticImgDir = "D:/桌面/iReader/static/book/" + bookId + "/";
-
-           List<BookContent> chapters = EpubParser.parseEpubToChapters(cp, bookId,staticImgDir);
-            if (!chapters.isEmpty()) {
-                bookContentMapper.insertBatch(chapters);
-            }
+            ensureParsed(bookId);
             list = bookContentMapper.findByBookId(bookId);
         }
+        list.forEach(ChapterCodec::decode);
+        // 整本获取时把尚未提取的 PDF 章节一次补齐
+        List<BookContent> pending = list.stream().filter(BookContentService::needsExtraction).toList();
+        if (!pending.isEmpty()) fillPdfContent(bookId, pending);
         return list;
     }
 
+    /**
+     * 分页获取目录（不含正文）；after 为上一页最后一章的 chapterOrder，首页传 null 或 0
+     * 首页为空时与 getChapters 一样触发解析入库
+     */
+    public ChapterTocPage getToc(Long bookId, Integer after, Integer size) throws Exception {
+        int afterOrder = after == null ? 0 : Math.max(after, 0);
+        int limit = size == null || size <= 0 ? DEFAULT_TOC_PAGE_SIZE : Math.min(size, MAX_TOC_PAGE_SIZE);
+
+        // 多取一条用于判断是否还有下一页
+        List<ChapterTocItem> items = bookContentMapper.findTocByBookId(bookId, afterOrder, limit + 1);
+        if (items.isEmpty() && afterOrder == 0) {
+            ensureParsed(bookId);
+            items = bookContentMapper.findTocByBookId(bookId, afterOrder, limit + 1);
+        }
+
+        boolean hasMore = items.size() > limit;
+        if (hasMore) items = items.subList(0, limit);
+        Integer nextAfter = hasMore ? items.get(items.size() - 1).getChapterOrder() : null;
+        return new ChapterTocPage(items, nextAfter, hasMore);
+    }
+
+    // 先查本地缓存，未命中再读库；尚未提取正文的 PDF 章节不进加载函数，交给 extractChapter
     public BookContent getChapter(Long bookId, Integer order) {
-        return bookContentMapper.findByBookIdAndOrder(bookId, order);
+        BookContent chapter = chapterCache.get(bookId, order, () -> {
+            BookContent c = ChapterCodec.decode(bookContentMapper.findByBookIdAndOrder(bookId, order));
+            return c == null || needsExtraction(c) ? null : c;
+        });
+        return chapter != null ? chapter : extractChapter(bookId, order);
+    }
+
+    /**
+     * PDF 懒加载章节：在缓存之外提取正文并回填，再放入缓存（PDFBox 解析较慢，不能在 Caffeine 的加载函数里占着锁）
+     * 同一本书的并发提取经 BookParseCoordinator 合并（跨节点同样由租约表协调）；
+     * 合并等到的可能是同书其他章节的提取，所以提取完成后重新读库确认，直到本章已有正文
+     */
+    private BookContent extractChapter(Long bookId, Integer order) {
+        while (true) {
+            BookContent chapter = ChapterCodec.decode(bookContentMapper.findByBookIdAndOrder(bookId, order));
+            if (chapter == null) return null;
+            if (!needsExtraction(chapter)) {
+                chapterCache.put(bookId, order, chapter);
+                return chapter;
+            }
+            try {
+                bookParseCoordinator.parseOnce(bookId,
+                        () -> !needsExtraction(bookContentMapper.findByBookIdAndOrder(bookId, order)),
+                        () -> fillPdfContent(bookId, List.of(chapter)));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("PDF 章节提取失败: " + bookId + "/" + order + " -> " + e.getMessage(), e);
+            }
+        }
     }
+
+    /**
+     * 章节接口的响应体：JSON 只序列化一次，ETag 取 JSON 的 SHA-256，gzip 版本只压缩一次，之后直接复用
+     * 章节不存在时返回 null；章节本身（可能要提取 PDF）在响应体缓存的加载函数之外取好
+     */
+    public ChapterCache.Encoded getChapterEncoded(Long bookId, Integer order) {
+        ChapterCache.Encoded cached = chapterCache.getEncodedIfPresent(bookId, order);
+        if (cached != null) return cached;
+        BookContent chapter = getChapter(bookId, order);
+        if (chapter == null) return null;
+        return chapterCache.getEncoded(bookId, order, () -> {
+            try {
+                byte[] json = objectMapper.writeValueAsBytes(chapter);
+                String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+                return new ChapterCache.Encoded("\"" + hash.substring(0, 32) + "\"", json, ChapterCodec.gzip(json));
+            } catch (Exception e) {
+                throw new RuntimeException("章节序列化失败: " + bookId + "/" + order + " -> " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 按存储格式取章节（正文可能仍是 gzip 字节，见 ChapterCodec），供直接透传压缩正文的接口使用
+     * 已在缓存中的直接返回明文；PDF 懒加载尚未提取的章节走 getChapter
+     */
+    public BookContent getStoredChapter(Long bookId, Integer order) {
+        BookContent cached = chapterCache.getIfPresent(bookId, order);
+        if (cached != null) return cached;
+        BookContent stored = bookContentMapper.findByBookIdAndOrder(bookId, order);
+        if (stored != null && needsExtraction(stored)) return getChapter(bookId, order);
+        return stored;
+    }
+    // 按行数/字节数分块走 JDBC batch 写入（写完自动失效章节缓存）
     public void saveAll(List<BookContent> contents) {
-        if (contents == null || contents.isEmpty()) return;
-        bookContentMapper.insertBatch(contents);
+        batchWriter.writeAll(contents);
+    }
+
+    /**
+     * 上传解析完成后的最终写入：章节入库 + 加入上传者书架，在同一事务中完成
+     */
+    @Transactional
+    public void saveParsedBook(Long userId, Long bookId, List<BookContent> contents) {
+        saveAll(contents);
+        userBookShelfService.addBook(userId, bookId);
+    }
+
+    /**
+     * 删除某书全部章节（重新解析前调用），同时清掉该书的章节缓存
+     */
+    public void deleteByBookId(Long bookId) {
+        bookContentMapper.deleteByBookId(bookId);
+        chapterCache.evictBook(bookId);
+    }
+
+    /**
+     * 懒解析入口：同一本书并发打开时只解析一次（跨节点由租约表协调）
+     */
+    private void ensureParsed(Long bookId) throws Exception {
+        bookParseCoordinator.parseOnce(bookId,
+                () -> bookContentMapper.countByBookId(bookId) > 0,
+                () -> parseAndSave(bookId));
+    }
+
+    /**
+     * 从 book 表拿到文件路径，解析 epub 并写入 book_content
+     * 流式解析，每章直接交给写入批次，整本书不驻留内存；解析和分块写入在同一个事务内，最后整体提交：
+     * 写入途中其他请求（含其他节点）不会看到半本书，"已有章节即已解析"的判断也不会提前成立；
+     * 解析或写入失败时整体回滚，不留下残缺章节（解析期间租约照常续期）
+     */
+    private void parseAndSave(Long bookId) throws Exception {
+        // 从 book 表里拿 filePath（比如： books/一句顶一万句 - 刘震云.epub ）
+        com.library.ireaderbackend.entity.Book book = bookMapper.findById(bookId);
+        if (book == null) throw new RuntimeException("书籍不存在: " + bookId);
+        String path = book.getFilePath();
+        if (path == null) throw new RuntimeException("书籍文件路径未配置");
+        // 确保以 / 开头用于 classpath 资源读取
+        String cp = path.startsWith("/") ? path : ("/" + path);
+        // 后端存储路径，比如 D:/桌面/iReader/static/book/{bookId}/
+        String staticImgDir = "D:/桌面/iReader/static/book/" + bookId + "/";
+
+        transactionTemplate.executeWithoutResult(status -> {
+            try (BookContentBatchWriter.Batch batch = batchWriter.open()) {
+                EpubParser.parseEpubResourceStreaming(cp, bookId, staticImgDir, imageStore, batch);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("EPUB 解析失败: " + bookId + " -> " + e.getMessage(), e);
+            }
+        });
+        searchService.indexBookAsync(bookId);
+    }
+
+    // 正文为空且有页区间；压缩存储（content_blob）的行不算，读库原样和解码后的行都适用
+    private static boolean needsExtraction(BookContent c) {
+        return c != null && c.getChapterContent() == null && c.getContentBlob() == null
+                && c.getPageStart() != null && c.getPageEnd() != null;
+    }
+
+    /**
+     * 按页区间从 PDF 原文件提取正文并回填到库
+     */
+    private void fillPdfContent(Long bookId, List<BookContent> chapters) {
+        com.library.ireaderbackend.entity.Book book = bookMapper.findById(bookId);
+        if (book == null || book.getFilePath() == null) throw new RuntimeException("书籍文件不存在: " + bookId);
+        File file = new File(book.getFilePath());
+
+        List<int[]> ranges = new ArrayList<>(chapters.size());
+        for (BookContent c : chapters) ranges.add(new int[]{c.getPageStart(), c.getPageEnd()});
+        List<String> texts;
+        try {
+            texts = PdfParser.extractRanges(file, ranges);
+        } catch (IOException e) {
+            throw new RuntimeException("PDF 章节提取失败: " + bookId + " -> " + e.getMessage(), e);
+        }
+
+        for (int i = 0; i < chapters.size(); i++) {
+            BookContent c = chapters.get(i);
+            String text = texts.get(i).trim();
+            c.setChapterContent(text);
+            c.setContentLength(text.length());
+
+            // 按存储格式编码后回填，c 本身保持明文供本次返回
+            BookContent stored = new BookContent();
+            stored.setId(c.getId());
+            stored.setChapterContent(text);
+            stored.setContentLength(text.length());
+            ChapterCodec.encode(stored);
+            bookContentMapper.fillContent(stored);
+        }
+        System.out.printf("[PDF懒加载] 书籍 %d 提取 %d 个章节%n", bookId, chapters.size());
+        // 新提取的正文延迟补进全文索引：读者连续翻页时多次提取只重建一次该书的索引
+        searchService.indexBookLater(bookId);
     }
 }
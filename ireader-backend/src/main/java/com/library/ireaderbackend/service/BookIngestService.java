@@ -0,0 +1,201 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.Utils.EpubParser;
+import com.library.ireaderbackend.Utils.PdfParser;
+import com.library.ireaderbackend.Utils.TxtParser;
+import com.library.ireaderbackend.dto.IngestJob;
+import com.library.ireaderbackend.entity.Book;
+import com.library.ireaderbackend.entity.BookContent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 上传书籍的异步解析流水线
+ *  - 有界线程池 + 有界队列：队列满时直接拒绝（由接口返回 503），不会无限堆积
+ *  - 解析在事务外执行，只有最终写入章节 + 加入书架在一个事务里
+ *  - TXT、EPUB 走流式解析，章节边解析边分块写入；失败时删除已写入的章节和书籍记录
+ *  - 入库成功后交给 SearchService 异步建全文索引
+ */
+@Service
+public class BookIngestService {
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookContentService bookContentService;
+    @Autowired
+    private BookContentBatchWriter batchWriter;
+    @Autowired
+    private ImageStore imageStore;
+    @Autowired
+    private SearchService searchService;
+
+    @Value("${ireader.ingest.workers:2}")
+    private int workers;
+
+    @Value("${ireader.ingest.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${ireader.pdf.lazy:true}")
+    private boolean pdfLazy;
+
+    // 已结束任务在内存中保留的时间
+    @Value("${ireader.ingest.job-retention-minutes:60}")
+    private long jobRetentionMinutes;
+
+    private ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, IngestJob> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "book-ingest-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 队列是否已满（上传前先判断，避免白白落盘）
+     */
+    public boolean isSaturated() {
+        return executor.getQueue().remainingCapacity() == 0;
+    }
+
+    /**
+     * 提交解析任务，立即返回任务信息
+     * @throws RejectedExecutionException 队列已满
+     */
+    public IngestJob submit(Path savePath, String filename, String ext, Long userId) {
+        purgeFinishedJobs();
+        IngestJob job = new IngestJob(UUID.randomUUID().toString(), userId, filename);
+        jobs.put(job.getJobId(), job);
+        try {
+            executor.execute(() -> run(job, savePath, filename, ext));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getJobId());
+            throw e;
+        }
+        return job;
+    }
+
+    public IngestJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    private void run(IngestJob job, Path savePath, String filename, String ext) {
+        Long bookId = null;
+        try {
+            job.setStatus(IngestJob.Status.PARSING);
+
+            // 1. 书籍记录（单条插入，自动提交）
+            Book book = new Book();
+            book.setTitle(stripExtension(filename));
+            book.setAuthor("未知");      // 必须非空
+            book.setCover("");           // 可选
+            book.setCategory("");        // 可选
+            book.setIntro("");           // 可选
+            book.setFilePath(savePath.toAbsolutePath().toString());
+            book.setFileType(ext);
+            book.setIsFree(1);
+            book.setPublisher("");
+            book.setPublishTime(null);
+            book.setIsbn("");
+            book.setBrand("");
+            book.setUploader_id(job.getUserId());
+            book.setVisibility("private"); // 或者 "pending"，区分后台审核
+            bookService.save(book);
+            bookId = book.getId();
+            job.setBookId(bookId);
+
+            // 2. 解析成章节（不占用数据库连接/事务）
+            List<BookContent> contents;
+            if ("txt".equals(ext)) {
+                // TXT 流式解析：边解析边分块写入，整本书不驻留内存，最后一步只剩加入书架
+                ingestTxtStreaming(job, savePath, bookId);
+                contents = List.of();
+            } else if ("pdf".equals(ext)) {
+                // 懒加载：只读目录和页区间，正文首次阅读时再提取；无目录的 PDF 仍整本解析
+                contents = pdfLazy ? PdfParser.parseOutline(savePath.toFile(), bookId) : List.of();
+                if (contents.isEmpty()) contents = PdfParser.parseEbook(savePath.toFile(), bookId);
+                job.setChapterCount(contents.size());
+            } else { // epub
+                // 与 TXT 相同：逐章交给写入批次，整本书不驻留内存
+                ingestEpubStreaming(job, savePath, bookId);
+                contents = List.of();
+            }
+
+            // 3. 写入章节并加入书架（同一事务）
+            job.setStatus(IngestJob.Status.SAVING);
+            bookContentService.saveParsedBook(job.getUserId(), bookId, contents);
+
+            job.setStatus(IngestJob.Status.DONE);
+            job.setMessage("上传并解析成功");
+            // 全文索引异步写入，不计入上传耗时
+            searchService.indexBookAsync(bookId);
+        } catch (Exception e) {
+            e.printStackTrace();
+            job.setStatus(IngestJob.Status.FAILED);
+            job.setMessage("上传解析出错：" + e.getMessage());
+            // 解析失败时删除半成品书籍记录（流式写入的章节一并删除）
+            if (bookId != null) {
+                try {
+                    bookContentService.deleteByBookId(bookId);
+                    bookService.deleteBook(bookId);
+                } catch (Exception ex) {
+                    System.out.println("[上传解析] 清理书籍记录失败: " + bookId + " -> " + ex.getMessage());
+                }
+            }
+        } finally {
+            job.setFinishTime(System.currentTimeMillis());
+        }
+    }
+
+    private void ingestTxtStreaming(IngestJob job, Path savePath, Long bookId) throws Exception {
+        try (BookContentBatchWriter.Batch batch = batchWriter.open()) {
+            TxtParser.parseTxtStreaming(savePath, bookId, c -> {
+                batch.accept(c);
+                job.setChapterCount(job.getChapterCount() + 1);
+            });
+        }
+    }
+
+    private void ingestEpubStreaming(IngestJob job, Path savePath, Long bookId) throws Exception {
+        String staticImgDir = "ireader/uploads/static/book/" + bookId;
+        try (BookContentBatchWriter.Batch batch = batchWriter.open()) {
+            EpubParser.parseEpubStreaming(savePath.toFile(), bookId, staticImgDir, imageStore, c -> {
+                batch.accept(c);
+                job.setChapterCount(job.getChapterCount() + 1);
+            });
+        }
+    }
+
+    private void purgeFinishedJobs() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(jobRetentionMinutes);
+        jobs.values().removeIf(j -> j.getFinishTime() != null && j.getFinishTime() < expireBefore);
+    }
+
+    private String stripExtension(String name) {
+        if (name == null) return "";
+        int i = name.lastIndexOf('.');
+        return i > 0 ? name.substring(0, i) : name;
+    }
+}
@@ -0,0 +1,183 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.mapper.BookParseLeaseMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 按书籍维度的“单飞”解析协调器
+ *  - 进程内：同一本书只有一个线程真正解析，其余调用方等待并共享结果
+ *  - 多节点：通过 book_parse_lease 表抢租约，没抢到的节点轮询等待对方解析完成
+ *  - 解析期间每 1/3 租约时长续租一次，解析耗时超过租约时长也不会被其他节点抢走重复解析
+ */
+@Service
+public class BookParseCoordinator {
+
+    @Autowired
+    private BookParseLeaseMapper leaseMapper;
+
+    // 租约时长：超过该时间未释放视为持有者宕机，可被其他节点抢占
+    @Value("${ireader.parse.lease-seconds:300}")
+    private int leaseSeconds;
+
+    // 等待其他节点解析的最长时间（实际取值不小于租约时长，避免对方仍在正常解析时就放弃）
+    @Value("${ireader.parse.wait-timeout-seconds:360}")
+    private int waitTimeoutSeconds;
+
+    // 续租线程：解析线程忙于解析期间，由它定期延长租约
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "parse-lease-renewer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String nodeId = resolveNodeId();
+    private final ConcurrentHashMap<Long, Flight> inFlight = new ConcurrentHashMap<>();
+
+    // 统计
+    private final AtomicLong parseRuns = new AtomicLong();
+    private final AtomicLong coalescedCallers = new AtomicLong();
+    private final AtomicLong remoteWaits = new AtomicLong();
+    private final AtomicLong leaseRenewals = new AtomicLong();
+    private final AtomicInteger maxCoalescedPerParse = new AtomicInteger();
+
+    @FunctionalInterface
+    public interface ParseAction {
+        void run() throws Exception;
+    }
+
+    /**
+     * 保证 action 对同一本书只执行一次
+     * @param done   判断是否已解析完成（通常是 book_content 是否已有数据）
+     * @param action 真正的解析 + 入库
+     */
+    public void parseOnce(Long bookId, BooleanSupplier done, ParseAction action) throws Exception {
+        Flight mine = new Flight();
+        Flight existing = inFlight.putIfAbsent(bookId, mine);
+        if (existing != null) {
+            coalescedCallers.incrementAndGet();
+            existing.waiters.incrementAndGet();
+            await(existing.future);
+            return;
+        }
+        try {
+            runWithLease(bookId, done, action);
+            mine.future.complete(null);
+        } catch (Exception e) {
+            mine.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(bookId, mine);
+            maxCoalescedPerParse.accumulateAndGet(mine.waiters.get(), Math::max);
+        }
+    }
+
+    private void runWithLease(Long bookId, BooleanSupplier done, ParseAction action) throws Exception {
+        long deadline = System.currentTimeMillis() + Math.max(waitTimeoutSeconds, leaseSeconds) * 1000L;
+        long backoff = 50;
+        boolean waited = false;
+        while (true) {
+            if (done.getAsBoolean()) return;
+
+            leaseMapper.tryAcquire(bookId, nodeId, leaseSeconds);
+            if (nodeId.equals(leaseMapper.findOwner(bookId))) {
+                long period = Math.max(1, leaseSeconds / 3);
+                ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(() -> renew(bookId), period, period, TimeUnit.SECONDS);
+                try {
+                    // 抢到租约后再确认一次，防止别的节点刚刚写完
+                    if (!done.getAsBoolean()) {
+                        parseRuns.incrementAndGet();
+                        action.run();
+                    }
+                } finally {
+                    renewal.cancel(false);
+                    leaseMapper.release(bookId, nodeId);
+                }
+                return;
+            }
+
+            // 其他节点正在解析：等待其完成（或租约过期后接手）
+            if (!waited) {
+                waited = true;
+                remoteWaits.incrementAndGet();
+                System.out.println("[解析协调] 书籍 " + bookId + " 正由其他节点解析，等待中");
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new RuntimeException("等待其他节点解析超时: " + bookId);
+            }
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, 1000);
+        }
+    }
+
+    private void renew(Long bookId) {
+        try {
+            if (leaseMapper.renew(bookId, nodeId, leaseSeconds) > 0) {
+                leaseRenewals.incrementAndGet();
+            } else {
+                System.out.println("[解析协调] 书籍 " + bookId + " 的租约已失效（可能已被其他节点接手）");
+            }
+        } catch (Exception e) {
+            System.out.println("[解析协调] 续租失败: " + bookId + " -> " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    private static void await(CompletableFuture<Void> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception ex) throw ex;
+            throw e;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("nodeId", nodeId);
+        m.put("parseRuns", parseRuns.get());
+        m.put("coalescedCallers", coalescedCallers.get());
+        m.put("maxCoalescedPerParse", maxCoalescedPerParse.get());
+        m.put("remoteWaits", remoteWaits.get());
+        m.put("leaseRenewals", leaseRenewals.get());
+        m.put("inFlight", inFlight.size());
+        return m;
+    }
+
+    private static String resolveNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private static class Flight {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final AtomicInteger waiters = new AtomicInteger();
+    }
+}
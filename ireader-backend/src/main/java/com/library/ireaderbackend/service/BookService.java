@@ -18,6 +18,36 @@ public class BookService {
     @Autowired
     private BookContentMapper bookContentMapper;
 
+    @Autowired
+    private ChapterCache chapterCache;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private BookSuggestService bookSuggestService;
+
+    @Autowired
+    private BookCatalogService bookCatalogService;
+
+    @Autowired
+    private UserBookShelfService userBookShelfService;
+
+    /**
+     * 公开书籍（visibility = pending，与首页书单一致）；用户私有上传不算
+     */
+    public static boolean isPublic(Book book) {
+        return book != null && "pending".equalsIgnoreCase(book.getVisibility());
+    }
+
+    /**
+     * 公开书籍谁都能读；私有上传只有上传者本人能读（userId 为空表示未登录）
+     */
+    public static boolean canRead(Book book, Long userId) {
+        if (book == null) return false;
+        return isPublic(book) || userId != null && userId.equals(book.getUploader_id());
+    }
+
     /**
      * 获取书籍列表，可以按关键词和分类过滤
      */
@@ -39,6 +69,8 @@ public class BookService {
 
     public void save(Book book) {
         bookMapper.insert(book);
+        bookSuggestService.refresh(book.getId());
+        bookCatalogService.invalidateFacets();
     }
     /**
      * 根据 ID 获取书籍详情
@@ -59,6 +91,8 @@ public class BookService {
      */
     public void addBook(Book book) {
         bookMapper.insert(book);
+        bookSuggestService.refresh(book.getId());
+        bookCatalogService.invalidateFacets();
     }
 
     /**
@@ -66,6 +100,11 @@ public class BookService {
      */
     public void updateBook(Book book) {
         bookMapper.update(book);
+        bookSuggestService.refresh(book.getId());
+        // 可见性可能改变：公开的进全站索引，转为私有的从中移除
+        searchService.indexBookAsync(book.getId());
+        bookCatalogService.invalidateFacets();
+        userBookShelfService.evictAll();
     }
 
     /**
@@ -73,5 +112,10 @@ public class BookService {
      */
     public void deleteBook(Long id) {
         bookMapper.delete(id);
+        chapterCache.evictBook(id);
+        searchService.deleteBookAsync(id);
+        bookSuggestService.onDeleted(id);
+        bookCatalogService.invalidateFacets();
+        userBookShelfService.evictAll();
     }
 }
@@ -0,0 +1,231 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.Utils.CjkTokenizer;
+import com.library.ireaderbackend.Utils.PinyinUtils;
+import com.library.ireaderbackend.dto.BookSuggestion;
+import com.library.ireaderbackend.entity.Book;
+import com.library.ireaderbackend.mapper.BookMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 书名 / 作者输入联想，全部在内存中完成，不查库
+ *  - 有序跳表做前缀索引：键为规整后的字符串（小写，只保留字母数字汉字），前缀查询即一次区间遍历
+ *  - 按匹配方式（排名）分成多张跳表，查询按排名从高到低遍历：扫描上限截断的只会是排名靠后的结果，
+ *    书名开头的匹配不会因为字典序靠后的后缀键太多而被挤掉
+ *  - 每本书写入的键：书名 / 作者的各个后缀（等价于原来 LIKE '%kw%' 的子串匹配）、全拼、首字母
+ *  - 只收录公开书籍（visibility = pending，与首页书单一致），用户私有上传不会出现在联想里
+ *  - 首次查询时从库里整体加载一次；之后随 BookService 的新增 / 修改 / 删除增量更新
+ */
+@Service
+public class BookSuggestService {
+
+    // 每个字段最多收录多少个后缀（书名过长时只取前面的起点）
+    private static final int MAX_SUFFIXES = 32;
+    // 单次查询最多遍历的倒排项（各排名合计），保证短前缀（如单个字母）也是亚毫秒
+    private static final int MAX_SCAN = 512;
+    private static final int MAX_LIMIT = 50;
+
+    // 匹配方式排名：数值越小越靠前
+    private static final int RANK_TITLE = 0;
+    private static final int RANK_TITLE_PINYIN = 1;
+    private static final int RANK_TITLE_INITIALS = 2;
+    private static final int RANK_TITLE_INFIX = 3;
+    private static final int RANK_AUTHOR = 4;
+    private static final int RANK_AUTHOR_PINYIN = 5;
+    private static final int RANK_AUTHOR_INFIX = 6;
+    private static final int RANKS = 7;
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    // 下标为排名，每张表：键 → 书 id 数组；写操作都在 writeLock 内，数组写时复制，读不加锁
+    private final List<ConcurrentSkipListMap<String, long[]>> index = new ArrayList<>(RANKS);
+    private final ConcurrentHashMap<Long, BookSuggestion> books = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile boolean loaded;
+
+    public BookSuggestService() {
+        for (int i = 0; i < RANKS; i++) index.add(new ConcurrentSkipListMap<>());
+    }
+
+    /**
+     * 按前缀联想，排名：书名开头 > 书名全拼 > 书名首字母 > 书名中间 > 作者；同名次按书名长短
+     */
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        String q = normalize(prefix);
+        if (q.isEmpty()) return List.of();
+        ensureLoaded();
+
+        int n = Math.max(1, Math.min(limit, MAX_LIMIT));
+        Map<Long, Integer> best = new HashMap<>();
+        int scanned = 0;
+        outer:
+        for (int rank = 0; rank < RANKS; rank++) {
+            // 更靠前的排名已凑够 n 本，后面的排名不可能进入结果
+            if (best.size() >= n) break;
+            for (long[] ids : index.get(rank).subMap(q, true, q + Character.MAX_VALUE, false).values()) {
+                for (long id : ids) {
+                    best.putIfAbsent(id, rank);
+                    if (++scanned >= MAX_SCAN) break outer;
+                }
+            }
+        }
+
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(best.entrySet());
+        ranked.sort(Comparator.<Map.Entry<Long, Integer>>comparingInt(Map.Entry::getValue)
+                .thenComparingInt(e -> titleLength(e.getKey()))
+                .thenComparingLong(Map.Entry::getKey));
+        List<BookSuggestion> result = new ArrayList<>(Math.min(n, ranked.size()));
+        for (Map.Entry<Long, Integer> e : ranked) {
+            BookSuggestion s = books.get(e.getKey());
+            if (s == null) continue; // 刚被删除
+            result.add(s);
+            if (result.size() == n) break;
+        }
+        return result;
+    }
+
+    /**
+     * 书籍新增 / 修改后调用：以库中最新记录为准（修改接口传入的对象不一定带可见性）
+     */
+    public void refresh(Long bookId) {
+        if (!loaded || bookId == null) return; // 尚未加载时无需维护，首次加载会读到最新数据
+        Book book = bookMapper.findById(bookId);
+        synchronized (writeLock) {
+            remove(bookId);
+            if (book != null) add(book);
+        }
+    }
+
+    public void onDeleted(Long bookId) {
+        if (!loaded || bookId == null) return;
+        synchronized (writeLock) {
+            remove(bookId);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("loaded", loaded);
+        m.put("books", books.size());
+        m.put("keys", index.stream().mapToInt(Map::size).sum());
+        return m;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        synchronized (writeLock) {
+            if (loaded) return;
+            load(bookMapper.findAll());
+        }
+    }
+
+    // 整体加载（findAll 只返回公开书籍）；基准测试直接传入书单
+    void load(List<Book> all) {
+        synchronized (writeLock) {
+            index.forEach(Map::clear);
+            books.clear();
+            // 整体加载先按键攒成列表再一次性放入，避免热门键（如常见字）逐本复制数组
+            List<Map<String, List<Long>>> lists = new ArrayList<>(RANKS);
+            for (int i = 0; i < RANKS; i++) lists.add(new HashMap<>());
+            for (Book book : all) {
+                if (!indexable(book)) continue;
+                books.put(book.getId(), toSuggestion(book));
+                keys(book).forEach((key, rank) ->
+                        lists.get(rank).computeIfAbsent(key, k -> new ArrayList<>(1)).add(book.getId()));
+            }
+            for (int rank = 0; rank < RANKS; rank++) {
+                ConcurrentSkipListMap<String, long[]> keys = index.get(rank);
+                lists.get(rank).forEach((key, ids) -> keys.put(key, ids.stream().mapToLong(Long::longValue).toArray()));
+            }
+            loaded = true;
+        }
+    }
+
+    private void add(Book book) {
+        if (!indexable(book)) return;
+        books.put(book.getId(), toSuggestion(book));
+        keys(book).forEach((key, rank) -> {
+            ConcurrentSkipListMap<String, long[]> keys = index.get(rank);
+            long[] old = keys.get(key);
+            if (old == null) {
+                keys.put(key, new long[]{book.getId()});
+            } else {
+                long[] grown = Arrays.copyOf(old, old.length + 1);
+                grown[old.length] = book.getId();
+                keys.put(key, grown);
+            }
+        });
+    }
+
+    private static boolean indexable(Book book) {
+        return book.getId() != null && "pending".equalsIgnoreCase(book.getVisibility());
+    }
+
+    private static BookSuggestion toSuggestion(Book book) {
+        return new BookSuggestion(book.getId(), book.getTitle(), book.getAuthor(), book.getCover());
+    }
+
+    private void remove(Long bookId) {
+        BookSuggestion removed = books.remove(bookId);
+        if (removed == null) return;
+        Book b = new Book();
+        b.setTitle(removed.getTitle());
+        b.setAuthor(removed.getAuthor());
+        keys(b).forEach((key, rank) -> {
+            ConcurrentSkipListMap<String, long[]> keys = index.get(rank);
+            long[] old = keys.get(key);
+            if (old == null) return;
+            long[] kept = Arrays.stream(old).filter(id -> id != bookId).toArray();
+            if (kept.length == 0) {
+                keys.remove(key);
+            } else {
+                keys.put(key, kept);
+            }
+        });
+    }
+
+    // 一本书的全部联想键 → 该键的最佳排名
+    private static Map<String, Integer> keys(Book book) {
+        Map<String, Integer> keys = new HashMap<>();
+        addField(keys, book.getTitle(), RANK_TITLE, RANK_TITLE_PINYIN, RANK_TITLE_INITIALS, RANK_TITLE_INFIX);
+        addField(keys, book.getAuthor(), RANK_AUTHOR, RANK_AUTHOR_PINYIN, RANK_AUTHOR_PINYIN, RANK_AUTHOR_INFIX);
+        return keys;
+    }
+
+    private static void addField(Map<String, Integer> keys, String value, int prefixRank, int pinyinRank,
+                                 int initialsRank, int infixRank) {
+        String text = normalize(value);
+        if (text.isEmpty()) return;
+        for (int i = 0; i < text.length() && i < MAX_SUFFIXES; i++) {
+            keys.merge(text.substring(i), i == 0 ? prefixRank : infixRank, Math::min);
+        }
+        if (text.chars().anyMatch(c -> CjkTokenizer.isCjk((char) c))) {
+            keys.merge(PinyinUtils.full(text), pinyinRank, Math::min);
+            keys.merge(PinyinUtils.initials(text), initialsRank, Math::min);
+        }
+    }
+
+    private int titleLength(Long bookId) {
+        BookSuggestion s = books.get(bookId);
+        return s == null || s.getTitle() == null ? Integer.MAX_VALUE : s.getTitle().length();
+    }
+
+    /**
+     * 规整：小写，只保留字母、数字、汉字（书名里的空格、书名号、标点不参与匹配）
+     */
+    static String normalize(String s) {
+        if (s == null) return "";
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isLetterOrDigit(c)) sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+}
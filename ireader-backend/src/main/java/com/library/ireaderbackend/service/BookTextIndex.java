@@ -0,0 +1,303 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.Utils.CjkTokenizer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * 单本书的书内查找索引，一本书一个文件 {bookId}.bti：
+ *  - 全书章节纯文本（CjkTokenizer.plainText，与阅读器 textContent 一致）按章节顺序首尾相接，
+ *    每个词项记录它在拼接文本中的全部位置（差值变长编码），索引约为每字 2 字节
+ *  - 按字符模式分词（CjkTokenizer ngrams = true）：汉字和字母数字都切成二元组，查任意子串与 indexOf 一致
+ *    （字母不区分大小写），"read" 能命中 "reader"，"AI时代" 能命中 "OpenAI时代"
+ *  - 章节之间留一个字符间隔，词项不会跨章；命中位置二分章节表换算成章内偏移
+ *  - 文件小，整份读入堆内；替换时写临时文件再原子改名（Windows 下不会因为映射占用而替换失败）
+ */
+public class BookTextIndex {
+
+    private static final int MAGIC = 0x49524254; // "IRBT"
+    private static final int VERSION = 2;
+    private static final int HEADER = 16;
+    private static final int CHAPTER_ENTRY = 20; // chapterId(long), order, base, length
+    private static final int TERM_ENTRY = 24;    // blobOff, blobLen, count, postLen, postOff(long)
+
+    /**
+     * 命中区间 [startOffset, endOffset)，与 Annotation.startOffset/endOffset 同一坐标
+     */
+    public record Match(long chapterId, int chapterOrder, int startOffset, int endOffset) {}
+
+    public record Result(int total, List<Match> matches) {}
+
+    private final ByteBuffer buf;
+    private final long[] chapterIds;
+    private final int[] orders;
+    private final int[] bases;
+    private final int[] lengths;
+    private final int termCount;
+    private final int termBase;
+    private final int blobBase;
+    private final int postBase;
+
+    private BookTextIndex(ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) throw new IOException("书内索引格式不符");
+        int chapterCount = buf.getInt(8);
+        termCount = buf.getInt(12);
+        chapterIds = new long[chapterCount];
+        orders = new int[chapterCount];
+        bases = new int[chapterCount];
+        lengths = new int[chapterCount];
+        for (int i = 0; i < chapterCount; i++) {
+            int at = HEADER + i * CHAPTER_ENTRY;
+            chapterIds[i] = buf.getLong(at);
+            orders[i] = buf.getInt(at + 8);
+            bases[i] = buf.getInt(at + 12);
+            lengths[i] = buf.getInt(at + 16);
+        }
+        termBase = HEADER + chapterCount * CHAPTER_ENTRY;
+        blobBase = termBase + termCount * TERM_ENTRY;
+        int blobSize = termCount == 0 ? 0 : lastBlobEnd();
+        postBase = blobBase + blobSize;
+    }
+
+    public static BookTextIndex read(Path file) throws IOException {
+        return new BookTextIndex(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    /**
+     * 索引占用的字节数（缓存按它计重）
+     */
+    public int sizeInBytes() {
+        return buf.capacity();
+    }
+
+    public int chapterCount() {
+        return chapterIds.length;
+    }
+
+    /**
+     * 构建并写出一本书的索引；docs 须按章节顺序排列
+     */
+    public static void write(Path file, List<FullTextIndex.Doc> docs) throws IOException {
+        Map<String, FullTextIndex.Bytes> postings = new HashMap<>();
+        Map<String, int[]> state = new HashMap<>(); // 词项 → {出现次数, 上一个位置}
+        int[] bases = new int[docs.size()];
+        int[] lengths = new int[docs.size()];
+        int base = 0;
+        for (int i = 0; i < docs.size(); i++) {
+            String text = docs.get(i).text() == null ? "" : docs.get(i).text();
+            bases[i] = base;
+            lengths[i] = text.length();
+            int chapterBase = base;
+            CjkTokenizer.tokenize(text, true, (t, off) -> {
+                int pos = chapterBase + off;
+                int[] st = state.computeIfAbsent(t, k -> new int[2]);
+                postings.computeIfAbsent(t, k -> new FullTextIndex.Bytes(4)).writeVarInt(pos - st[1]);
+                st[0]++;
+                st[1] = pos;
+            });
+            base += text.length() + 1; // 章节间隔
+        }
+
+        byte[][] keys = new byte[postings.size()][];
+        String[] names = new String[postings.size()];
+        int n = 0;
+        for (String t : postings.keySet()) {
+            names[n] = t;
+            keys[n] = t.getBytes(StandardCharsets.UTF_8);
+            n++;
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+
+        Files.createDirectories(file.getParent());
+        // 临时文件名唯一：后台索引线程和首次查询时的补建可能同时写同一本书
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(docs.size());
+            out.writeInt(n);
+            for (int i = 0; i < docs.size(); i++) {
+                out.writeLong(docs.get(i).chapterId());
+                out.writeInt(docs.get(i).chapterOrder());
+                out.writeInt(bases[i]);
+                out.writeInt(lengths[i]);
+            }
+            int blobOff = 0;
+            long postOff = 0;
+            for (int k : order) {
+                FullTextIndex.Bytes p = postings.get(names[k]);
+                out.writeInt(blobOff);
+                out.writeInt(keys[k].length);
+                out.writeInt(state.get(names[k])[0]);
+                out.writeInt(p.size);
+                out.writeLong(postOff);
+                blobOff += keys[k].length;
+                postOff += p.size;
+            }
+            if (HEADER + (long) docs.size() * CHAPTER_ENTRY + (long) n * TERM_ENTRY + blobOff + postOff > Integer.MAX_VALUE) {
+                throw new IOException("书内索引超过 2GB");
+            }
+            for (int k : order) out.write(keys[k]);
+            for (int k : order) {
+                FullTextIndex.Bytes p = postings.get(names[k]);
+                out.write(p.buf, 0, p.size);
+            }
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * 书内查找：返回命中总数和按阅读顺序排列的前 limit 处
+     */
+    public Result search(String query, int limit) {
+        CjkTokenizer.Query q = CjkTokenizer.parseQuery(query, true);
+        if (q.isEmpty()) return new Result(0, List.of());
+
+        // starts：命中处首个词项在拼接文本中的位置，升序
+        int[] starts;
+        if (q.terms().isEmpty()) {
+            starts = prefixPositions(q.prefix());
+            for (int i = 0; i < starts.length; i++) starts[i] -= q.prefixDelta();
+        } else {
+            int k = q.terms().size();
+            int[] idx = new int[k];
+            Integer[] byCount = new Integer[k];
+            for (int i = 0; i < k; i++) {
+                idx[i] = find(q.terms().get(i).getBytes(StandardCharsets.UTF_8));
+                if (idx[i] < 0) return new Result(0, List.of());
+                byCount[i] = i;
+            }
+            Arrays.sort(byCount, Comparator.comparingInt(i -> count(idx[i])));
+
+            // 最稀有词项的位置作为候选，其余词项逐个校验相对位置
+            int rarest = byCount[0];
+            starts = positions(idx[rarest]);
+            for (int i = 0; i < starts.length; i++) starts[i] -= q.deltas()[rarest];
+            for (int r = 1; r < k && starts.length > 0; r++) {
+                int t = byCount[r];
+                starts = retain(starts, positions(idx[t]), q.deltas()[t]);
+            }
+            if (q.prefix() != null && starts.length > 0) {
+                starts = retain(starts, prefixPositions(q.prefix()), q.prefixDelta());
+            }
+        }
+
+        List<Match> matches = new ArrayList<>(Math.min(starts.length, limit));
+        for (int i = 0; i < starts.length && matches.size() < limit; i++) {
+            // 以首个词项所在位置定章节，再回推到查询串开头（开头的标点在正文里可能落到章节之外，截到章首）
+            int c = chapterOf(starts[i]);
+            int start = Math.max(0, starts[i] - q.leading() - bases[c]);
+            int end = Math.min(lengths[c], start + q.length());
+            matches.add(new Match(chapterIds[c], orders[c], start, end));
+        }
+        return new Result(starts.length, matches);
+    }
+
+    // 保留 starts 中满足 start + delta 出现在 positions 里的项（两者均升序）
+    private static int[] retain(int[] starts, int[] positions, int delta) {
+        int[] kept = new int[starts.length];
+        int n = 0, j = 0;
+        for (int s : starts) {
+            int want = s + delta;
+            while (j < positions.length && positions[j] < want) j++;
+            if (j == positions.length) break;
+            if (positions[j] == want) kept[n++] = s;
+        }
+        return Arrays.copyOf(kept, n);
+    }
+
+    private int chapterOf(int pos) {
+        int i = Arrays.binarySearch(bases, pos);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+
+    // 以某字开头的全部词项（二元组 + 单字）位置的并集，升序
+    private int[] prefixPositions(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int from = find(key);
+        if (from < 0) from = -from - 1;
+        FullTextIndex.IntList all = new FullTextIndex.IntList();
+        for (int i = from; i < termCount && startsWith(i, key); i++) {
+            for (int p : positions(i)) all.add(p);
+        }
+        int[] result = Arrays.copyOf(all.a, all.size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private int[] positions(int term) {
+        int at = termBase + term * TERM_ENTRY;
+        int count = buf.getInt(at + 8);
+        int p = postBase + (int) buf.getLong(at + 16);
+        int[] result = new int[count];
+        int last = 0;
+        for (int i = 0; i < count; i++) {
+            int v = 0, shift = 0;
+            byte b;
+            do {
+                b = buf.get(p++);
+                v |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            last += v;
+            result[i] = last;
+        }
+        return result;
+    }
+
+    private int count(int term) {
+        return buf.getInt(termBase + term * TERM_ENTRY + 8);
+    }
+
+    private int find(byte[] key) {
+        int lo = 0, hi = termCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compareTerm(mid, key);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    private int compareTerm(int i, byte[] key) {
+        int at = termBase + i * TERM_ENTRY;
+        int off = blobBase + buf.getInt(at);
+        int len = buf.getInt(at + 4);
+        int n = Math.min(len, key.length);
+        for (int k = 0; k < n; k++) {
+            int c = Integer.compare(buf.get(off + k) & 0xff, key[k] & 0xff);
+            if (c != 0) return c;
+        }
+        return Integer.compare(len, key.length);
+    }
+
+    private boolean startsWith(int i, byte[] prefix) {
+        int at = termBase + i * TERM_ENTRY;
+        if (buf.getInt(at + 4) < prefix.length) return false;
+        int off = blobBase + buf.getInt(at);
+        for (int k = 0; k < prefix.length; k++) if (buf.get(off + k) != prefix[k]) return false;
+        return true;
+    }
+
+    private int lastBlobEnd() {
+        int at = termBase + (termCount - 1) * TERM_ENTRY;
+        return buf.getInt(at) + buf.getInt(at + 4);
+    }
+}
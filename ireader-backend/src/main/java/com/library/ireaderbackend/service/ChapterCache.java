@@ -0,0 +1,127 @@
+package com.library.ireaderbackend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.library.ireaderbackend.entity.BookContent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 章节正文本地缓存
+ *  - 按正文字节数限容（而不是条目数），长章节占得多
+ *  - Caffeine 的 W-TinyLFU 淘汰：按访问频率保留热门章节，一次性扫读不会冲掉热点
+ *  - 书籍重新解析 / 删除时按书整体失效
+ *  - 另缓存章节接口序列化好的响应体（含 gzip 版本和 ETag），重复请求不再序列化/压缩
+ */
+@Component
+public class ChapterCache {
+
+    // 每条缓存的固定开销估算（对象头、key、标题等）
+    private static final int ENTRY_OVERHEAD = 96;
+
+    @Value("${ireader.chapter-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    // 章节接口响应体（序列化好的 JSON 及其 gzip 版本）的缓存上限
+    @Value("${ireader.chapter-cache.response-max-bytes:33554432}")
+    private long responseMaxBytes;
+
+    private Cache<ChapterKey, BookContent> cache;
+    private Cache<ChapterKey, Encoded> responses;
+
+    /**
+     * 章节接口的响应体：etag 由 JSON 内容哈希得出，gzip 版本只压缩一次
+     */
+    public record Encoded(String etag, byte[] json, byte[] gzip) {
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((ChapterKey k, BookContent v) -> weigh(v))
+                .recordStats()
+                .build();
+        responses = Caffeine.newBuilder()
+                .maximumWeight(responseMaxBytes)
+                .weigher((ChapterKey k, Encoded v) -> v.json().length + v.gzip().length + ENTRY_OVERHEAD)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 命中直接返回；未命中调用 loader 读库并放入缓存（loader 返回 null 不缓存）
+     */
+    public BookContent get(Long bookId, Integer order, Supplier<BookContent> loader) {
+        if (bookId == null || order == null) return loader.get();
+        return cache.get(new ChapterKey(bookId, order), k -> loader.get());
+    }
+
+    /**
+     * 直接放入缓存：用于在缓存之外生成的章节（如 PDF 懒加载提取），避免慢操作占住 Caffeine 的加载锁
+     */
+    public void put(Long bookId, Integer order, BookContent chapter) {
+        if (bookId == null || order == null || chapter == null) return;
+        cache.put(new ChapterKey(bookId, order), chapter);
+    }
+
+    /**
+     * 序列化后的响应体；未命中时调用 encoder 生成（返回 null 不缓存）
+     */
+    public Encoded getEncoded(Long bookId, Integer order, Supplier<Encoded> encoder) {
+        if (bookId == null || order == null) return encoder.get();
+        return responses.get(new ChapterKey(bookId, order), k -> encoder.get());
+    }
+
+    public Encoded getEncodedIfPresent(Long bookId, Integer order) {
+        if (bookId == null || order == null) return null;
+        return responses.getIfPresent(new ChapterKey(bookId, order));
+    }
+
+    public BookContent getIfPresent(Long bookId, Integer order) {
+        if (bookId == null || order == null) return null;
+        return cache.getIfPresent(new ChapterKey(bookId, order));
+    }
+
+    public void evictBook(Long bookId) {
+        if (bookId == null) return;
+        cache.asMap().keySet().removeIf(k -> k.bookId() == bookId);
+        responses.asMap().keySet().removeIf(k -> k.bookId() == bookId);
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats s = cache.stats();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("entries", cache.estimatedSize());
+        m.put("bytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L));
+        m.put("maxBytes", maxBytes);
+        m.put("hits", s.hitCount());
+        m.put("misses", s.missCount());
+        m.put("hitRate", s.hitRate());
+        m.put("evictions", s.evictionCount());
+        m.put("evictedBytes", s.evictionWeight());
+        CacheStats rs = responses.stats();
+        m.put("responseEntries", responses.estimatedSize());
+        m.put("responseBytes", responses.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L));
+        m.put("responseHits", rs.hitCount());
+        m.put("responseMisses", rs.missCount());
+        return m;
+    }
+
+    // Java 字符串按 UTF-16 估算，每字符 2 字节
+    private static int weigh(BookContent c) {
+        long chars = 0;
+        if (c.getChapterContent() != null) chars += c.getChapterContent().length();
+        if (c.getChapterTitle() != null) chars += c.getChapterTitle().length();
+        return (int) Math.min(Integer.MAX_VALUE, chars * 2 + ENTRY_OVERHEAD);
+    }
+
+    private record ChapterKey(long bookId, int order) {
+    }
+}
@@ -0,0 +1,1032 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.Utils.CjkTokenizer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 进程内倒排索引（文档粒度为章节）
+ *  - 按段组织，每次写入生成一个不可变段，写完不再修改：
+ *      seg_N.tdx  词典：按 UTF-8 字节序排好的定长表 + 词项字节，内存映射后二分查找，不占堆
+ *      seg_N.pst  倒排表：每个文档 [文档号差值, 出现次数, 位置字节数, 位置差值...]，内存映射按需解码
+ *      seg_N.doc  文档表：章节 id / 书 id / 章节序号 / 词项数 / 正文在 .txt 中的位置
+ *      seg_N.txt  章节标题 + 纯文本（UTF-16 定长编码，按 char 下标直接定位），内存映射，查询时据此截取摘要，不回库读章节
+ *  - 删除、重建某本书都不改旧段：清单里记录每本书“从哪个段起有效”，更早段里该书的文档查询时跳过，合并时丢弃
+ *  - 段数超过 MERGE_FACTOR 时把最小的若干段合并成一个（位置字节原样拷贝，只重排文档号）
+ *  - 清单 index.meta 先写临时文件再原子改名；打开时清理不在清单里的段文件（崩溃残留、Windows 上映射中删不掉的旧段）
+ *  - 清单版本与当前格式不符（旧版本的索引）时按空索引打开，旧段文件随之清理，需调用一次重建
+ *  - 查询无锁，拿的是不可变快照；写入（加书 / 删书 / 合并）串行执行
+ */
+public class FullTextIndex implements Closeable {
+
+    private static final int MAGIC = 0x49525844; // "IRXD"
+    private static final int VERSION = 2;
+    private static final String META = "index.meta";
+    private static final Pattern SEGMENT_FILE = Pattern.compile("seg_(\\d+)\\.(tdx|pst|doc|txt)");
+
+    // 段数超过该值触发合并，每次合并最小的这么多段
+    private static final int MERGE_FACTOR = 10;
+    // 单段倒排文件按 int 寻址，超过这个大小的段不再参与合并
+    private static final long MAX_MERGE_BYTES = 1L << 30;
+    // 书被删除后在清单中的标记：任何段里的文档都无效
+    private static final int DELETED = Integer.MAX_VALUE;
+
+    // 摘要：命中位置前后各取多少字符
+    private static final int SNIPPET_BEFORE = 30;
+    private static final int SNIPPET_AFTER = 60;
+
+    // BM25 参数
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * 待索引的章节，text 为纯文本（偏移以它为准），title 为章节标题（随正文存入段内，查询结果直接带出）
+     */
+    public record Doc(long chapterId, long bookId, int chapterOrder, String text, String title) {
+        public Doc(long chapterId, long bookId, int chapterOrder, String text) {
+            this(chapterId, bookId, chapterOrder, text, null);
+        }
+    }
+
+    /**
+     * 命中：offset 为第一处匹配在章节纯文本中的 char 下标；snippet 为纯文本中 [snippetOffset, snippetOffset + 长度) 一段
+     */
+    public record Hit(long chapterId, long bookId, int chapterOrder, int offset, int matches, double score,
+                      String chapterTitle, String snippet, int snippetOffset) {}
+
+    private record Snapshot(List<Segment> segments, Map<Long, Integer> liveFrom) {}
+
+    private final Path dir;
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot;
+    private int nextSegmentId;
+
+    private long merges;
+    private long lastMergeMillis;
+
+    public FullTextIndex(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        List<Segment> segments = new ArrayList<>();
+        Map<Long, Integer> liveFrom = new HashMap<>();
+        Path meta = dir.resolve(META);
+        if (Files.exists(meta)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(meta)))) {
+                if (in.readInt() != MAGIC) throw new IOException("索引清单格式不符: " + meta);
+                int version = in.readInt();
+                if (version == VERSION) {
+                    nextSegmentId = in.readInt();
+                    int segCount = in.readInt();
+                    for (int i = 0; i < segCount; i++) segments.add(Segment.open(dir, in.readInt()));
+                    int liveCount = in.readInt();
+                    for (int i = 0; i < liveCount; i++) liveFrom.put(in.readLong(), in.readInt());
+                } else {
+                    System.out.println("[全文索引] 索引格式已升级（" + version + " -> " + VERSION + "），旧索引作废，请调用一次重建: " + dir);
+                }
+            }
+        }
+        snapshot = new Snapshot(List.copyOf(segments), Map.copyOf(liveFrom));
+        deleteOrphans();
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * 写入（或整体替换）若干本书的章节，生成一个新段；书的旧文档随之失效
+     * @param books 书 id → 该书全部章节；章节为空表示该书没有可索引的正文
+     */
+    public void addBooks(Map<Long, List<Doc>> books) throws IOException {
+        if (books.isEmpty()) return;
+        synchronized (writeLock) {
+            Snapshot snap = snapshot;
+            int id = nextSegmentId++;
+            List<Doc> docs = new ArrayList<>();
+            books.values().forEach(docs::addAll);
+            List<Segment> segments = new ArrayList<>(snap.segments);
+            if (!docs.isEmpty()) segments.add(writeSegment(dir, id, docs));
+            Map<Long, Integer> liveFrom = new HashMap<>(snap.liveFrom);
+            for (Long bookId : books.keySet()) liveFrom.put(bookId, id);
+            commit(segments, liveFrom);
+            mergeIfNeeded();
+        }
+    }
+
+    public void addBook(long bookId, List<Doc> docs) throws IOException {
+        addBooks(Map.of(bookId, docs));
+    }
+
+    public void deleteBook(long bookId) throws IOException {
+        synchronized (writeLock) {
+            Snapshot snap = snapshot;
+            Map<Long, Integer> liveFrom = new HashMap<>(snap.liveFrom);
+            liveFrom.put(bookId, DELETED);
+            commit(new ArrayList<>(snap.segments), liveFrom);
+        }
+    }
+
+    /**
+     * 全部段合并为一个（离线重建的最后一步），合并后不再有失效文档，清单里的书籍标记一并清空
+     */
+    public void forceMerge() throws IOException {
+        synchronized (writeLock) {
+            Snapshot snap = snapshot;
+            if (snap.segments.size() <= 1 && snap.liveFrom.isEmpty()) return;
+            List<Segment> merged = new ArrayList<>();
+            if (!snap.segments.isEmpty()) {
+                Segment m = merge(snap.segments, snap);
+                if (m != null) merged.add(m);
+            }
+            commit(merged, new HashMap<>());
+        }
+    }
+
+    // ---------------------------------------------------------------- 查询
+
+    /**
+     * 短语查询：查询串分词后所有词项须按原相对位置出现（标点、空白只占位不比较）；末尾单字按前缀匹配
+     * 结果按 BM25（以短语命中次数为词频）排序
+     */
+    public List<Hit> search(String query, int limit) {
+        if (query == null || query.isBlank() || limit <= 0) return List.of();
+        Snapshot snap = snapshot;
+        List<Candidate> found = new ArrayList<>();
+
+        CjkTokenizer.Query q = CjkTokenizer.parseQuery(query);
+        if (q.isEmpty()) return List.of();
+        byte[] prefix = q.prefix() == null ? null : q.prefix().getBytes(StandardCharsets.UTF_8);
+
+        if (q.terms().isEmpty()) {
+            for (Segment seg : snap.segments) seg.collectPrefix(prefix, q.leading(), snap.liveFrom, found);
+        } else {
+            List<String> unique = new ArrayList<>(new LinkedHashSet<>(q.terms()));
+            byte[][] terms = new byte[unique.size()][];
+            for (int i = 0; i < terms.length; i++) terms[i] = unique.get(i).getBytes(StandardCharsets.UTF_8);
+            int[] tokenTerm = new int[q.terms().size()];
+            for (int i = 0; i < tokenTerm.length; i++) tokenTerm[i] = unique.indexOf(q.terms().get(i));
+            PhraseQuery pq = new PhraseQuery(terms, tokenTerm, q.deltas(), prefix, q.prefixDelta(), q.leading());
+            for (Segment seg : snap.segments) seg.collectPhrase(pq, snap.liveFrom, found);
+        }
+        if (found.isEmpty()) return List.of();
+
+        long totalDocs = 0, totalLength = 0;
+        for (Segment seg : snap.segments) {
+            totalDocs += seg.docCount;
+            totalLength += seg.totalLength;
+        }
+        double avgLength = Math.max(1.0, (double) totalLength / Math.max(1, totalDocs));
+        double idf = Math.log(1 + (totalDocs - found.size() + 0.5) / (found.size() + 0.5));
+
+        // 先只按分数取前 limit 个，摘要和标题只为最终结果读取
+        PriorityQueue<Scored> top = new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+        for (Candidate c : found) {
+            Segment seg = c.segment;
+            double tf = c.matches;
+            double norm = tf + K1 * (1 - B + B * seg.lengths[c.doc] / avgLength);
+            double score = idf * tf * (K1 + 1) / norm;
+            if (top.size() < limit) {
+                top.add(new Scored(c, score));
+            } else if (score > top.peek().score()) {
+                top.poll();
+                top.add(new Scored(c, score));
+            }
+        }
+        int queryLength = query.strip().length();
+        List<Hit> hits = new ArrayList<>(top.size());
+        for (Scored sc : top) {
+            Candidate c = sc.candidate();
+            Segment seg = c.segment;
+            int textLen = seg.textLens[c.doc];
+            int from = Math.max(0, Math.min(c.offset, textLen) - SNIPPET_BEFORE);
+            int to = Math.max(from, Math.min(textLen, c.offset + queryLength + SNIPPET_AFTER));
+            hits.add(new Hit(seg.chapterIds[c.doc], seg.bookIds[c.doc], seg.orders[c.doc], c.offset, c.matches,
+                    sc.score(), seg.title(c.doc), seg.text(c.doc, from, to), from));
+        }
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed()
+                .thenComparingLong(Hit::bookId).thenComparingInt(Hit::chapterOrder));
+        return hits;
+    }
+
+    public Map<String, Object> stats() {
+        Snapshot snap = snapshot;
+        long docs = 0, bytes = 0;
+        for (Segment seg : snap.segments) {
+            docs += seg.docCount;
+            bytes += seg.bytes;
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("dir", dir.toAbsolutePath().toString());
+        m.put("segments", snap.segments.size());
+        m.put("docs", docs); // 含尚未合并掉的失效文档
+        m.put("bytes", bytes);
+        m.put("trackedBooks", snap.liveFrom.size());
+        m.put("merges", merges);
+        m.put("lastMergeMillis", lastMergeMillis);
+        return m;
+    }
+
+    @Override
+    public void close() {
+        // 映射随段对象被回收后释放；这里只是让新的查询拿不到旧段
+        snapshot = new Snapshot(List.of(), Map.of());
+    }
+
+    // ---------------------------------------------------------------- 写入 / 合并
+
+    private void commit(List<Segment> segments, Map<Long, Integer> liveFrom) throws IOException {
+        Path tmp = dir.resolve(META + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nextSegmentId);
+            out.writeInt(segments.size());
+            for (Segment seg : segments) out.writeInt(seg.id);
+            out.writeInt(liveFrom.size());
+            for (Map.Entry<Long, Integer> e : liveFrom.entrySet()) {
+                out.writeLong(e.getKey());
+                out.writeInt(e.getValue());
+            }
+        }
+        Files.move(tmp, dir.resolve(META), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Snapshot old = snapshot;
+        snapshot = new Snapshot(List.copyOf(segments), Map.copyOf(liveFrom));
+        for (Segment seg : old.segments) {
+            if (!segments.contains(seg)) seg.deleteFiles();
+        }
+    }
+
+    private void mergeIfNeeded() throws IOException {
+        while (true) {
+            Snapshot snap = snapshot;
+            List<Segment> small = new ArrayList<>();
+            for (Segment seg : snap.segments) if (seg.bytes < MAX_MERGE_BYTES) small.add(seg);
+            if (snap.segments.size() <= MERGE_FACTOR || small.size() < 2) return;
+            small.sort(Comparator.comparingLong(s -> s.bytes));
+            List<Segment> inputs = small.subList(0, Math.min(MERGE_FACTOR, small.size()));
+            Segment merged = merge(inputs, snap);
+            List<Segment> segments = new ArrayList<>(snap.segments);
+            segments.removeAll(inputs);
+            if (merged != null) segments.add(merged);
+            commit(segments, new HashMap<>(snap.liveFrom));
+        }
+    }
+
+    /**
+     * 合并若干段为一个新段：跳过失效文档，其余文档按段顺序重新编号，倒排表按词项多路归并
+     * @return 没有有效文档时返回 null
+     */
+    private Segment merge(List<Segment> inputs, Snapshot snap) throws IOException {
+        long start = System.currentTimeMillis();
+        int[][] remap = new int[inputs.size()][];
+        int liveDocs = 0;
+        for (int s = 0; s < inputs.size(); s++) {
+            Segment seg = inputs.get(s);
+            remap[s] = new int[seg.docCount];
+            for (int d = 0; d < seg.docCount; d++) {
+                remap[s][d] = seg.isLive(d, snap.liveFrom) ? liveDocs++ : -1;
+            }
+        }
+        if (liveDocs == 0) return null;
+
+        int id = nextSegmentId++;
+        DocTable docs = new DocTable(liveDocs);
+        for (int s = 0; s < inputs.size(); s++) {
+            Segment seg = inputs.get(s);
+            for (int d = 0; d < seg.docCount; d++) {
+                if (remap[s][d] >= 0) docs.add(seg.chapterIds[d], seg.bookIds[d], seg.orders[d], seg.lengths[d]);
+            }
+        }
+
+        // 每段一个词典游标，按词项字节序归并；同一词项按段顺序拼接，保证新文档号递增
+        PriorityQueue<TermCursor> heap = new PriorityQueue<>((a, b) -> {
+            int c = Arrays.compareUnsigned(a.term, b.term);
+            return c != 0 ? c : Integer.compare(a.segIndex, b.segIndex);
+        });
+        for (int s = 0; s < inputs.size(); s++) {
+            TermCursor tc = new TermCursor(inputs.get(s), s);
+            if (tc.advance()) heap.add(tc);
+        }
+
+        try (SegmentOutput out = new SegmentOutput(dir, id)) {
+            // 正文按新文档号顺序原样拷贝
+            int d0 = 0;
+            for (int s = 0; s < inputs.size(); s++) {
+                Segment seg = inputs.get(s);
+                for (int d = 0; d < seg.docCount; d++) {
+                    if (remap[s][d] >= 0) docs.setText(d0++, out.copyText(seg, d), seg.titleLens[d], seg.textLens[d]);
+                }
+            }
+            Bytes postings = new Bytes(64);
+            byte[] scratch = new byte[64];
+            List<TermCursor> group = new ArrayList<>();
+            while (!heap.isEmpty()) {
+                group.clear();
+                TermCursor first = heap.poll();
+                group.add(first);
+                while (!heap.isEmpty() && Arrays.equals(heap.peek().term, first.term)) group.add(heap.poll());
+
+                postings.size = 0;
+                int df = 0, lastDoc = -1;
+                for (TermCursor tc : group) {
+                    PostingCursor pc = tc.segment.postings(tc.index);
+                    int[] map = remap[tc.segIndex];
+                    while (pc.next()) {
+                        int newDoc = map[pc.doc];
+                        if (newDoc < 0) continue;
+                        postings.writeVarInt(newDoc - lastDoc);
+                        postings.writeVarInt(pc.freq);
+                        postings.writeVarInt(pc.posLen);
+                        if (scratch.length < pc.posLen) scratch = new byte[Math.max(pc.posLen, scratch.length * 2)];
+                        pc.copyPositions(scratch);
+                        postings.write(scratch, 0, pc.posLen);
+                        lastDoc = newDoc;
+                        df++;
+                    }
+                }
+                if (df > 0) out.addTerm(first.term, df, postings);
+                for (TermCursor tc : group) if (tc.advance()) heap.add(tc);
+            }
+            out.finish(docs);
+        }
+        merges++;
+        lastMergeMillis = System.currentTimeMillis() - start;
+        return Segment.open(dir, id);
+    }
+
+    /**
+     * 从章节文本直接构建一个段：词项 → 倒排表全部在内存中拼好，排序后顺序写出
+     */
+    static Segment writeSegment(Path dir, int id, List<Doc> docs) throws IOException {
+        Map<String, PostingBuilder> terms = new HashMap<>();
+        DocTable table = new DocTable(docs.size());
+        for (int d = 0; d < docs.size(); d++) {
+            Doc doc = docs.get(d);
+            int docId = d;
+            int[] length = {0};
+            if (doc.text() != null) {
+                CjkTokenizer.tokenize(doc.text(), (t, off) -> {
+                    terms.computeIfAbsent(t, k -> new PostingBuilder()).add(docId, off);
+                    length[0]++;
+                });
+            }
+            table.add(doc.chapterId(), doc.bookId(), doc.chapterOrder(), length[0]);
+        }
+
+        byte[][] keys = new byte[terms.size()][];
+        PostingBuilder[] values = new PostingBuilder[terms.size()];
+        Integer[] order = new Integer[terms.size()];
+        int i = 0;
+        for (Map.Entry<String, PostingBuilder> e : terms.entrySet()) {
+            keys[i] = e.getKey().getBytes(StandardCharsets.UTF_8);
+            values[i] = e.getValue();
+            order[i] = i;
+            i++;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+
+        try (SegmentOutput out = new SegmentOutput(dir, id)) {
+            for (int d = 0; d < docs.size(); d++) {
+                Doc doc = docs.get(d);
+                String title = doc.title() == null ? "" : doc.title();
+                String text = doc.text() == null ? "" : doc.text();
+                table.setText(d, out.addText(title, text), title.length(), text.length());
+            }
+            for (int k : order) {
+                PostingBuilder pb = values[k];
+                pb.finishDoc();
+                out.addTerm(keys[k], pb.df, pb.out);
+                values[k] = null;
+            }
+            out.finish(table);
+        }
+        return Segment.open(dir, id);
+    }
+
+    private void deleteOrphans() {
+        Set<Integer> live = new HashSet<>();
+        for (Segment seg : snapshot.segments) live.add(seg.id);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(p -> {
+                Matcher m = SEGMENT_FILE.matcher(p.getFileName().toString());
+                if (m.matches() && !live.contains(Integer.parseInt(m.group(1)))) {
+                    try {
+                        Files.deleteIfExists(p);
+                    } catch (IOException ignored) {
+                        // 下次打开时再删
+                    }
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("[全文索引] 清理残留段文件失败: " + e.getMessage());
+        }
+    }
+
+    // ---------------------------------------------------------------- 段
+
+    private record Candidate(Segment segment, int doc, int matches, int offset) {}
+
+    private record Scored(Candidate candidate, double score) {}
+
+    /**
+     * 短语查询：tokenDelta / prefixDelta 为各词项相对首个词项的字符偏移；prefix 非空时末尾还有一个按前缀匹配的单字
+     * leading 为查询串开头到首个词项的字符数，命中偏移据此回推到查询串开头
+     */
+    private record PhraseQuery(byte[][] terms, int[] tokenTerm, int[] tokenDelta, byte[] prefix, int prefixDelta, int leading) {}
+
+    static final class Segment {
+        private static final int HEADER = 12;
+        private static final int ENTRY = 24; // blobOff, blobLen, df, postLen, postOff(long)
+        private static final int DOC_ENTRY = 40; // chapterId, bookId, order, length, textOff(long), titleLen, textLen
+
+        final int id;
+        final int docCount;
+        final long[] chapterIds;
+        final long[] bookIds;
+        final int[] orders;
+        final int[] lengths;
+        // 标题紧接着正文存放：textOffs 为标题起点的 char 下标，正文从 textOffs + titleLens 开始
+        final long[] textOffs;
+        final int[] titleLens;
+        final int[] textLens;
+        final long totalLength;
+        final int termCount;
+        final long bytes;
+        private final ByteBuffer dict;
+        private final ByteBuffer post;
+        private final ByteBuffer textBytes;
+        private final CharBuffer text;
+        private final int blobBase;
+        private final Path dir;
+
+        private Segment(Path dir, int id) throws IOException {
+            this.dir = dir;
+            this.id = id;
+            this.dict = map(file(dir, id, "tdx"));
+            this.post = map(file(dir, id, "pst"));
+            this.textBytes = map(file(dir, id, "txt"));
+            this.text = textBytes.asCharBuffer();
+            if (dict.getInt(0) != MAGIC || dict.getInt(4) != VERSION) throw new IOException("索引段格式不符: seg_" + id);
+            this.termCount = dict.getInt(8);
+            this.blobBase = HEADER + termCount * ENTRY;
+
+            ByteBuffer docBuf = ByteBuffer.wrap(Files.readAllBytes(file(dir, id, "doc")));
+            if (docBuf.getInt() != MAGIC || docBuf.getInt() != VERSION) throw new IOException("索引段格式不符: seg_" + id);
+            docCount = docBuf.getInt();
+            chapterIds = new long[docCount];
+            bookIds = new long[docCount];
+            orders = new int[docCount];
+            lengths = new int[docCount];
+            textOffs = new long[docCount];
+            titleLens = new int[docCount];
+            textLens = new int[docCount];
+            long total = 0;
+            for (int d = 0; d < docCount; d++) {
+                chapterIds[d] = docBuf.getLong();
+                bookIds[d] = docBuf.getLong();
+                orders[d] = docBuf.getInt();
+                lengths[d] = docBuf.getInt();
+                textOffs[d] = docBuf.getLong();
+                titleLens[d] = docBuf.getInt();
+                textLens[d] = docBuf.getInt();
+                total += lengths[d];
+            }
+            totalLength = total;
+            bytes = dict.capacity() + post.capacity() + textBytes.capacity() + HEADER + (long) docCount * DOC_ENTRY;
+        }
+
+        static Segment open(Path dir, int id) throws IOException {
+            return new Segment(dir, id);
+        }
+
+        static Path file(Path dir, int id, String ext) {
+            return dir.resolve("seg_" + id + "." + ext);
+        }
+
+        private static ByteBuffer map(Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+        }
+
+        String title(int doc) {
+            int off = (int) textOffs[doc];
+            return titleLens[doc] == 0 ? null : text.subSequence(off, off + titleLens[doc]).toString();
+        }
+
+        /**
+         * 章节纯文本的 [from, to) 一段
+         */
+        String text(int doc, int from, int to) {
+            int off = (int) textOffs[doc] + titleLens[doc];
+            return text.subSequence(off + from, off + to).toString();
+        }
+
+        boolean isLive(int doc, Map<Long, Integer> liveFrom) {
+            Integer from = liveFrom.get(bookIds[doc]);
+            return from == null || id >= from;
+        }
+
+        /**
+         * 二分查找词项，找到返回下标，否则返回 -(插入点) - 1
+         */
+        int find(byte[] key) {
+            int lo = 0, hi = termCount - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = compareTerm(mid, key);
+                if (c < 0) lo = mid + 1;
+                else if (c > 0) hi = mid - 1;
+                else return mid;
+            }
+            return -(lo + 1);
+        }
+
+        private int compareTerm(int i, byte[] key) {
+            int base = HEADER + i * ENTRY;
+            int off = blobBase + dict.getInt(base);
+            int len = dict.getInt(base + 4);
+            int n = Math.min(len, key.length);
+            for (int k = 0; k < n; k++) {
+                int c = Integer.compare(dict.get(off + k) & 0xff, key[k] & 0xff);
+                if (c != 0) return c;
+            }
+            return Integer.compare(len, key.length);
+        }
+
+        private boolean startsWith(int i, byte[] prefix) {
+            int base = HEADER + i * ENTRY;
+            if (dict.getInt(base + 4) < prefix.length) return false;
+            int off = blobBase + dict.getInt(base);
+            for (int k = 0; k < prefix.length; k++) if (dict.get(off + k) != prefix[k]) return false;
+            return true;
+        }
+
+        byte[] term(int i) {
+            int base = HEADER + i * ENTRY;
+            byte[] t = new byte[dict.getInt(base + 4)];
+            dict.get(blobBase + dict.getInt(base), t);
+            return t;
+        }
+
+        int df(int i) {
+            return dict.getInt(HEADER + i * ENTRY + 8);
+        }
+
+        PostingCursor postings(int i) {
+            int base = HEADER + i * ENTRY;
+            int len = dict.getInt(base + 12);
+            int off = (int) dict.getLong(base + 16);
+            return new PostingCursor(post, off, off + len);
+        }
+
+        void collectPhrase(PhraseQuery q, Map<Long, Integer> liveFrom, List<Candidate> out) {
+            byte[][] terms = q.terms();
+            int k = terms.length;
+            int[] idx = new int[k];
+            Integer[] byDf = new Integer[k];
+            for (int t = 0; t < k; t++) {
+                idx[t] = find(terms[t]);
+                if (idx[t] < 0) return; // 本段缺任一词项即无命中
+                byDf[t] = t;
+            }
+            Arrays.sort(byDf, Comparator.comparingInt(t -> df(idx[t])));
+
+            // 以最稀有的词项为候选，其余词项依次求交，只解码候选文档的位置
+            List<int[][]> positions = new ArrayList<>();
+            IntList docs = new IntList();
+            int rarest = byDf[0];
+            PostingCursor pc = postings(idx[rarest]);
+            while (pc.next()) {
+                if (!isLive(pc.doc, liveFrom)) continue;
+                int[][] pos = new int[k + 1][];
+                pos[rarest] = pc.positions();
+                docs.add(pc.doc);
+                positions.add(pos);
+            }
+            for (int r = 1; r < k && docs.size > 0; r++) {
+                int t = byDf[r];
+                PostingCursor c = postings(idx[t]);
+                IntList keptDocs = new IntList();
+                List<int[][]> keptPos = new ArrayList<>();
+                boolean has = c.next();
+                for (int j = 0; j < docs.size && has; j++) {
+                    int doc = docs.get(j);
+                    while (has && c.doc < doc) has = c.next();
+                    if (has && c.doc == doc) {
+                        int[][] pos = positions.get(j);
+                        pos[t] = c.positions();
+                        keptDocs.add(doc);
+                        keptPos.add(pos);
+                    }
+                }
+                docs = keptDocs;
+                positions = keptPos;
+            }
+            if (q.prefix() != null && docs.size > 0) collectPrefixPositions(q.prefix(), docs, positions, k);
+
+            // 校验相对位置：首个词项在 p，则第 i 个词项须在 p + delta[i] - delta[0]
+            int[] tokenTerm = q.tokenTerm();
+            int[] tokenDelta = q.tokenDelta();
+            for (int j = 0; j < docs.size; j++) {
+                int[][] pos = positions.get(j);
+                if (q.prefix() != null && pos[k] == null) continue;
+                int matches = 0, first = -1;
+                outer:
+                for (int p : pos[tokenTerm[0]]) {
+                    int start = p - tokenDelta[0];
+                    for (int i = 1; i < tokenTerm.length; i++) {
+                        if (Arrays.binarySearch(pos[tokenTerm[i]], start + tokenDelta[i]) < 0) continue outer;
+                    }
+                    if (q.prefix() != null && Arrays.binarySearch(pos[k], start + q.prefixDelta()) < 0) continue;
+                    if (first < 0) first = Math.max(0, start - q.leading());
+                    matches++;
+                }
+                if (matches > 0) out.add(new Candidate(this, docs.get(j), matches, first));
+            }
+        }
+
+        /**
+         * 末尾前缀单字：把以它开头的所有词项在候选文档中的位置合并到 positions[j][slot]
+         */
+        private void collectPrefixPositions(byte[] prefix, IntList docs, List<int[][]> positions, int slot) {
+            IntList[] acc = new IntList[docs.size];
+            int from = find(prefix);
+            if (from < 0) from = -from - 1;
+            for (int i = from; i < termCount && startsWith(i, prefix); i++) {
+                PostingCursor c = postings(i);
+                boolean has = c.next();
+                for (int j = 0; j < docs.size && has; j++) {
+                    int doc = docs.get(j);
+                    while (has && c.doc < doc) has = c.next();
+                    if (has && c.doc == doc) {
+                        if (acc[j] == null) acc[j] = new IntList();
+                        for (int p : c.positions()) acc[j].add(p);
+                    }
+                }
+            }
+            for (int j = 0; j < docs.size; j++) {
+                if (acc[j] == null) continue;
+                int[] merged = Arrays.copyOf(acc[j].a, acc[j].size);
+                Arrays.sort(merged);
+                positions.get(j)[slot] = merged;
+            }
+        }
+
+        /**
+         * 单字查询：该字要么是某个二元组的首字，要么是一段汉字的末字（单字词项），两者都以它为前缀
+         */
+        void collectPrefix(byte[] prefix, int leading, Map<Long, Integer> liveFrom, List<Candidate> out) {
+            int from = find(prefix);
+            if (from < 0) from = -from - 1;
+            Map<Integer, int[]> acc = new HashMap<>(); // doc → {matches, firstOffset}
+            for (int i = from; i < termCount && startsWith(i, prefix); i++) {
+                PostingCursor pc = postings(i);
+                while (pc.next()) {
+                    if (!isLive(pc.doc, liveFrom)) continue;
+                    int firstPos = pc.firstPosition();
+                    int[] a = acc.computeIfAbsent(pc.doc, d -> new int[]{0, Integer.MAX_VALUE});
+                    a[0] += pc.freq;
+                    a[1] = Math.min(a[1], firstPos);
+                }
+            }
+            acc.forEach((doc, a) -> out.add(new Candidate(this, doc, a[0], Math.max(0, a[1] - leading))));
+        }
+
+        void deleteFiles() {
+            for (String ext : new String[]{"tdx", "pst", "doc", "txt"}) {
+                try {
+                    Files.deleteIfExists(file(dir, id, ext));
+                } catch (IOException ignored) {
+                    // Windows 下仍被映射的文件删不掉，下次打开索引时清理
+                }
+            }
+        }
+    }
+
+    /**
+     * 顺序读取一个词项的倒排表；位置只在需要时解码，不需要时按字节数整体跳过
+     */
+    static final class PostingCursor {
+        private final ByteBuffer buf;
+        private int pos;
+        private final int end;
+        int doc = -1;
+        int freq;
+        int posLen;
+        private int posStart;
+
+        PostingCursor(ByteBuffer buf, int start, int end) {
+            this.buf = buf;
+            this.pos = start;
+            this.end = end;
+        }
+
+        boolean next() {
+            if (pos >= end) return false;
+            doc += readVarInt();
+            freq = readVarInt();
+            posLen = readVarInt();
+            posStart = pos;
+            pos += posLen;
+            return true;
+        }
+
+        int[] positions() {
+            int[] result = new int[freq];
+            int p = posStart, last = 0;
+            for (int i = 0; i < freq; i++) {
+                int v = 0, shift = 0;
+                byte b;
+                do {
+                    b = buf.get(p++);
+                    v |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                last += v;
+                result[i] = last;
+            }
+            return result;
+        }
+
+        int firstPosition() {
+            int p = posStart, v = 0, shift = 0;
+            byte b;
+            do {
+                b = buf.get(p++);
+                v |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return v;
+        }
+
+        void copyPositions(byte[] dst) {
+            buf.get(posStart, dst, 0, posLen);
+        }
+
+        private int readVarInt() {
+            int v = 0, shift = 0;
+            byte b;
+            do {
+                b = buf.get(pos++);
+                v |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return v;
+        }
+    }
+
+    private static final class TermCursor {
+        final Segment segment;
+        final int segIndex;
+        int index = -1;
+        byte[] term;
+
+        TermCursor(Segment segment, int segIndex) {
+            this.segment = segment;
+            this.segIndex = segIndex;
+        }
+
+        boolean advance() {
+            if (++index >= segment.termCount) return false;
+            term = segment.term(index);
+            return true;
+        }
+    }
+
+    /**
+     * 构建段时单个词项的倒排表：文档按顺序到达，当前文档的位置先攒在 pos 里，换文档时整体写出
+     */
+    private static final class PostingBuilder {
+        final Bytes out = new Bytes(8);
+        final Bytes pos = new Bytes(4);
+        int df;
+        int lastDoc = -1;
+        int curDoc = -1;
+        int freq;
+        int lastPos;
+
+        void add(int doc, int p) {
+            if (doc != curDoc) {
+                finishDoc();
+                curDoc = doc;
+                lastPos = 0;
+            }
+            pos.writeVarInt(p - lastPos);
+            lastPos = p;
+            freq++;
+        }
+
+        void finishDoc() {
+            if (curDoc < 0) return;
+            out.writeVarInt(curDoc - lastDoc);
+            out.writeVarInt(freq);
+            out.writeVarInt(pos.size);
+            out.write(pos.buf, 0, pos.size);
+            lastDoc = curDoc;
+            curDoc = -1;
+            df++;
+            freq = 0;
+            pos.size = 0;
+        }
+    }
+
+    private static final class DocTable {
+        final long[] chapterIds;
+        final long[] bookIds;
+        final int[] orders;
+        final int[] lengths;
+        final long[] textOffs;
+        final int[] titleLens;
+        final int[] textLens;
+        int size;
+
+        DocTable(int capacity) {
+            chapterIds = new long[capacity];
+            bookIds = new long[capacity];
+            orders = new int[capacity];
+            lengths = new int[capacity];
+            textOffs = new long[capacity];
+            titleLens = new int[capacity];
+            textLens = new int[capacity];
+        }
+
+        void setText(int doc, long off, int titleLen, int textLen) {
+            textOffs[doc] = off;
+            titleLens[doc] = titleLen;
+            textLens[doc] = textLen;
+        }
+
+        void add(long chapterId, long bookId, int order, int length) {
+            chapterIds[size] = chapterId;
+            bookIds[size] = bookId;
+            orders[size] = order;
+            lengths[size] = length;
+            size++;
+        }
+    }
+
+    /**
+     * 段文件写出：倒排表边写边落盘，词典定长表和词项字节攒在内存里，最后一次写出
+     */
+    private static final class SegmentOutput implements Closeable {
+        private final Path dir;
+        private final int id;
+        private final DataOutputStream pst;
+        private long pstSize;
+        private final DataOutputStream txt;
+        private long txtChars;
+        private final Bytes entries = new Bytes(1024);
+        private final Bytes blob = new Bytes(1024);
+        private int termCount;
+
+        SegmentOutput(Path dir, int id) throws IOException {
+            this.dir = dir;
+            this.id = id;
+            this.pst = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Segment.file(dir, id, "pst")), 1 << 16));
+            this.txt = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Segment.file(dir, id, "txt")), 1 << 16));
+        }
+
+        /**
+         * 写入一个文档的标题和正文，返回起点的 char 下标
+         */
+        long addText(String title, String text) throws IOException {
+            long off = reserveText(title.length() + text.length());
+            txt.writeChars(title);
+            txt.writeChars(text);
+            return off;
+        }
+
+        /**
+         * 合并时从旧段原样拷贝一个文档的标题和正文
+         */
+        long copyText(Segment seg, int doc) throws IOException {
+            int len = seg.titleLens[doc] + seg.textLens[doc];
+            long off = reserveText(len);
+            byte[] bytes = new byte[len * 2];
+            seg.textBytes.get((int) seg.textOffs[doc] * 2, bytes);
+            txt.write(bytes);
+            return off;
+        }
+
+        private long reserveText(int chars) throws IOException {
+            // 正文按 int 下标的 CharBuffer 访问
+            if (txtChars + chars > Integer.MAX_VALUE / 2) throw new IOException("索引段正文超过 2GB");
+            long off = txtChars;
+            txtChars += chars;
+            return off;
+        }
+
+        void addTerm(byte[] term, int df, Bytes postings) throws IOException {
+            if (pstSize + postings.size > Integer.MAX_VALUE) throw new IOException("索引段超过 2GB");
+            entries.writeInt(blob.size);
+            entries.writeInt(term.length);
+            entries.writeInt(df);
+            entries.writeInt(postings.size);
+            entries.writeLong(pstSize);
+            blob.write(term, 0, term.length);
+            pst.write(postings.buf, 0, postings.size);
+            pstSize += postings.size;
+            termCount++;
+        }
+
+        void finish(DocTable docs) throws IOException {
+            pst.flush();
+            txt.flush();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Segment.file(dir, id, "tdx")), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(termCount);
+                out.write(entries.buf, 0, entries.size);
+                out.write(blob.buf, 0, blob.size);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Segment.file(dir, id, "doc")), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(docs.size);
+                for (int d = 0; d < docs.size; d++) {
+                    out.writeLong(docs.chapterIds[d]);
+                    out.writeLong(docs.bookIds[d]);
+                    out.writeInt(docs.orders[d]);
+                    out.writeInt(docs.lengths[d]);
+                    out.writeLong(docs.textOffs[d]);
+                    out.writeInt(docs.titleLens[d]);
+                    out.writeInt(docs.textLens[d]);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                pst.close();
+            } finally {
+                txt.close();
+            }
+        }
+    }
+
+    static final class Bytes {
+        byte[] buf;
+        int size;
+
+        Bytes(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(size + extra, buf.length * 2));
+        }
+
+        void writeVarInt(int v) {
+            ensure(5);
+            while ((v & ~0x7f) != 0) {
+                buf[size++] = (byte) ((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            buf[size++] = (byte) (v >>> 24);
+            buf[size++] = (byte) (v >>> 16);
+            buf[size++] = (byte) (v >>> 8);
+            buf[size++] = (byte) v;
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        void write(byte[] src, int off, int len) {
+            ensure(len);
+            System.arraycopy(src, off, buf, size, len);
+            size += len;
+        }
+    }
+
+    static final class IntList {
+        int[] a = new int[16];
+        int size;
+
+        void add(int v) {
+            if (size == a.length) a = Arrays.copyOf(a, size * 2);
+            a[size++] = v;
+        }
+
+        int get(int i) {
+            return a[i];
+        }
+    }
+}
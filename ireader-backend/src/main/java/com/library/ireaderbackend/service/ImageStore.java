@@ -0,0 +1,142 @@
+package com.library.ireaderbackend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按内容寻址的图片存储（全站共享）
+ *  - 文件名为内容的 SHA-256：/static/img/ab/cd/abcd....jpg，相同图片无论来自哪本书只存一份
+ *  - 内容不变则 URL 不变，可以永久缓存（见 WebMvcConfig）
+ *  - 写入在独立线程池中异步并行执行；同一图片并发写入时只有一个线程真正落盘
+ */
+@Component
+public class ImageStore {
+
+    public static final String WEB_BASE = "/static/img/";
+
+    @Value("${ireader.image-store.dir:ireader/uploads/static/img}")
+    private String dir;
+
+    @Value("${ireader.image-store.writers:4}")
+    private int writers;
+
+    private Path root;
+    private ExecutorService executor;
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    // 统计
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        root = Paths.get(dir).toAbsolutePath();
+        AtomicInteger seq = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, writers), r -> {
+            Thread t = new Thread(r, "image-store-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 异步计算哈希并写入，返回图片的访问 URL
+     * @param ext 扩展名（不含点），用于浏览器识别类型
+     */
+    public CompletableFuture<String> store(byte[] data, String ext) {
+        return CompletableFuture.supplyAsync(() -> {
+            String hash = sha256(data);
+            String relative = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + normalizeExt(ext);
+            write(hash, root.resolve(relative), data);
+            return WEB_BASE + relative;
+        }, executor);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    private void write(String hash, Path target, byte[] data) {
+        if (Files.exists(target)) {
+            // 其他书已经存过同一张图：不再写盘
+            deduplicated.incrementAndGet();
+            bytesSaved.addAndGet(data.length);
+            return;
+        }
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(hash, mine);
+        if (existing != null) {
+            // 同一张图正由另一个线程写入，等它完成即可
+            existing.join();
+            deduplicated.incrementAndGet();
+            bytesSaved.addAndGet(data.length);
+            return;
+        }
+        try {
+            Files.createDirectories(target.getParent());
+            // 先写临时文件再原子改名，读者不会看到写了一半的图片
+            Path tmp = Files.createTempFile(target.getParent(), hash, ".tmp");
+            try {
+                Files.write(tmp, data);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            stored.incrementAndGet();
+            bytesWritten.addAndGet(data.length);
+            mine.complete(null);
+        } catch (IOException e) {
+            mine.completeExceptionally(e);
+            throw new UncheckedIOException(e);
+        } finally {
+            inFlight.remove(hash, mine);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("root", root.toString());
+        m.put("stored", stored.get());
+        m.put("deduplicated", deduplicated.get());
+        m.put("bytesWritten", bytesWritten.get());
+        m.put("bytesSaved", bytesSaved.get());
+        m.put("inFlight", inFlight.size());
+        return m;
+    }
+
+    private static String normalizeExt(String ext) {
+        if (ext == null || ext.isBlank()) return "bin";
+        String e = ext.toLowerCase(Locale.ROOT);
+        return e.equals("jpeg") ? "jpg" : e;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
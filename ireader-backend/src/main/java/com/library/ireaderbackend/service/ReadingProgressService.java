@@ -0,0 +1,248 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.dto.ContinueReadingItem;
+import com.library.ireaderbackend.entity.Book;
+import com.library.ireaderbackend.entity.ReadingProgress;
+import com.library.ireaderbackend.mapper.BookMapper;
+import com.library.ireaderbackend.mapper.ReadingProgressMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 阅读进度（独立的 reading_progress 表，不再借用 BOOKMARK 批注）
+ *  - 上报先进内存，按 (用户, 书) 合并：翻页时频繁上报，落库的只有每本书最后的位置
+ *  - 定时把待写进度按多行 upsert 批量落库；本节点读取时先看内存，落库延迟最多一个刷新间隔（失败时下次重试）
+ *  - 待写条数过半时在后台线程提前落库一次（不占用请求线程）；达到上限后新的 (用户, 书) 上报直接拒绝，
+ *    已在内存中的进度仍可覆盖，数据库长时间不可用时内存占用也有界；应用关闭前再写一次
+ *  - "继续阅读"一次连表查询，再把该用户内存中的待写进度合并进结果（请求线程不落库），不扫描批注表
+ *  - 多节点部署时各节点各自缓冲，库里的进度按时间较新者为准
+ */
+@Service
+public class ReadingProgressService {
+
+    // 每条 upsert 最多带多少行
+    private static final int FLUSH_CHUNK = 500;
+    private static final int DEFAULT_CONTINUE_LIMIT = 10;
+    private static final int MAX_CONTINUE_LIMIT = 50;
+
+    @Autowired
+    private ReadingProgressMapper readingProgressMapper;
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Value("${ireader.reading-progress.max-pending:50000}")
+    private int maxPending;
+
+    @Value("${ireader.reading-progress.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    // 用户 → (书 → 待落库的最新进度)；落库后按对象身份移除，不会误删期间的新上报
+    private final Map<Long, Map<Long, ReadingProgress>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // 同一时刻只做一次全量落库
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // 提前落库的后台线程：同一时刻最多排一个任务；落库失败后一个刷新间隔内不再提前触发，交给定时任务重试
+    private ExecutorService flusher;
+    private final AtomicBoolean earlyFlushQueued = new AtomicBoolean();
+    private volatile long lastFailure;
+
+    private final AtomicLong reported = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        flusher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "progress-flush");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 上报进度：只进内存，与同一本书尚未落库的进度合并
+     * @return false 表示待写进度已达上限、这次上报被丢弃（同一本书已有待写进度时总能覆盖）
+     */
+    public boolean report(ReadingProgress progress) {
+        if (progress.getUserId() == null || progress.getBookId() == null) {
+            throw new RuntimeException("userId 或 bookId 不能为空");
+        }
+        ReadingProgress p = new ReadingProgress();
+        p.setUserId(progress.getUserId());
+        p.setBookId(progress.getBookId());
+        p.setChapterOrder(progress.getChapterOrder());
+        p.setChapterOffset(progress.getChapterOffset());
+        p.setUpdateTime(LocalDateTime.now());
+        AtomicBoolean accepted = new AtomicBoolean(true);
+        // 放入与落库后的移除都在 compute 内完成，不会放进一个刚被移除的空表
+        pending.compute(p.getUserId(), (userId, books) -> {
+            if (books == null) books = new ConcurrentHashMap<>();
+            if (books.containsKey(p.getBookId())) {
+                books.put(p.getBookId(), p);
+            } else if (pendingCount.incrementAndGet() > maxPending) {
+                pendingCount.decrementAndGet();
+                accepted.set(false);
+            } else {
+                books.put(p.getBookId(), p);
+            }
+            return books.isEmpty() ? null : books;
+        });
+        if (!accepted.get()) {
+            rejected.incrementAndGet();
+            flushEarly();
+            return false;
+        }
+        reported.incrementAndGet();
+        if (pendingCount.get() >= maxPending / 2) flushEarly();
+        return true;
+    }
+
+    // 把一次全量落库交给后台线程，请求线程不等待
+    private void flushEarly() {
+        if (System.currentTimeMillis() - lastFailure < flushIntervalMs) return;
+        if (!earlyFlushQueued.compareAndSet(false, true)) return;
+        flusher.execute(() -> {
+            try {
+                flush();
+            } finally {
+                earlyFlushQueued.set(false);
+            }
+        });
+    }
+
+    public ReadingProgress getProgress(Long userId, Long bookId) {
+        Map<Long, ReadingProgress> books = pending.get(userId);
+        ReadingProgress p = books == null ? null : books.get(bookId);
+        return p != null ? p : readingProgressMapper.findOne(userId, bookId);
+    }
+
+    /**
+     * 继续阅读：最近读过的书及其进度，按最近阅读时间倒序
+     * 待写进度不在请求线程落库，而是覆盖库里同一本书的行后按时间合并；
+     * 库里多取待写条数那么多行，被覆盖掉的书不会让结果不足 size 条
+     */
+    public List<ContinueReadingItem> continueReading(Long userId, Integer limit) {
+        int size = limit == null || limit <= 0 ? DEFAULT_CONTINUE_LIMIT : Math.min(limit, MAX_CONTINUE_LIMIT);
+        Map<Long, ReadingProgress> books = pending.get(userId);
+        Map<Long, ReadingProgress> mine = books == null ? Map.of() : new HashMap<>(books);
+        if (mine.isEmpty()) return readingProgressMapper.findRecent(userId, size);
+
+        List<ContinueReadingItem> stored = readingProgressMapper.findRecent(userId, size + mine.size());
+        Map<Long, ContinueReadingItem> items = new HashMap<>();
+        for (ContinueReadingItem item : stored) items.put(item.getBookId(), item);
+        // 库里还没有进度行的书补查书籍信息；已删除的书查不到，和连表查询一样不返回
+        List<Long> missing = mine.keySet().stream().filter(id -> !items.containsKey(id)).toList();
+        Map<Long, Book> missingBooks = new HashMap<>();
+        if (!missing.isEmpty()) {
+            for (Book b : bookMapper.findByIds(missing)) missingBooks.put(b.getId(), b);
+        }
+
+        List<ContinueReadingItem> merged = new ArrayList<>(stored.size() + missing.size());
+        for (ContinueReadingItem item : stored) {
+            if (!mine.containsKey(item.getBookId())) merged.add(item);
+        }
+        for (ReadingProgress p : mine.values()) {
+            ContinueReadingItem item = new ContinueReadingItem();
+            ContinueReadingItem old = items.get(p.getBookId());
+            Book book = missingBooks.get(p.getBookId());
+            if (old != null) {
+                item.setTitle(old.getTitle());
+                item.setAuthor(old.getAuthor());
+                item.setCover(old.getCover());
+                item.setFileType(old.getFileType());
+            } else if (book != null) {
+                item.setTitle(book.getTitle());
+                item.setAuthor(book.getAuthor());
+                item.setCover(book.getCover());
+                item.setFileType(book.getFileType());
+            } else {
+                continue;
+            }
+            item.setBookId(p.getBookId());
+            item.setChapterOrder(p.getChapterOrder());
+            item.setChapterOffset(p.getChapterOffset());
+            item.setUpdateTime(p.getUpdateTime());
+            merged.add(item);
+        }
+        merged.sort(Comparator.comparing(ContinueReadingItem::getUpdateTime,
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        return merged.size() > size ? new ArrayList<>(merged.subList(0, size)) : merged;
+    }
+
+    @Scheduled(fixedDelayString = "${ireader.reading-progress.flush-interval-ms:5000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("pending", pendingCount.get());
+        m.put("pendingUsers", pending.size());
+        m.put("reported", reported.get());
+        m.put("written", written.get());
+        m.put("flushes", flushes.get());
+        m.put("rejected", rejected.get());
+        return m;
+    }
+
+    private void flushAll() {
+        if (pending.isEmpty()) return;
+        List<ReadingProgress> batch = new ArrayList<>(pendingCount.get());
+        for (Map<Long, ReadingProgress> books : pending.values()) batch.addAll(books.values());
+        if (write(batch)) flushes.incrementAndGet();
+    }
+
+    // 按块 upsert，每块成功后移除对应的待写进度；失败的留在内存中下次重试
+    private boolean write(List<ReadingProgress> batch) {
+        for (int i = 0; i < batch.size(); i += FLUSH_CHUNK) {
+            List<ReadingProgress> chunk = batch.subList(i, Math.min(i + FLUSH_CHUNK, batch.size()));
+            try {
+                readingProgressMapper.upsertBatch(chunk);
+            } catch (Exception e) {
+                lastFailure = System.currentTimeMillis();
+                System.out.println("[阅读进度] 落库失败，稍后重试: " + e.getMessage());
+                return false;
+            }
+            for (ReadingProgress p : chunk) {
+                pending.computeIfPresent(p.getUserId(), (userId, books) -> {
+                    if (books.remove(p.getBookId(), p)) pendingCount.decrementAndGet();
+                    return books.isEmpty() ? null : books;
+                });
+            }
+            written.addAndGet(chunk.size());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,359 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.Utils.ChapterCodec;
+import com.library.ireaderbackend.Utils.CjkTokenizer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.library.ireaderbackend.dto.BookSearchHit;
+import com.library.ireaderbackend.dto.BookSearchResult;
+import com.library.ireaderbackend.dto.SearchHit;
+import com.library.ireaderbackend.entity.Book;
+import com.library.ireaderbackend.entity.BookContent;
+import com.library.ireaderbackend.mapper.BookContentMapper;
+import com.library.ireaderbackend.mapper.BookMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 全文检索（进程内倒排索引，见 FullTextIndex）
+ *  - 书籍解析入库后异步写入索引，删除书籍时打删除标记；写索引都在单独的单线程里串行执行，不拖慢上传
+ *  - PDF 懒加载逐章提取正文时延迟合并：同一本书在 lazy-reindex-delay-seconds 内的多次提取只重建一次索引，
+ *    避免每提取一章就把整本书重读一遍
+ *  - 全站索引只收公开书籍（visibility = pending），私有上传只写书内索引，仅上传者本人可查
+ *  - 重建：在新目录里从数据库全量构建并合并成一个段，完成后切换 CURRENT 指针，旧索引在构建期间照常查询
+ *  - 书内查找：每本书另有一份按位置编码的小索引（BookTextIndex，books/{bookId}.bti），随全书索引一起写；
+ *    还没有索引文件的书（功能上线前入库的）首次查找时当场补建
+ *  - 查询结果的摘要和章节标题取自索引段里存的纯文本，不回库读章节
+ *  - 启动时只打开磁盘上已有的索引，不访问数据库；首次部署（及索引格式升级后）需调用一次重建
+ */
+@Service
+public class SearchService {
+
+    private static final String CURRENT = "CURRENT";
+    private static final String DEFAULT_INDEX = "index-0";
+    // 重建时每攒够这么多字符写一个段
+    private static final long REBUILD_BATCH_CHARS = 16L * 1024 * 1024;
+    private static final int MAX_LIMIT = 100;
+    private static final int MAX_BOOK_LIMIT = 1000;
+    // 过滤私有书后不够一页时最多取到这么多条命中
+    private static final int MAX_FETCH = 16 * MAX_LIMIT;
+
+    @Autowired
+    private BookMapper bookMapper;
+    @Autowired
+    private BookContentMapper bookContentMapper;
+
+    @Value("${ireader.search.dir:ireader/search-index}")
+    private String dir;
+
+    @Value("${ireader.search.book-cache-bytes:67108864}")
+    private long bookCacheBytes;
+
+    @Value("${ireader.search.lazy-reindex-delay-seconds:300}")
+    private long lazyReindexDelaySeconds;
+
+    private Path root;
+    private Path bookDir;
+    private volatile FullTextIndex index;
+    // 书内索引按文件大小计重缓存；同一本书并发加载 / 补建只执行一次
+    private Cache<Long, BookTextIndex> bookIndexes;
+    private ScheduledExecutorService executor;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    // 已排队等待索引的书：排队期间的重复触发只索引一次
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    // 已安排延迟索引的书：延迟期内再次触发不重复安排
+    private final Set<Long> delayed = ConcurrentHashMap.newKeySet();
+    private volatile String lastRebuild;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(dir).toAbsolutePath();
+        Files.createDirectories(root);
+        bookDir = root.resolve("books");
+        bookIndexes = Caffeine.newBuilder()
+                .maximumWeight(bookCacheBytes)
+                .weigher((Long id, BookTextIndex idx) -> idx.sizeInBytes())
+                .build();
+        Path current = root.resolve(CURRENT);
+        String name = Files.exists(current) ? Files.readString(current, StandardCharsets.UTF_8).strip() : DEFAULT_INDEX;
+        index = new FullTextIndex(root.resolve(name));
+        // 上次重建后没删掉的旧索引目录
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.filter(p -> Files.isDirectory(p) && p.getFileName().toString().startsWith("index-")
+                    && !p.getFileName().toString().equals(name)).forEach(SearchService::deleteQuietly);
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "search-index");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 书籍章节入库（或重新解析）后调用：异步把整本书写入索引，替换该书原有的索引
+     */
+    public void indexBookAsync(Long bookId) {
+        if (!queued.add(bookId)) return;
+        executor.execute(() -> {
+            queued.remove(bookId);
+            try {
+                indexBook(bookId);
+            } catch (Exception e) {
+                System.out.println("[全文索引] 索引书籍失败: " + bookId + " -> " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * PDF 懒加载提取章节后调用：延迟一段时间再索引整本书，期间的重复触发合并为一次
+     */
+    public void indexBookLater(Long bookId) {
+        if (!delayed.add(bookId)) return;
+        executor.schedule(() -> {
+            delayed.remove(bookId);
+            indexBookAsync(bookId);
+        }, lazyReindexDelaySeconds, TimeUnit.SECONDS);
+    }
+
+    public void deleteBookAsync(Long bookId) {
+        executor.execute(() -> {
+            try {
+                index.deleteBook(bookId);
+                Files.deleteIfExists(bookFile(bookId));
+                bookIndexes.invalidate(bookId);
+            } catch (Exception e) {
+                System.out.println("[全文索引] 删除书籍索引失败: " + bookId + " -> " + e.getMessage());
+            }
+        });
+    }
+
+    private void indexBook(Long bookId) throws IOException {
+        Book book = bookMapper.findById(bookId);
+        if (book == null) {
+            index.deleteBook(bookId);
+            Files.deleteIfExists(bookFile(bookId));
+            bookIndexes.invalidate(bookId);
+            return;
+        }
+        List<FullTextIndex.Doc> docs = loadDocs(book);
+        // 书改为私有时，原先写入全站索引的文档随删除标记失效
+        if (BookService.isPublic(book)) index.addBook(bookId, docs);
+        else index.deleteBook(bookId);
+        writeBookIndex(bookId, docs);
+    }
+
+    private void writeBookIndex(Long bookId, List<FullTextIndex.Doc> docs) throws IOException {
+        BookTextIndex.write(bookFile(bookId), docs);
+        bookIndexes.invalidate(bookId);
+    }
+
+    private Path bookFile(Long bookId) {
+        return bookDir.resolve(bookId + ".bti");
+    }
+
+    /**
+     * 读出整本书的章节并转成纯文本；PDF 懒加载尚未提取的章节没有正文，跳过
+     */
+    private List<FullTextIndex.Doc> loadDocs(Book book) {
+        List<FullTextIndex.Doc> docs = new ArrayList<>();
+        for (BookContent c : bookContentMapper.findByBookId(book.getId())) {
+            ChapterCodec.decode(c);
+            if (c.getChapterContent() == null) continue;
+            docs.add(new FullTextIndex.Doc(c.getId(), book.getId(), c.getChapterOrder(),
+                    CjkTokenizer.plainText(c.getChapterContent()), c.getChapterTitle()));
+        }
+        return docs;
+    }
+
+    /**
+     * 查询：返回按相关度排序的命中（书 / 章节 / 偏移）及摘要
+     * 摘要和章节标题直接取自索引段里存的纯文本，不回库读章节；只查一次书籍表用于可见性过滤和书名
+     */
+    public List<SearchHit> search(String query, int limit) {
+        int n = Math.max(1, Math.min(limit, MAX_LIMIT));
+        // 多取一些命中再按可见性过滤；过滤后不够一页且索引里还有更多命中时放大再查
+        for (int fetch = n * 2; ; fetch *= 4) {
+            List<FullTextIndex.Hit> hits = index.search(query, fetch);
+            List<SearchHit> result = toSearchHits(hits, n);
+            if (result.size() >= n || hits.size() < fetch || fetch >= MAX_FETCH) return result;
+        }
+    }
+
+    private List<SearchHit> toSearchHits(List<FullTextIndex.Hit> hits, int n) {
+        if (hits.isEmpty()) return List.of();
+        Map<Long, Book> books = new HashMap<>();
+        List<Long> bookIds = hits.stream().map(FullTextIndex.Hit::bookId).distinct().toList();
+        // 索引落后于可见性变更时按库里的当前状态过滤，私有书不出现在结果里
+        for (Book b : bookMapper.findByIds(bookIds)) {
+            if (BookService.isPublic(b)) books.put(b.getId(), b);
+        }
+
+        List<SearchHit> result = new ArrayList<>(n);
+        for (FullTextIndex.Hit h : hits) {
+            if (result.size() >= n) break;
+            Book book = books.get(h.bookId());
+            // 索引落后于数据库（书刚删除 / 转为私有）时跳过
+            if (book == null) continue;
+
+            SearchHit hit = new SearchHit();
+            hit.setBookId(h.bookId());
+            hit.setBookTitle(book.getTitle());
+            hit.setChapterId(h.chapterId());
+            hit.setChapterOrder(h.chapterOrder());
+            hit.setChapterTitle(h.chapterTitle());
+            hit.setOffset(h.offset());
+            hit.setMatches(h.matches());
+            hit.setScore(h.score());
+            // 空白逐字符替换成空格，不改变偏移
+            hit.setSnippet(h.snippet().replaceAll("\\s", " "));
+            hit.setSnippetOffset(h.snippetOffset());
+            result.add(hit);
+        }
+        return result;
+    }
+
+    /**
+     * 书内查找：返回命中总数和按阅读顺序排列的章节 + 字符区间（与批注 startOffset/endOffset 同一坐标）
+     * @param userId 当前登录用户，未登录为 null；书不存在或无权阅读（别人的私有上传）返回 null
+     */
+    public BookSearchResult searchInBook(Long bookId, Long userId, String query, int limit) {
+        // 先查权限再碰缓存 / 补建索引：无权的请求不会触发整本书的读取
+        Book book = bookMapper.findById(bookId);
+        if (!BookService.canRead(book, userId)) return null;
+        int n = Math.max(1, Math.min(limit, MAX_BOOK_LIMIT));
+        BookSearchResult result = new BookSearchResult();
+        result.setBookId(bookId);
+        result.setQuery(query);
+        BookTextIndex idx = bookIndexes.get(bookId, id -> loadBookIndex(book));
+        BookTextIndex.Result r = idx.search(query, n);
+        List<BookSearchHit> hits = new ArrayList<>(r.matches().size());
+        for (BookTextIndex.Match m : r.matches()) {
+            BookSearchHit hit = new BookSearchHit();
+            hit.setChapterId(m.chapterId());
+            hit.setChapterOrder(m.chapterOrder());
+            hit.setStartOffset(m.startOffset());
+            hit.setEndOffset(m.endOffset());
+            hits.add(hit);
+        }
+        result.setTotal(r.total());
+        result.setHits(hits);
+        return result;
+    }
+
+    // 缓存未命中：读索引文件；没有文件，或文件是旧格式 / 已损坏时从库里补建
+    private BookTextIndex loadBookIndex(Book book) {
+        try {
+            Path file = bookFile(book.getId());
+            if (Files.exists(file)) {
+                try {
+                    return BookTextIndex.read(file);
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("[全文索引] 书内索引不可用，重新构建: " + book.getId() + " -> " + e.getMessage());
+                }
+            }
+            BookTextIndex.write(file, loadDocs(book));
+            return BookTextIndex.read(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("书内索引加载失败: " + book.getId(), e);
+        }
+    }
+
+    /**
+     * 从数据库全量重建索引，在索引线程里执行（期间新到的增量更新排在重建之后，作用于新索引）
+     * @return false 表示已有重建在进行
+     */
+    public boolean rebuildAsync() {
+        if (!rebuilding.compareAndSet(false, true)) return false;
+        executor.execute(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                lastRebuild = "失败: " + e.getMessage();
+                System.out.println("[全文索引] 重建失败: " + e.getMessage());
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    private void rebuild() throws IOException {
+        long start = System.currentTimeMillis();
+        String name = "index-" + start;
+        FullTextIndex fresh = new FullTextIndex(root.resolve(name));
+        Map<Long, List<FullTextIndex.Doc>> batch = new LinkedHashMap<>();
+        long batchChars = 0;
+        int bookCount = 0;
+        for (Long bookId : bookMapper.findAllIds()) {
+            Book book = bookMapper.findById(bookId);
+            if (!BookService.isPublic(book)) continue;
+            List<FullTextIndex.Doc> docs = loadDocs(book);
+            writeBookIndex(bookId, docs);
+            batch.put(bookId, docs);
+            for (FullTextIndex.Doc d : docs) batchChars += d.text().length();
+            bookCount++;
+            if (batchChars >= REBUILD_BATCH_CHARS) {
+                fresh.addBooks(batch);
+                batch = new LinkedHashMap<>();
+                batchChars = 0;
+            }
+        }
+        fresh.addBooks(batch);
+        fresh.forceMerge();
+
+        // 先写指针再切换：进程在两步之间退出，下次启动也会打开新索引
+        Path tmp = root.resolve(CURRENT + ".tmp");
+        Files.writeString(tmp, name, StandardCharsets.UTF_8);
+        Files.move(tmp, root.resolve(CURRENT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        FullTextIndex old = index;
+        index = fresh;
+        old.close();
+        deleteQuietly(old.getDir());
+
+        lastRebuild = String.format("%d 本书，用时 %d ms", bookCount, System.currentTimeMillis() - start);
+        System.out.println("[全文索引] 重建完成: " + lastRebuild);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>(index.stats());
+        m.put("bookIndexesCached", bookIndexes.estimatedSize());
+        m.put("delayedBooks", delayed.size());
+        m.put("rebuilding", rebuilding.get());
+        m.put("lastRebuild", lastRebuild);
+        return m;
+    }
+
+    // Windows 下仍被映射的段文件删不掉，留给下次启动（不在清单里的段文件会被清理）
+    private static void deleteQuietly(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("[全文索引] 旧索引目录未能删除: " + dir + " -> " + e.getMessage());
+        }
+    }
+}
@@ -1,44 +1,208 @@
 package com.library.ireaderbackend.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.library.ireaderbackend.dto.ShelfItem;
+import com.library.ireaderbackend.dto.ShelfPage;
+import com.library.ireaderbackend.dto.ShelfSyncResult;
 import com.library.ireaderbackend.entity.Book;
-import com.library.ireaderbackend.entity.UserBookShelf;
-import com.library.ireaderbackend.mapper.BookMapper;
 import com.library.ireaderbackend.mapper.UserBookShelfMapper;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 书架
+ *  - 列表一次连表查询（user_shelf JOIN book），按加入时间倒序游标翻页，不再先查 id 再拼超长 IN
+ *  - 按用户缓存：同一用户的各页（及旧 /list 的整表结果）挂在同一个缓存项下，加书 / 移除时整项失效，
+ *    命中时不查库；带关键词的查询不缓存
+ *  - 书籍被修改 / 删除时全部失效（书名、封面会显示在书架上）
+ */
 @Service
 public class UserBookShelfService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    // 每个用户最多缓存多少页（前几页最常被访问，深翻页不缓存）
+    private static final int MAX_CACHED_PAGES = 16;
+    // 批量同步每条 SQL 最多带多少本书
+    private static final int SYNC_CHUNK = 500;
+
     @Autowired
     private UserBookShelfMapper userBookShelfMapper;
-    @Autowired
-    private BookMapper bookMapper;
 
-    public List<Book> getBooksByUser(Long userId, String keyword) {
-        List<UserBookShelf> shelf = userBookShelfMapper.findByUserId(userId);
-        if (shelf.isEmpty()) return new ArrayList<>();
-        List<Long> bookIds = shelf.stream().map(UserBookShelf::getBookId).toList();
+    @Value("${ireader.shelf-cache.max-users:10000}")
+    private long maxUsers;
+
+    @Value("${ireader.shelf-cache.expire-minutes:30}")
+    private long expireMinutes;
+
+    private Cache<Long, UserShelf> cache;
+    // 按查询计：命中不查库，未命中查一次
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // 单个用户的缓存内容：各页结果 + 旧接口的整表结果
+    private static class UserShelf {
+        final Map<String, ShelfPage> pages = new ConcurrentHashMap<>();
+        volatile List<Book> all;
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .build();
+    }
 
+    public List<Book> getBooksByUser(Long userId, String keyword) {
         if (keyword != null && !keyword.isEmpty()) {
-            return bookMapper.findByIdsAndKeyword(bookIds, keyword);
-        } else {
-            return bookMapper.findByIds(bookIds);
+            return userBookShelfMapper.findBooksByUserId(userId, keyword);
+        }
+        UserShelf shelf = cache.get(userId, k -> new UserShelf());
+        List<Book> all = shelf.all;
+        if (all != null) {
+            hits.incrementAndGet();
+            return all;
+        }
+        misses.incrementAndGet();
+        all = List.copyOf(userBookShelfMapper.findBooksByUserId(userId, null));
+        shelf.all = all;
+        return all;
+    }
+
+    /**
+     * 书架分页：after 为上一页返回的 nextCursor（"加入时间,书架记录 id"），首页不传
+     */
+    public ShelfPage getShelfPage(Long userId, String keyword, String after, Integer size) {
+        int limit = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        boolean cacheable = keyword == null || keyword.isEmpty();
+        if (!cacheable) return loadPage(userId, keyword, after, limit);
+
+        UserShelf shelf = cache.get(userId, k -> new UserShelf());
+        String pageKey = (after == null ? "" : after) + "|" + limit;
+        ShelfPage page = shelf.pages.get(pageKey);
+        if (page != null) {
+            hits.incrementAndGet();
+            return page;
+        }
+        misses.incrementAndGet();
+        page = loadPage(userId, null, after, limit);
+        if (shelf.pages.size() < MAX_CACHED_PAGES) shelf.pages.put(pageKey, page);
+        return page;
+    }
+
+    private ShelfPage loadPage(Long userId, String keyword, String after, int limit) {
+        LocalDateTime afterTime = null;
+        Long afterId = null;
+        if (after != null && !after.isEmpty()) {
+            int comma = after.indexOf(',');
+            try {
+                if (comma < 0) throw new IllegalArgumentException();
+                afterTime = LocalDateTime.parse(after.substring(0, comma));
+                afterId = Long.parseLong(after.substring(comma + 1));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new RuntimeException("翻页游标格式不正确: " + after);
+            }
+        }
+
+        // 多取一条用于判断是否还有下一页
+        List<ShelfItem> items = userBookShelfMapper.findShelfPage(userId, keyword, afterTime, afterId, limit + 1);
+        boolean hasMore = items.size() > limit;
+        if (hasMore) items = items.subList(0, limit);
+        String nextCursor = null;
+        if (hasMore) {
+            ShelfItem last = items.get(items.size() - 1);
+            nextCursor = last.getAddedTime() + "," + last.getShelfId();
         }
+        return new ShelfPage(List.copyOf(items), nextCursor, hasMore);
+    }
+
+    /**
+     * 加入书架（幂等，一条 INSERT IGNORE）：返回 true 表示新加入，false 表示原本就在书架中
+     */
+    public boolean addBook(Long userId, Long bookId) {
+        boolean added = userBookShelfMapper.addBook(userId, bookId) > 0;
+        if (added) evictUser(userId);
+        return added;
+    }
+
+    public boolean removeBook(Long userId, Long bookId) {
+        boolean removed = userBookShelfMapper.removeBook(userId, bookId) > 0;
+        if (removed) evictUser(userId);
+        return removed;
     }
 
-    public void addBook(Long userId, Long bookId) {
-        userBookShelfMapper.addBook(userId, bookId);
+    /**
+     * 批量同步：先加入 add 中的书，再移除 remove 中的书（同一本书同时出现在两边时最终不在书架）
+     * 按块执行，避免单条 SQL 过长；整体在一个事务中
+     */
+    @Transactional
+    public ShelfSyncResult sync(Long userId, List<Long> add, List<Long> remove) {
+        int added = 0;
+        int removed = 0;
+        for (List<Long> chunk : chunks(add)) added += userBookShelfMapper.addBooks(userId, chunk);
+        for (List<Long> chunk : chunks(remove)) removed += userBookShelfMapper.removeBooks(userId, chunk);
+        if (added > 0 || removed > 0) evictUser(userId);
+        return new ShelfSyncResult(added, removed);
     }
 
-    public void removeBook(Long userId, Long bookId) {
-        userBookShelfMapper.removeBook(userId, bookId);
+    // 去重、去空后按 SYNC_CHUNK 切块
+    private static List<List<Long>> chunks(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) return List.of();
+        List<Long> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < distinct.size(); i += SYNC_CHUNK) {
+            chunks.add(distinct.subList(i, Math.min(i + SYNC_CHUNK, distinct.size())));
+        }
+        return chunks;
     }
 
     public boolean existsByUserIdAndBookId(Long userId, Long bookId) {
         return userBookShelfMapper.existsByUserIdAndBookId(userId, bookId)>0 ;
     }
+
+    /**
+     * 书籍信息变更 / 删除后调用：书架项里带着书名和封面，涉及哪些用户不好反查，直接全部失效
+     */
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("users", cache.estimatedSize());
+        m.put("hitCount", hits.get());
+        m.put("missCount", misses.get());
+        return m;
+    }
+
+    // 在事务中（如上传解析后加入书架）调用时，提交后再失效一次：避免提交前有请求把旧数据重新缓存
+    private void evictUser(Long userId) {
+        cache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(userId);
+                }
+            });
+        }
+    }
 }
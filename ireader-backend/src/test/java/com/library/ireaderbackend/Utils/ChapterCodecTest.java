@@ -0,0 +1,44 @@
+package com.library.ireaderbackend.Utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ChapterCodec.acceptsGzip：按 Accept-Encoding 的 q 值判断，q=0 表示明确拒绝
+ */
+class ChapterCodecTest {
+
+    @Test
+    void gzipListedWithPositiveQualityIsAccepted() {
+        assertThat(ChapterCodec.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(ChapterCodec.acceptsGzip("br;q=1.0, GZIP;q=0.5")).isTrue();
+        assertThat(ChapterCodec.acceptsGzip("x-gzip")).isTrue();
+        assertThat(ChapterCodec.acceptsGzip("gzip ; q=0.001")).isTrue();
+    }
+
+    @Test
+    void zeroQualityRejectsGzip() {
+        assertThat(ChapterCodec.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(ChapterCodec.acceptsGzip("gzip;q=0.000, identity")).isFalse();
+        // 单独列出的 gzip 优先于 *
+        assertThat(ChapterCodec.acceptsGzip("*, gzip;q=0")).isFalse();
+        assertThat(ChapterCodec.acceptsGzip("*;q=0, gzip")).isTrue();
+    }
+
+    @Test
+    void wildcardAppliesWhenGzipIsNotListed() {
+        assertThat(ChapterCodec.acceptsGzip("*")).isTrue();
+        assertThat(ChapterCodec.acceptsGzip("identity, *;q=0")).isFalse();
+        assertThat(ChapterCodec.acceptsGzip("identity")).isFalse();
+        assertThat(ChapterCodec.acceptsGzip("deflate, gzipx")).isFalse();
+        assertThat(ChapterCodec.acceptsGzip("")).isFalse();
+        assertThat(ChapterCodec.acceptsGzip(null)).isFalse();
+    }
+
+    @Test
+    void malformedQualityIsIgnored() {
+        assertThat(ChapterCodec.acceptsGzip("gzip;q=abc")).isFalse();
+        assertThat(ChapterCodec.acceptsGzip("gzip;q=2, *")).isTrue();
+    }
+}
@@ -0,0 +1,85 @@
+package com.library.ireaderbackend.Utils;
+
+import com.library.ireaderbackend.entity.BookContent;
+import org.jsoup.Jsoup;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 章节存储体积对比：旧格式（完整文档 doc.html() / 明文）→ 仅 body 压缩空白 → gzip
+ * 运行：main 参数为 epub / txt 文件，默认取 src/main/resources/books 下的 epub 和 uploads/books 下的一本 txt
+ */
+public class ChapterStorageReport {
+
+    public static void main(String[] args) throws Exception {
+        List<File> files = new ArrayList<>();
+        if (args.length > 0) {
+            for (String arg : args) files.add(new File(arg));
+        } else {
+            File[] epubs = new File("src/main/resources/books").listFiles((d, n) -> n.endsWith(".epub"));
+            if (epubs != null) files.addAll(Arrays.asList(epubs));
+            // uploads 下同一本书传了多次，只取一份
+            File[] txts = new File("uploads/books").listFiles((d, n) -> n.endsWith(".txt"));
+            if (txts != null && txts.length > 0) files.add(txts[0]);
+        }
+
+        long[] total = new long[3];
+        for (File file : files) {
+            long[] r = file.getName().endsWith(".epub") ? epub(file) : txt(file);
+            print(file.getName(), r);
+            for (int i = 0; i < 3; i++) total[i] += r[i];
+        }
+        print("合计", total);
+    }
+
+    // 所有 (x)html 条目：旧格式 doc.html() vs compactBody vs gzip(compactBody)
+    private static long[] epub(File file) throws Exception {
+        long[] r = new long[3];
+        try (ZipFile zip = new ZipFile(file, StandardCharsets.UTF_8)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry e = entries.nextElement();
+                String name = e.getName().toLowerCase();
+                if (!(name.endsWith(".xhtml") || name.endsWith(".html") || name.endsWith(".htm"))) continue;
+                String raw;
+                try (InputStream in = zip.getInputStream(e)) {
+                    raw = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+                r[0] += utf8(Jsoup.parse(raw).html());
+                String compact = EpubParser.compactBody(Jsoup.parse(raw));
+                r[1] += utf8(compact);
+                r[2] += ChapterCodec.gzip(compact).length;
+            }
+        }
+        return r;
+    }
+
+    // TXT 正文本身无需规整，只看压缩
+    private static long[] txt(File file) throws Exception {
+        long[] r = new long[3];
+        for (BookContent c : TxtParser.parseTxt(file.toPath(), 0L)) {
+            long bytes = utf8(c.getChapterContent());
+            r[0] += bytes;
+            r[1] += bytes;
+            r[2] += ChapterCodec.gzip(c.getChapterContent()).length;
+        }
+        return r;
+    }
+
+    private static long utf8(String s) {
+        return s == null ? 0 : s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void print(String name, long[] r) {
+        System.out.printf("%-40s 原始 %,10d B | 规整后 %,10d B (%.1f%%) | gzip %,10d B (%.1f%%)%n",
+                name, r[0], r[1], 100.0 * r[1] / Math.max(1, r[0]), r[2], 100.0 * r[2] / Math.max(1, r[0]));
+    }
+}
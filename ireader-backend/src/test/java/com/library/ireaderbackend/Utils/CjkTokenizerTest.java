@@ -0,0 +1,82 @@
+package com.library.ireaderbackend.Utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CjkTokenizer：plainText 与阅读器渲染后 textContent 逐字符一致，分词偏移落在 plainText 上
+ */
+class CjkTokenizerTest {
+
+    @Test
+    void plainTextOfUnmarkedTextIsUnchanged() {
+        String text = "第一章 风起\n\n少年站在山门前。";
+        assertThat(CjkTokenizer.plainText(text)).isSameAs(text);
+    }
+
+    @Test
+    void plainTextMatchesRenderedTextContent() {
+        // br 不产生字符，实体解码，注释忽略，标签之间的换行是文本节点、照常保留
+        assertThat(CjkTokenizer.plainText("<p>第一段</p>\n<p>a &amp; b<br/>c</p>")).isEqualTo("第一段\na & bc");
+        assertThat(CjkTokenizer.plainText("前<!-- 注释 -->后")).isEqualTo("前后");
+        assertThat(CjkTokenizer.plainText("甲&nbsp;乙")).isEqualTo("甲 乙");
+        assertThat(CjkTokenizer.plainText("<style>p{}</style><p>正文</p>")).isEqualTo("p{}正文");
+    }
+
+    @Test
+    void plainTextNormalizesCarriageReturns() {
+        assertThat(CjkTokenizer.plainText("一\r\n二\r三")).isEqualTo("一\n二\n三");
+        assertThat(CjkTokenizer.plainText("<p>一\r\n二</p>")).isEqualTo("一\n二");
+    }
+
+    @Test
+    void tokenOffsetsPointIntoPlainText() {
+        String html = "<h1>第1章&nbsp;Hello</h1><p>“天地玄黄”，<b>宇宙</b>洪荒。</p><p>ABC def 12</p>";
+        String text = CjkTokenizer.plainText(html);
+        List<String> terms = new ArrayList<>();
+        CjkTokenizer.tokenize(text, (term, offset) -> {
+            terms.add(term);
+            assertThat(text.substring(offset, offset + term.length()).toLowerCase(Locale.ROOT)).isEqualTo(term);
+        });
+        // 汉字按二元组切分，每段连续汉字末尾再出一个单字；字母数字整词小写
+        assertThat(terms).containsExactly("第", "1", "章", "hello", "天地", "地玄", "玄黄", "黄",
+                "宇宙", "宙洪", "洪荒", "荒", "abc", "def", "12");
+    }
+
+    @Test
+    void ngramModeSplitsWordsIntoCharBigrams() {
+        List<String> terms = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        CjkTokenizer.tokenize("AI时代 2024", true, (term, offset) -> {
+            terms.add(term);
+            offsets.add(offset);
+        });
+        // 字母数字段与汉字段各自切分，二元组不跨段，逐字符小写
+        assertThat(terms).containsExactly("ai", "i", "时代", "代", "20", "02", "24", "4");
+        assertThat(offsets).containsExactly(0, 1, 2, 3, 5, 6, 7, 8);
+
+        CjkTokenizer.Query q = CjkTokenizer.parseQuery("Read", true);
+        assertThat(q.terms()).containsExactly("re", "ea", "ad");
+        assertThat(q.prefix()).isNull();
+        assertThat(CjkTokenizer.parseQuery("x", true).prefix()).isEqualTo("x");
+    }
+
+    @Test
+    void queryDropsTrailingCharCoveredByBigram() {
+        CjkTokenizer.Query q = CjkTokenizer.parseQuery("  天地玄 ");
+        assertThat(q.terms()).containsExactly("天地", "地玄");
+        assertThat(q.deltas()).containsExactly(0, 1);
+        assertThat(q.prefix()).isNull();
+        assertThat(q.length()).isEqualTo(3);
+
+        CjkTokenizer.Query single = CjkTokenizer.parseQuery("“天");
+        assertThat(single.terms()).isEmpty();
+        assertThat(single.prefix()).isEqualTo("天");
+        assertThat(single.leading()).isEqualTo(1);
+    }
+}
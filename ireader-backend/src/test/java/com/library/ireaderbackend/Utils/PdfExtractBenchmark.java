@@ -0,0 +1,62 @@
+package com.library.ireaderbackend.Utils;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PdfParser.extractRanges 串行 / 并行对比：逐页提取整本 PDF 的文本
+ * parallelism=1 即串行基线，其余值的加速比需在多核机器上观察
+ * 运行：在 IDE 中直接执行 main，可用 -Dpdf=xxx.pdf 指定文件（默认取 uploads/books 下第一个 PDF）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PdfExtractBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private File file;
+    private List<int[]> pages;
+
+    @Setup
+    public void setup() throws IOException {
+        file = resolvePdf();
+        try (PDDocument doc = PDDocument.load(file)) {
+            pages = new ArrayList<>();
+            for (int i = 1; i <= doc.getNumberOfPages(); i++) pages.add(new int[]{i, i});
+        }
+    }
+
+    @Benchmark
+    public List<String> extractAllPages() throws IOException {
+        return PdfParser.extractRanges(file, pages, parallelism);
+    }
+
+    private static File resolvePdf() {
+        String path = System.getProperty("pdf");
+        if (path != null) return new File(path);
+        File[] pdfs = new File("uploads/books").listFiles((d, n) -> n.endsWith(".pdf"));
+        if (pdfs == null || pdfs.length == 0) throw new IllegalStateException("未找到 PDF，请用 -Dpdf 指定");
+        return pdfs[0];
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(PdfExtractBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,68 @@
+package com.library.ireaderbackend.Utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TxtParser.formatChapterContent 基准：合成中文章节，行数按 10 倍递增，
+ * 每行耗时应基本不变（线性）。运行：在 IDE 中直接执行 main
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TxtParserBenchmark {
+
+    private static final String CHARS = "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经";
+
+    // 章节行数
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    private List<String> chapter;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        chapter = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            int kind = random.nextInt(10);
+            if (kind < 3) {
+                chapter.add("");                       // 空行（旧实现在这里整段复制缓冲区）
+            } else if (kind < 5) {
+                chapter.add("　　" + sentence(random)); // 全角缩进段落
+            } else {
+                chapter.add(sentence(random));         // 被折行的普通正文
+            }
+        }
+    }
+
+    @Benchmark
+    public String formatChapter() {
+        return TxtParser.formatChapterContent(chapter);
+    }
+
+    private static String sentence(Random random) {
+        int len = 10 + random.nextInt(40);
+        StringBuilder sb = new StringBuilder(len + 1);
+        for (int i = 0; i < len; i++) sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        if (random.nextBoolean()) sb.append('。');
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(TxtParserBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
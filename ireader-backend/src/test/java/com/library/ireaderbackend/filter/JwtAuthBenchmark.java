@@ -0,0 +1,92 @@
+package com.library.ireaderbackend.filter;
+
+import com.library.ireaderbackend.Utils.JwtUtils;
+import io.jsonwebtoken.Jwts;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.crypto.SecretKey;
+import java.lang.reflect.Field;
+
+/**
+ * 每个请求的令牌校验开销：
+ *  - 旧写法：validateToken + getUserIdFromToken，每次新建解析器、验签两次
+ *  - 复用解析器验签一次
+ *  - 过滤器命中缓存（只算 SHA-256 + 查缓存）
+ *  - 过滤器完整走一遍（含请求参数比对、写请求属性）
+ * 运行：main 参数 [令牌数]，默认 1000 个不同用户的令牌轮流使用
+ */
+public class JwtAuthBenchmark {
+
+    private static final int ROUNDS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        JwtUtils jwtUtils = new JwtUtils();
+        String[] tokens = new String[users];
+        for (int i = 0; i < users; i++) tokens[i] = "Bearer " + jwtUtils.generateToken((long) i + 1);
+        Field keyField = JwtUtils.class.getDeclaredField("SECRET_KEY");
+        keyField.setAccessible(true);
+        SecretKey key = (SecretKey) keyField.get(null);
+
+        JwtAuthFilter filter = new JwtAuthFilter();
+        set(filter, "jwtUtils", jwtUtils);
+        set(filter, "cacheMaxSize", 100_000L);
+        set(filter, "cacheMaxTtlSeconds", 600L);
+        filter.init();
+
+        long sink = 0;
+        for (int warm = 0; warm < 2; warm++) {
+            sink += run("旧写法（两次新建解析器）", () -> {
+                long s = 0;
+                for (int i = 0; i < ROUNDS / 10; i++) {
+                    String t = JwtUtils.stripBearer(tokens[i % users]);
+                    Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(t);
+                    s += Long.parseLong(Jwts.parserBuilder().setSigningKey(key).build()
+                            .parseClaimsJws(t).getBody().getSubject());
+                }
+                return s;
+            }, ROUNDS / 10, warm == 1);
+            sink += run("复用解析器验签一次", () -> {
+                long s = 0;
+                for (int i = 0; i < ROUNDS / 10; i++) s += jwtUtils.getUserIdFromToken(tokens[i % users]);
+                return s;
+            }, ROUNDS / 10, warm == 1);
+            sink += run("过滤器缓存命中", () -> {
+                long s = 0;
+                for (int i = 0; i < ROUNDS; i++) s += filter.authenticate(JwtUtils.stripBearer(tokens[i % users]));
+                return s;
+            }, ROUNDS, warm == 1);
+            sink += run("过滤器完整请求", () -> {
+                long s = 0;
+                for (int i = 0; i < ROUNDS; i++) {
+                    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/bookshelf/page");
+                    request.addHeader("Authorization", tokens[i % users]);
+                    request.addParameter("userId", String.valueOf(i % users + 1));
+                    filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+                    s += (Long) request.getAttribute(JwtAuthFilter.USER_ID);
+                }
+                return s;
+            }, ROUNDS, warm == 1);
+        }
+        System.out.println("[统计] " + filter.stats() + " " + (sink == 0 ? "" : "ok"));
+    }
+
+    private interface Body {
+        long run() throws Exception;
+    }
+
+    private static long run(String name, Body body, int count, boolean print) throws Exception {
+        long t = System.nanoTime();
+        long r = body.run();
+        if (print) System.out.printf("[%s] %.2f µs / 请求%n", name, (System.nanoTime() - t) / 1e3 / count);
+        return r;
+    }
+
+    private static void set(Object o, String field, Object value) throws Exception {
+        Field f = o.getClass().getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(o, value);
+    }
+}
@@ -0,0 +1,47 @@
+package com.library.ireaderbackend.mapper;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 单元测试用：H2 内存库（MySQL 兼容模式）加载项目里的 mapper 接口和 XML，不启动 Spring，只校验 SQL 本身
+ */
+public final class H2Mappers {
+
+    private H2Mappers() {
+    }
+
+    /**
+     * @param name   内存库名，各测试类用不同的名字互不影响
+     * @param ddl    建表语句
+     * @param mapper mapper 接口
+     * @param xml    classpath 下的 mapper XML，如 mapper/BookMapper.xml
+     */
+    public static SqlSessionFactory create(String name, String[] ddl, Class<?> mapper, String xml)
+            throws SQLException, IOException {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            for (String sql : ddl) st.execute(sql);
+        }
+        Configuration cfg = new Configuration(new Environment("test", new JdbcTransactionFactory(), ds));
+        cfg.setMapUnderscoreToCamelCase(true);
+        cfg.addMapper(mapper);
+        try (InputStream in = Resources.getResourceAsStream(xml)) {
+            new XMLMapperBuilder(in, cfg, xml, cfg.getSqlFragments()).parse();
+        }
+        return new SqlSessionFactoryBuilder().build(cfg);
+    }
+}
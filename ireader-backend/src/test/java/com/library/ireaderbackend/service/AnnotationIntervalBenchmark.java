@@ -0,0 +1,112 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.dto.HighlightSpan;
+import com.library.ireaderbackend.entity.Annotation;
+
+import java.util.*;
+
+/**
+ * 批注区间索引（AnnotationIntervalIndex）基准：随机生成一章的批注，按"页"查询重叠批注，
+ * 与逐条扫描的结果对照，并比较耗时
+ * 运行：main 参数 [批注数] [章节字数]，默认 5000 条、20 万字
+ */
+public class AnnotationIntervalBenchmark {
+
+    private static final String[] COLORS = {"#ffd54f", "#81c784", "#64b5f6"};
+    private static final int PAGE = 1500;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int chapterLength = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        Random random = new Random(7);
+        List<Annotation> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Annotation a = new Annotation();
+            a.setId((long) i + 1);
+            a.setType(i % 4 == 0 ? "NOTE" : "HIGHLIGHT");
+            a.setColor(COLORS[random.nextInt(COLORS.length)]);
+            int start = random.nextInt(chapterLength);
+            a.setStartOffset(start);
+            a.setEndOffset(Math.min(chapterLength, start + random.nextInt(i % 50 == 0 ? 5000 : 80)));
+            list.add(a);
+        }
+
+        long t = System.nanoTime();
+        AnnotationIntervalIndex.ChapterIntervals index = AnnotationIntervalIndex.build(list);
+        System.out.printf("[建索引] %d 条，%.2f ms，合并后高亮 %d 段%n", count, (System.nanoTime() - t) / 1e6,
+                index.highlights.size());
+
+        int[] froms = new int[2000];
+        for (int i = 0; i < froms.length; i++) froms[i] = random.nextInt(chapterLength);
+
+        // 对照：逐条扫描，结果集应一致
+        int mismatches = 0;
+        for (int from : froms) {
+            List<Annotation> out = new ArrayList<>();
+            index.annotations.query(from, from + PAGE, out);
+            if (!ids(out).equals(ids(scan(list, from, from + PAGE)))) mismatches++;
+        }
+        System.out.println("[对照] " + froms.length + " 页，不一致 " + mismatches + " 页，合并检查 "
+                + (checkSpans(list, index) ? "通过" : "失败"));
+
+        for (int round = 0; round < 5; round++) {
+            for (int from : froms) {
+                index.annotations.query(from, from + PAGE, new ArrayList<>());
+                scan(list, from, from + PAGE);
+            }
+        }
+        long indexed = 0, scanned = 0, hits = 0;
+        for (int from : froms) {
+            List<Annotation> out = new ArrayList<>();
+            long s = System.nanoTime();
+            index.annotations.query(from, from + PAGE, out);
+            indexed += System.nanoTime() - s;
+            s = System.nanoTime();
+            scan(list, from, from + PAGE);
+            scanned += System.nanoTime() - s;
+            hits += out.size();
+        }
+        System.out.printf("[查询] 每页平均 %.1f 条，区间树 %.2f µs / 页，逐条扫描 %.2f µs / 页%n",
+                (double) hits / froms.length, indexed / 1e3 / froms.length, scanned / 1e3 / froms.length);
+    }
+
+    private static List<Annotation> scan(List<Annotation> list, int from, int to) {
+        List<Annotation> out = new ArrayList<>();
+        for (Annotation a : list) {
+            int end = Math.max(a.getEndOffset(), a.getStartOffset() + 1);
+            if (a.getStartOffset() < to && end > from) out.add(a);
+        }
+        return out;
+    }
+
+    private static Set<Long> ids(List<Annotation> list) {
+        Set<Long> ids = new HashSet<>();
+        for (Annotation a : list) ids.add(a.getId());
+        return ids;
+    }
+
+    // 每条高亮恰好属于一段，段内同色，且同色的段之间互不重叠、不相接
+    private static boolean checkSpans(List<Annotation> list, AnnotationIntervalIndex.ChapterIntervals index) {
+        List<HighlightSpan> spans = new ArrayList<>();
+        index.highlights.query(Integer.MIN_VALUE, Integer.MAX_VALUE, spans);
+        Map<Long, Annotation> byId = new HashMap<>();
+        for (Annotation a : list) byId.put(a.getId(), a);
+        Set<Long> seen = new HashSet<>();
+        for (HighlightSpan s : spans) {
+            for (Long id : s.getIds()) {
+                Annotation a = byId.get(id);
+                if (!seen.add(id) || !a.getColor().equals(s.getColor())
+                        || a.getStartOffset() < s.getStartOffset() || a.getEndOffset() > s.getEndOffset()) return false;
+            }
+        }
+        long highlights = list.stream().filter(a -> "HIGHLIGHT".equals(a.getType())).count();
+        if (seen.size() != highlights) return false;
+        for (String color : COLORS) {
+            List<HighlightSpan> same = spans.stream().filter(s -> color.equals(s.getColor())).toList();
+            for (int i = 1; i < same.size(); i++) {
+                if (same.get(i).getStartOffset() <= same.get(i - 1).getEndOffset()) return false;
+            }
+        }
+        return true;
+    }
+}
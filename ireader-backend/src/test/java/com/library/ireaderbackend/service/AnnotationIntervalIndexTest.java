@@ -0,0 +1,161 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.dto.HighlightSpan;
+import com.library.ireaderbackend.entity.Annotation;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 批注区间索引（AnnotationIntervalIndex）：区间树的重叠查询与逐条扫描一致，高亮合并的边界情况
+ */
+class AnnotationIntervalIndexTest {
+
+    private static final String YELLOW = "#ffd54f";
+    private static final String GREEN = "#81c784";
+
+    @Test
+    void queryUsesHalfOpenIntervals() {
+        AnnotationIntervalIndex.ChapterIntervals index = AnnotationIntervalIndex.build(List.of(
+                annotation(1, "NOTE", null, 10, 20)));
+        assertThat(ids(query(index, 0, 10))).isEmpty();
+        assertThat(ids(query(index, 20, 30))).isEmpty();
+        assertThat(ids(query(index, 19, 20))).containsExactly(1L);
+        assertThat(ids(query(index, 0, 11))).containsExactly(1L);
+    }
+
+    @Test
+    void zeroLengthAnnotationCountsAsOneChar() {
+        AnnotationIntervalIndex.ChapterIntervals index = AnnotationIntervalIndex.build(List.of(
+                annotation(1, "NOTE", null, 5, 5)));
+        assertThat(ids(query(index, 5, 6))).containsExactly(1L);
+        assertThat(ids(query(index, 0, 5))).isEmpty();
+        assertThat(ids(query(index, 6, 10))).isEmpty();
+    }
+
+    @Test
+    void unpositionedAnnotationsAreSkipped() {
+        Annotation bookmark = annotation(1, "BOOKMARK", null, null, null);
+        Annotation reversed = annotation(2, "NOTE", null, 9, 3);
+        AnnotationIntervalIndex.ChapterIntervals index = AnnotationIntervalIndex.build(List.of(
+                bookmark, reversed, annotation(3, "NOTE", null, 0, 4)));
+        assertThat(index.annotations.size()).isEqualTo(1);
+        assertThat(ids(query(index, Integer.MIN_VALUE, Integer.MAX_VALUE))).containsExactly(3L);
+    }
+
+    @Test
+    void touchingSameColourHighlightsMerge() {
+        List<HighlightSpan> spans = merge(
+                annotation(1, "HIGHLIGHT", YELLOW, 0, 5),
+                annotation(2, "HIGHLIGHT", YELLOW, 5, 10),
+                annotation(3, "HIGHLIGHT", YELLOW, 2, 3));
+        assertThat(spans).hasSize(1);
+        assertSpan(spans.get(0), 0, 10, YELLOW, 1L, 3L, 2L);
+    }
+
+    @Test
+    void gapKeepsSameColourHighlightsApart() {
+        List<HighlightSpan> spans = merge(
+                annotation(1, "HIGHLIGHT", YELLOW, 0, 5),
+                annotation(2, "HIGHLIGHT", YELLOW, 6, 8));
+        assertThat(spans).hasSize(2);
+        assertSpan(spans.get(0), 0, 5, YELLOW, 1L);
+        assertSpan(spans.get(1), 6, 8, YELLOW, 2L);
+    }
+
+    @Test
+    void differentColoursNeverMerge() {
+        List<HighlightSpan> spans = merge(
+                annotation(1, "HIGHLIGHT", YELLOW, 0, 10),
+                annotation(2, "HIGHLIGHT", GREEN, 4, 12),
+                annotation(3, "HIGHLIGHT", YELLOW, 8, 15),
+                annotation(4, "NOTE", YELLOW, 14, 30));
+        assertThat(spans).hasSize(2);
+        assertSpan(spans.get(0), 0, 15, YELLOW, 1L, 3L);
+        assertSpan(spans.get(1), 4, 12, GREEN, 2L);
+    }
+
+    @Test
+    void zeroLengthHighlightTouchingSpanMerges() {
+        List<HighlightSpan> spans = merge(
+                annotation(1, "HIGHLIGHT", YELLOW, 0, 5),
+                annotation(2, "HIGHLIGHT", YELLOW, 5, 5),
+                annotation(3, "HIGHLIGHT", YELLOW, 7, 7));
+        assertThat(spans).hasSize(2);
+        assertSpan(spans.get(0), 0, 5, YELLOW, 1L, 2L);
+        // 单独的零长度高亮自成一段，查询时按一个字符处理
+        assertSpan(spans.get(1), 7, 7, YELLOW, 3L);
+        AnnotationIntervalIndex.ChapterIntervals index = AnnotationIntervalIndex.build(List.of(
+                annotation(1, "HIGHLIGHT", YELLOW, 0, 5), annotation(3, "HIGHLIGHT", YELLOW, 7, 7)));
+        List<HighlightSpan> found = new ArrayList<>();
+        index.highlights.query(7, 8, found);
+        assertThat(found).hasSize(1);
+    }
+
+    @Test
+    void randomQueriesMatchLinearScan() {
+        Random random = new Random(5);
+        List<Annotation> list = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int start = random.nextInt(50_000);
+            int length = random.nextInt(i % 50 == 0 ? 3000 : 60);
+            list.add(annotation(i + 1, i % 3 == 0 ? "NOTE" : "HIGHLIGHT", i % 2 == 0 ? YELLOW : GREEN,
+                    start, start + length));
+        }
+        AnnotationIntervalIndex.ChapterIntervals index = AnnotationIntervalIndex.build(list);
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(52_000) - 1000;
+            int to = from + random.nextInt(2000);
+            List<Annotation> found = query(index, from, to);
+            assertThat(ids(found)).containsExactlyInAnyOrderElementsOf(ids(scan(list, from, to)));
+            // 结果按起点升序
+            for (int k = 1; k < found.size(); k++) {
+                assertThat(found.get(k).getStartOffset()).isGreaterThanOrEqualTo(found.get(k - 1).getStartOffset());
+            }
+        }
+    }
+
+    private static List<Annotation> query(AnnotationIntervalIndex.ChapterIntervals index, int from, int to) {
+        List<Annotation> out = new ArrayList<>();
+        index.annotations.query(from, to, out);
+        return out;
+    }
+
+    private static List<Annotation> scan(List<Annotation> list, int from, int to) {
+        List<Annotation> out = new ArrayList<>();
+        for (Annotation a : list) {
+            int end = Math.max(a.getEndOffset(), a.getStartOffset() + 1);
+            if (a.getStartOffset() < to && end > from) out.add(a);
+        }
+        return out;
+    }
+
+    private static List<HighlightSpan> merge(Annotation... annotations) {
+        List<Annotation> sorted = new ArrayList<>(List.of(annotations));
+        sorted.sort(Comparator.comparingInt(Annotation::getStartOffset).thenComparingInt(Annotation::getEndOffset));
+        return AnnotationIntervalIndex.mergeHighlights(sorted);
+    }
+
+    private static void assertSpan(HighlightSpan span, int start, int end, String color, Long... ids) {
+        assertThat(span.getStartOffset()).isEqualTo(start);
+        assertThat(span.getEndOffset()).isEqualTo(end);
+        assertThat(span.getColor()).isEqualTo(color);
+        assertThat(span.getIds()).containsExactly(ids);
+    }
+
+    private static List<Long> ids(List<Annotation> list) {
+        return list.stream().map(Annotation::getId).toList();
+    }
+
+    private static Annotation annotation(long id, String type, String color, Integer start, Integer end) {
+        Annotation a = new Annotation();
+        a.setId(id);
+        a.setType(type);
+        a.setColor(color);
+        a.setStartOffset(start);
+        a.setEndOffset(end);
+        return a;
+    }
+}
@@ -0,0 +1,138 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.dto.BookCatalogPage;
+import com.library.ireaderbackend.dto.BookListItem;
+import com.library.ireaderbackend.mapper.BookMapper;
+import com.library.ireaderbackend.mapper.H2Mappers;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 书目游标分页（BookCatalogService + BookMapper.findCatalogPage，H2）：逐页翻完的结果须与一次 ORDER BY 查询完全一致
+ */
+class BookCatalogServiceTest {
+
+    private static final String[] CATEGORIES = {"小说", "历史", "励志"};
+
+    private static SqlSession session;
+    private static BookCatalogService service;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        session = H2Mappers.create("catalog", new String[]{
+                "CREATE TABLE book (id BIGINT PRIMARY KEY, title VARCHAR(200), author VARCHAR(100), cover VARCHAR(200),"
+                        + " category VARCHAR(50), publish_time DATE, is_free INT, uploader_id BIGINT,"
+                        + " visibility VARCHAR(20))"
+        }, BookMapper.class, "mapper/BookMapper.xml").openSession(true);
+
+        // 出版时间只取少数几天，制造大量同一天的书（按 id 区分先后）；部分书没有出版时间、部分是私有上传
+        Random random = new Random(17);
+        try (PreparedStatement ps = session.getConnection().prepareStatement(
+                "INSERT INTO book (id, title, author, category, publish_time, is_free, visibility) VALUES (?, ?, ?, ?, ?, 1, ?)")) {
+            for (int id = 1; id <= 157; id++) {
+                ps.setLong(1, id);
+                ps.setString(2, (id % 4 == 0 ? "三体" : "书") + id);
+                ps.setString(3, "作者" + id % 5);
+                ps.setString(4, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                ps.setDate(5, id % 6 == 0 ? null : Date.valueOf(LocalDate.of(2020, 1, 1).plusDays(random.nextInt(5))));
+                ps.setString(6, id % 10 == 0 ? "private" : "pending");
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        service = new BookCatalogService();
+        Field f = BookCatalogService.class.getDeclaredField("bookMapper");
+        f.setAccessible(true);
+        f.set(service, session.getMapper(BookMapper.class));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        session.close();
+    }
+
+    @Test
+    void latestPagesMatchOrderById() throws SQLException {
+        for (String category : new String[]{null, "小说"}) {
+            for (int size : new int[]{1, 7, 20, 100}) {
+                assertThat(pageThrough(category, null, "latest", size))
+                        .as("category=%s size=%d", category, size)
+                        .isEqualTo(expected(category, null, "id DESC"));
+            }
+        }
+    }
+
+    @Test
+    void publishPagesMatchOrderByPublishTime() throws SQLException {
+        String order = "publish_time IS NULL, publish_time DESC, id DESC";
+        for (String category : new String[]{null, "历史"}) {
+            for (int size : new int[]{1, 5, 20, 100}) {
+                assertThat(pageThrough(category, null, "publish", size))
+                        .as("category=%s size=%d", category, size)
+                        .isEqualTo(expected(category, null, order));
+            }
+        }
+        assertThat(pageThrough(null, "三体", "publish", 3)).isEqualTo(expected(null, "三体", order));
+    }
+
+    @Test
+    void pageSizeIsCappedAndLastPageHasNoCursor() {
+        BookCatalogPage first = service.getCatalog(null, null, "latest", null, 1000);
+        assertThat(first.getItems()).hasSize(100);
+        assertThat(first.isHasMore()).isTrue();
+        BookCatalogPage last = service.getCatalog(null, null, "latest", first.getNextCursor(), 1000);
+        assertThat(last.isHasMore()).isFalse();
+        assertThat(last.getNextCursor()).isNull();
+        // 私有上传不出现在书目里
+        assertThat(first.getItems()).noneMatch(b -> b.getId() % 10 == 0);
+        assertThat(last.getItems()).noneMatch(b -> b.getId() % 10 == 0);
+    }
+
+    private static List<Long> pageThrough(String category, String keyword, String sort, int size) {
+        List<Long> ids = new ArrayList<>();
+        String after = null;
+        for (int guard = 0; guard < 1000; guard++) {
+            BookCatalogPage page = service.getCatalog(category, keyword, sort, after, size);
+            assertThat(page.getItems().size()).isLessThanOrEqualTo(size);
+            page.getItems().stream().map(BookListItem::getId).forEach(ids::add);
+            if (!page.isHasMore()) return ids;
+            after = page.getNextCursor();
+        }
+        throw new AssertionError("翻页没有结束");
+    }
+
+    private static List<Long> expected(String category, String keyword, String orderBy) throws SQLException {
+        String sql = "SELECT id FROM book WHERE visibility = 'pending'"
+                + (category == null ? "" : " AND category = ?")
+                + (keyword == null ? "" : " AND (title LIKE ? OR author LIKE ?)")
+                + " ORDER BY " + orderBy;
+        try (PreparedStatement ps = session.getConnection().prepareStatement(sql)) {
+            int i = 1;
+            if (category != null) ps.setString(i++, category);
+            if (keyword != null) {
+                ps.setString(i++, "%" + keyword + "%");
+                ps.setString(i, "%" + keyword + "%");
+            }
+            List<Long> ids = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids.add(rs.getLong(1));
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.Utils.CjkTokenizer;
+import com.library.ireaderbackend.Utils.TxtParser;
+import com.library.ireaderbackend.entity.BookContent;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * 书内查找（BookTextIndex）基准：把一本 TXT 的章节重复拼成目标字数的“大书”，
+ * 测建索引耗时、索引体积和查询延迟，并与逐章 indexOf 的结果逐条核对
+ * 运行：main 参数 [txt 文件] [目标字数]，默认取 uploads/books 下第一本 txt、500 万字
+ */
+public class BookSearchBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        File txt;
+        if (args.length > 0) {
+            txt = new File(args[0]);
+        } else {
+            File[] txts = new File("uploads/books").listFiles((d, n) -> n.endsWith(".txt"));
+            if (txts == null || txts.length == 0) throw new IllegalStateException("没有找到 txt，请在参数中指定");
+            txt = txts[0];
+        }
+        long targetChars = args.length > 1 ? Long.parseLong(args[1]) : 5_000_000L;
+
+        List<BookContent> source = TxtParser.parseTxt(txt.toPath(), 1L);
+        List<FullTextIndex.Doc> docs = new ArrayList<>();
+        long chars = 0;
+        for (int round = 0; chars < targetChars; round++) {
+            for (BookContent c : source) {
+                String text = CjkTokenizer.plainText(c.getChapterContent());
+                int order = docs.size() + 1;
+                docs.add(new FullTextIndex.Doc(order, 1L, order, text));
+                chars += text.length();
+            }
+        }
+
+        Path file = Files.createTempFile("ireader-bti-bench", ".bti");
+        try {
+            long t = System.nanoTime();
+            BookTextIndex.write(file, docs);
+            BookTextIndex idx = BookTextIndex.read(file);
+            System.out.printf("[建索引] %d 章 / %,d 字，%.0f ms，索引 %,d 字节（%.2f 字节/字）%n",
+                    docs.size(), chars, (System.nanoTime() - t) / 1e6, Files.size(file), (double) Files.size(file) / chars);
+
+            Random random = new Random(7);
+            Map<String, List<String>> queries = new LinkedHashMap<>();
+            for (int len : new int[]{1, 2, 4, 8}) {
+                List<String> list = new ArrayList<>();
+                while (list.size() < 300) {
+                    String text = docs.get(random.nextInt(docs.size())).text();
+                    if (text.length() <= len) continue;
+                    int at = random.nextInt(text.length() - len);
+                    String q = text.substring(at, at + len);
+                    if (!q.isBlank()) list.add(q);
+                }
+                queries.put(len + " 字", list);
+            }
+
+            int checked = 0, mismatched = 0;
+            for (Map.Entry<String, List<String>> e : queries.entrySet()) {
+                for (String q : e.getValue()) idx.search(q, 200); // 预热
+                long[] nanos = new long[e.getValue().size()];
+                long total = 0;
+                for (int i = 0; i < nanos.length; i++) {
+                    String q = e.getValue().get(i);
+                    long s = System.nanoTime();
+                    BookTextIndex.Result r = idx.search(q, Integer.MAX_VALUE);
+                    nanos[i] = System.nanoTime() - s;
+                    total += r.total();
+                    // 纯汉字查询与逐章 indexOf 必须完全一致（含标点的查询标点只占位，可能多出命中）
+                    if (i < 50 && q.strip().chars().allMatch(ch -> CjkTokenizer.isCjk((char) ch))) {
+                        checked++;
+                        if (!r.matches().equals(bruteForce(docs, q.strip()))) {
+                            mismatched++;
+                            System.out.println("[不一致] " + q);
+                        }
+                    }
+                }
+                Arrays.sort(nanos);
+                System.out.printf("[查询] %-4s p50 %.2f ms  p95 %.2f ms  p99 %.2f ms  平均命中 %.0f%n", e.getKey(),
+                        nanos[nanos.length / 2] / 1e6, nanos[(int) (nanos.length * 0.95)] / 1e6,
+                        nanos[(int) (nanos.length * 0.99)] / 1e6, (double) total / nanos.length);
+            }
+            System.out.printf("[核对] %d 个查询，不一致 %d 个%n", checked, mismatched);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<BookTextIndex.Match> bruteForce(List<FullTextIndex.Doc> docs, String q) {
+        List<BookTextIndex.Match> list = new ArrayList<>();
+        for (FullTextIndex.Doc d : docs) {
+            for (int at = d.text().indexOf(q); at >= 0; at = d.text().indexOf(q, at + 1)) {
+                list.add(new BookTextIndex.Match(d.chapterId(), d.chapterOrder(), at, at + q.length()));
+            }
+        }
+        return list;
+    }
+}
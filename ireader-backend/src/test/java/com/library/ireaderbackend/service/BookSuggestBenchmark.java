@@ -0,0 +1,89 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.Utils.PinyinUtils;
+import com.library.ireaderbackend.dto.BookSuggestion;
+import com.library.ireaderbackend.entity.Book;
+
+import java.util.*;
+
+/**
+ * 输入联想（BookSuggestService）基准：随机生成中文书名 / 作者，测加载耗时和前缀查询延迟
+ * 运行：main 参数 [书籍数]，默认 1 万本
+ */
+public class BookSuggestBenchmark {
+
+    private static final String CHARS = "天地玄黄宇宙洪荒日月盈昃辰宿列张寒来暑往秋收冬藏三体红楼梦西游记平凡的世界活着围城边城白鹿原";
+    private static final String[] SURNAMES = {"刘", "王", "李", "张", "陈", "杨", "赵", "黄", "周", "吴"};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        Random random = new Random(7);
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Book b = new Book();
+            b.setId((long) i + 1);
+            b.setTitle(randomText(random, 2 + random.nextInt(8)) + (i % 10 == 0 ? " Vol." + i : ""));
+            b.setAuthor(SURNAMES[random.nextInt(SURNAMES.length)] + randomText(random, 1 + random.nextInt(2)));
+            b.setVisibility("pending");
+            books.add(b);
+        }
+
+        long t = System.nanoTime();
+        PinyinUtils.full(CHARS); // pinyin4j 首次调用要加载字典，单独计时
+        System.out.printf("[拼音字典] %.0f ms%n", (System.nanoTime() - t) / 1e6);
+
+        BookSuggestService service = new BookSuggestService();
+        t = System.nanoTime();
+        service.load(books);
+        System.out.printf("[加载] %d 本，%.0f ms，%s%n", count, (System.nanoTime() - t) / 1e6, service.stats());
+
+        // 查询：书名前缀、书名中间、全拼前缀、首字母、作者、单字母
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Book b = books.get(random.nextInt(count));
+            String title = b.getTitle();
+            switch (i % 6) {
+                case 0 -> queries.add(title.substring(0, Math.min(title.length(), 1 + random.nextInt(3))));
+                case 1 -> queries.add(title.substring(1, Math.min(title.length(), 3)));
+                case 2 -> {
+                    String py = PinyinUtils.full(title);
+                    queries.add(py.substring(0, Math.min(py.length(), 2 + random.nextInt(6))));
+                }
+                case 3 -> {
+                    String in = PinyinUtils.initials(title);
+                    queries.add(in.substring(0, Math.min(in.length(), 1 + random.nextInt(3))));
+                }
+                case 4 -> queries.add(b.getAuthor());
+                default -> queries.add(String.valueOf((char) ('a' + random.nextInt(26))));
+            }
+        }
+
+        for (int round = 0; round < 5; round++) {
+            for (String q : queries) service.suggest(q, 10); // 预热
+        }
+        long[] nanos = new long[queries.size()];
+        int empty = 0;
+        for (int i = 0; i < nanos.length; i++) {
+            long s = System.nanoTime();
+            List<BookSuggestion> r = service.suggest(queries.get(i), 10);
+            nanos[i] = System.nanoTime() - s;
+            if (r.isEmpty()) empty++;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("[查询] %d 次，p50 %.3f ms  p99 %.3f ms  max %.3f ms，无结果 %d 次%n", nanos.length,
+                nanos[nanos.length / 2] / 1e6, nanos[(int) (nanos.length * 0.99)] / 1e6,
+                nanos[nanos.length - 1] / 1e6, empty);
+        System.out.println("[示例] st → " + titles(service.suggest("st", 5)));
+        System.out.println("[示例] 三体 → " + titles(service.suggest("三体", 5)));
+    }
+
+    private static String randomText(Random random, int len) {
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; i++) sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        return sb.toString();
+    }
+
+    private static List<String> titles(List<BookSuggestion> list) {
+        return list.stream().map(BookSuggestion::getTitle).toList();
+    }
+}
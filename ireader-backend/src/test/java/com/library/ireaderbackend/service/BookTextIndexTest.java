@@ -0,0 +1,156 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.Utils.CjkTokenizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 书内查找索引（BookTextIndex）：查询的命中须与逐章 indexOf 完全一致（含重叠命中、跨章不误配、
+ * 字母数字子串与中英混排，字母不区分大小写）
+ */
+class BookTextIndexTest {
+
+    // 字表很小，短语会大量重复出现，重叠命中（如 "天天天" 中的 "天天"）也能覆盖到
+    private static final String CHARS = "天地玄黄日月";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void phraseHitsMatchIndexOf() throws IOException {
+        Random random = new Random(11);
+        List<FullTextIndex.Doc> docs = new ArrayList<>();
+        for (int c = 1; c <= 20; c++) {
+            docs.add(new FullTextIndex.Doc(100 + c, 1, c, randomText(random, 50 + random.nextInt(400))));
+        }
+        BookTextIndex idx = write(docs);
+        assertThat(idx.chapterCount()).isEqualTo(20);
+
+        for (int i = 0; i < 300; i++) {
+            FullTextIndex.Doc d = docs.get(random.nextInt(docs.size()));
+            int len = 1 + random.nextInt(6);
+            int at = random.nextInt(d.text().length() - len);
+            String q = d.text().substring(at, at + len);
+            BookTextIndex.Result r = idx.search(q, Integer.MAX_VALUE);
+            List<BookTextIndex.Match> expected = indexOf(docs, q);
+            assertThat(r.matches()).as(q).isEqualTo(expected);
+            assertThat(r.total()).as(q).isEqualTo(expected.size());
+        }
+    }
+
+    @Test
+    void phraseDoesNotSpanChapters() throws IOException {
+        BookTextIndex idx = write(List.of(
+                new FullTextIndex.Doc(1, 1, 1, "前文天地"),
+                new FullTextIndex.Doc(2, 1, 2, "玄黄后文")));
+        assertThat(idx.search("天地玄黄", 10).total()).isZero();
+        assertThat(idx.search("地玄", 10).total()).isZero();
+        assertThat(idx.search("玄黄", 10).matches())
+                .containsExactly(new BookTextIndex.Match(2, 2, 0, 2));
+    }
+
+    @Test
+    void limitKeepsReadingOrderAndFullTotal() throws IOException {
+        List<FullTextIndex.Doc> docs = List.of(
+                new FullTextIndex.Doc(1, 1, 1, "月月月"),
+                new FullTextIndex.Doc(2, 1, 2, "日月日月"));
+        BookTextIndex idx = write(docs);
+        BookTextIndex.Result r = idx.search("月", 2);
+        assertThat(r.total()).isEqualTo(5);
+        assertThat(r.matches()).containsExactly(
+                new BookTextIndex.Match(1, 1, 0, 1),
+                new BookTextIndex.Match(1, 1, 1, 2));
+    }
+
+    @Test
+    void offsetsFollowPlainTextOfHtmlChapters() throws IOException {
+        String text = CjkTokenizer.plainText("<h2>第一回</h2><p>宴桃园<b>豪杰</b>三结义</p>");
+        BookTextIndex idx = write(List.of(new FullTextIndex.Doc(7, 1, 1, text)));
+        int start = text.indexOf("豪杰三结义");
+        assertThat(idx.search("豪杰三结义", 10).matches())
+                .containsExactly(new BookTextIndex.Match(7, 1, start, start + 5));
+        assertThat(idx.search("不存在", 10).total()).isZero();
+    }
+
+    @Test
+    void latinAndDigitSubstringsMatch() throws IOException {
+        String text = "The Reader of 2024: OpenAI时代的阅读器，reading again.";
+        BookTextIndex idx = write(List.of(new FullTextIndex.Doc(1, 1, 1, text)));
+        assertHits(idx, text, "read");
+        assertHits(idx, text, "202");
+        assertHits(idx, text, "AI时代");
+        assertHits(idx, text, "024");
+        assertHits(idx, text, "代的阅");
+        assertHits(idx, text, "nAI");
+        // 字母不区分大小写
+        assertThat(idx.search("READER", 10).total()).isEqualTo(1);
+        assertThat(idx.search("2025", 10).total()).isZero();
+        assertThat(idx.search("AI的", 10).total()).isZero();
+    }
+
+    @Test
+    void mixedScriptSubstringsMatchIndexOf() throws IOException {
+        // 汉字、大小写字母、数字混排且没有分隔符，查询串可能跨越多个段
+        String chars = "天地玄aAbB01";
+        Random random = new Random(23);
+        List<FullTextIndex.Doc> docs = new ArrayList<>();
+        for (int c = 1; c <= 10; c++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 100 + random.nextInt(300); i++) sb.append(chars.charAt(random.nextInt(chars.length())));
+            docs.add(new FullTextIndex.Doc(200 + c, 1, c, sb.toString()));
+        }
+        BookTextIndex idx = write(docs);
+        List<FullTextIndex.Doc> lower = docs.stream()
+                .map(d -> new FullTextIndex.Doc(d.chapterId(), d.bookId(), d.chapterOrder(), d.text().toLowerCase()))
+                .toList();
+        for (int i = 0; i < 500; i++) {
+            FullTextIndex.Doc d = docs.get(random.nextInt(docs.size()));
+            int len = 1 + random.nextInt(6);
+            int at = random.nextInt(d.text().length() - len);
+            String q = d.text().substring(at, at + len);
+            List<BookTextIndex.Match> expected = indexOf(lower, q.toLowerCase());
+            BookTextIndex.Result r = idx.search(q, Integer.MAX_VALUE);
+            assertThat(r.matches()).as(q).isEqualTo(expected);
+            assertThat(r.total()).as(q).isEqualTo(expected.size());
+        }
+    }
+
+    // 单章文本中的命中位置与忽略大小写的 indexOf 完全一致，且至少有一处
+    private static void assertHits(BookTextIndex idx, String text, String query) {
+        String lower = text.toLowerCase();
+        String q = query.toLowerCase();
+        List<Integer> expected = new ArrayList<>();
+        for (int at = lower.indexOf(q); at >= 0; at = lower.indexOf(q, at + 1)) expected.add(at);
+        assertThat(expected).as(query).isNotEmpty();
+        assertThat(idx.search(query, 100).matches()).as(query)
+                .extracting(BookTextIndex.Match::startOffset).isEqualTo(expected);
+    }
+
+    private BookTextIndex write(List<FullTextIndex.Doc> docs) throws IOException {
+        Path file = dir.resolve("book.bti");
+        BookTextIndex.write(file, docs);
+        return BookTextIndex.read(file);
+    }
+
+    private static List<BookTextIndex.Match> indexOf(List<FullTextIndex.Doc> docs, String q) {
+        List<BookTextIndex.Match> list = new ArrayList<>();
+        for (FullTextIndex.Doc d : docs) {
+            for (int at = d.text().indexOf(q); at >= 0; at = d.text().indexOf(q, at + 1)) {
+                list.add(new BookTextIndex.Match(d.chapterId(), d.chapterOrder(), at, at + q.length()));
+            }
+        }
+        return list;
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        return sb.toString();
+    }
+}
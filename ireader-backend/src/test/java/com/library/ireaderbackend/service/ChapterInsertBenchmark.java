@@ -0,0 +1,79 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.IreaderBackendApplication;
+import com.library.ireaderbackend.entity.BookContent;
+import com.library.ireaderbackend.mapper.BookContentMapper;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 章节写入吞吐对比：旧的单条多值 INSERT（insertBatch） vs BookContentBatchWriter 分块 JDBC batch
+ * 需要能连上 application.yml 中配置的 MySQL；数据写到一个不存在的负数 bookId 下，跑完即删除
+ * 每次计时前都重新生成同样的章节（固定随机种子）：写入批次会就地压缩正文（ChapterCodec.encode）并回填主键，
+ * 复用同一批对象会让后面的写入拿到已压缩、没有明文的行
+ * 运行：main 参数 [章节数] [每章字数]，默认 2000 章 × 5000 字（约 30MB UTF-8）
+ */
+public class ChapterInsertBenchmark {
+
+    private static final String CHARS = "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经";
+    private static final long BOOK_ID = -20240001L;
+
+    public static void main(String[] args) {
+        int chapters = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int charsPerChapter = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(IreaderBackendApplication.class)
+                .web(WebApplicationType.NONE).run()) {
+            BookContentMapper mapper = ctx.getBean(BookContentMapper.class);
+            BookContentBatchWriter writer = ctx.getBean(BookContentBatchWriter.class);
+
+            for (int round = 1; round <= 3; round++) {
+                mapper.deleteByBookId(BOOK_ID);
+                List<BookContent> contents = generate(chapters, charsPerChapter);
+                long t = System.nanoTime();
+                try {
+                    mapper.insertBatch(contents);
+                    report("单条多值 INSERT", round, chapters, charsPerChapter, t);
+                } catch (Exception e) {
+                    // 超过 max_allowed_packet 时旧写法直接失败
+                    System.out.println("[单条多值 INSERT] 第" + round + "轮失败: " + e.getMessage());
+                }
+
+                mapper.deleteByBookId(BOOK_ID);
+                contents = generate(chapters, charsPerChapter);
+                t = System.nanoTime();
+                writer.writeAll(contents);
+                report("分块 JDBC batch", round, chapters, charsPerChapter, t);
+            }
+            mapper.deleteByBookId(BOOK_ID);
+        }
+    }
+
+    private static void report(String name, int round, int chapters, int charsPerChapter, long startNanos) {
+        double sec = (System.nanoTime() - startNanos) / 1e9;
+        double mb = chapters * (double) charsPerChapter * 3 / 1024 / 1024;
+        System.out.printf("[%s] 第%d轮 %.2fs，%.0f 行/s，%.1f MB/s%n", name, round, sec, chapters / sec, mb / sec);
+    }
+
+    private static List<BookContent> generate(int chapters, int charsPerChapter) {
+        Random random = new Random(42);
+        List<BookContent> list = new ArrayList<>(chapters);
+        for (int i = 1; i <= chapters; i++) {
+            StringBuilder sb = new StringBuilder(charsPerChapter);
+            for (int j = 0; j < charsPerChapter; j++) sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+            BookContent c = new BookContent();
+            c.setBookId(BOOK_ID);
+            c.setChapterTitle("第" + i + "章");
+            c.setChapterContent(sb.toString());
+            c.setChapterOrder(i);
+            c.setContentLength(charsPerChapter);
+            list.add(c);
+        }
+        return list;
+    }
+}
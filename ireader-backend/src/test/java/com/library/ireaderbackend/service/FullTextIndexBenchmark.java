@@ -0,0 +1,162 @@
+package com.library.ireaderbackend.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * 全文索引查询延迟基准：合成书库（默认 10000 本 × 3 章 × 1000 字），分批建段后测一次，全部合并后再测一次
+ * 词表按 Zipf 分布抽样，二元组频率接近真实中文（少数高频词 + 长尾）
+ * 运行：main 参数 [书数] [每本章节数] [每章字数]；索引写在临时目录，跑完删除
+ */
+public class FullTextIndexBenchmark {
+
+    private static final String CHARS =
+            "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经"
+            + "十三之进着等部度家电力里如水化高自二理起小物现实加量都两体制机当使点从业本去把性好应开它合还因由其些然前外天政四日那社义事平形相全表间样与关各重新线内数正心反你明看原又么利比或但质气第向道命此变条只没结解问意建月公无系军很情者最立代想已通并提直题党程展五果料象员革位入常文总次品式活设及管特件长求老头基资边流路级少图山统接知较将组见计别她手角期根论运农指几九区强放决西被干做必战先回则任取据处队南给色光门即保治北造百规热领七海口东导器压志世金增争济阶油思术极交受联什认六共权收证改清己美再采转更单风切打白教速花带安场身车例真务具万每目至达走积示议声报斗完类八离华名确才科张信马节话米整空元况今集温传土许步群广石记需段研界拉林律叫且究观越织装影算低持音众书布复容儿须际商非验连断深难近矿千周委素技备半办青省列习响约支般史感劳便团往酸历市克何除消构府称太准精值号率族维划选标写存候毛亲快效斯院查江型眼王按格养易置派层片始却专状育厂京识适属圆包火住调满县局照参红细引听该铁价严";
+
+    public static void main(String[] args) throws IOException {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int chaptersPerBook = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int charsPerChapter = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        Random random = new Random(42);
+        String[] vocabulary = vocabulary(random, 8000);
+        ZipfSampler zipf = new ZipfSampler(vocabulary.length, 1.0, random);
+
+        Path dir = Files.createTempDirectory("ireader-fti-bench");
+        try {
+            FullTextIndex index = new FullTextIndex(dir);
+            long start = System.nanoTime();
+            long chars = 0;
+            List<String> phraseSamples = new ArrayList<>();
+            Map<Long, List<FullTextIndex.Doc>> batch = new LinkedHashMap<>();
+            long chapterId = 1;
+            for (long bookId = 1; bookId <= books; bookId++) {
+                List<FullTextIndex.Doc> docs = new ArrayList<>(chaptersPerBook);
+                for (int c = 1; c <= chaptersPerBook; c++) {
+                    String text = text(random, vocabulary, zipf, charsPerChapter);
+                    chars += text.length();
+                    docs.add(new FullTextIndex.Doc(chapterId++, bookId, c, text));
+                    if (phraseSamples.size() < 2000 && random.nextInt(20) == 0) {
+                        int at = random.nextInt(text.length() - 8);
+                        phraseSamples.add(text.substring(at, at + 4 + random.nextInt(4)));
+                    }
+                }
+                batch.put(bookId, docs);
+                if (batch.size() == 200) {
+                    index.addBooks(batch);
+                    batch = new LinkedHashMap<>();
+                }
+            }
+            index.addBooks(batch);
+            double buildSec = (System.nanoTime() - start) / 1e9;
+            System.out.printf("[建索引] %d 本书 / %d 章 / %,d 字，%.1fs（%.1f 万字/s），%s%n",
+                    books, books * chaptersPerBook, chars, buildSec, chars / buildSec / 1e4, index.stats());
+
+            Map<String, List<String>> queries = queries(random, vocabulary, phraseSamples);
+            runQueries("分段", index, queries);
+
+            start = System.nanoTime();
+            index.forceMerge();
+            System.out.printf("[合并] %.1fs，%s%n", (System.nanoTime() - start) / 1e9, index.stats());
+            runQueries("合并后", index, queries);
+
+            // 重新打开：只读清单 + 映射段文件
+            start = System.nanoTime();
+            FullTextIndex reopened = new FullTextIndex(dir);
+            System.out.printf("[重新打开] %.1f ms%n", (System.nanoTime() - start) / 1e6);
+            runQueries("重新打开", reopened, queries);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static Map<String, List<String>> queries(Random random, String[] vocabulary, List<String> phraseSamples) {
+        Map<String, List<String>> q = new LinkedHashMap<>();
+        List<String> common = new ArrayList<>(), rare = new ArrayList<>(), single = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            common.add(vocabulary[random.nextInt(50)]);
+            rare.add(vocabulary[vocabulary.length - 1 - random.nextInt(2000)]);
+            single.add(String.valueOf(CHARS.charAt(random.nextInt(CHARS.length()))));
+        }
+        q.put("高频词", common);
+        q.put("长尾词", rare);
+        q.put("正文短语(4-7字)", phraseSamples.subList(0, Math.min(500, phraseSamples.size())));
+        q.put("单字", single);
+        return q;
+    }
+
+    private static void runQueries(String label, FullTextIndex index, Map<String, List<String>> queries) {
+        for (Map.Entry<String, List<String>> e : queries.entrySet()) {
+            List<String> list = e.getValue();
+            for (String q : list) index.search(q, 20); // 预热
+            long[] nanos = new long[list.size()];
+            long hits = 0;
+            for (int i = 0; i < list.size(); i++) {
+                long t = System.nanoTime();
+                hits += index.search(list.get(i), 20).size();
+                nanos[i] = System.nanoTime() - t;
+            }
+            Arrays.sort(nanos);
+            System.out.printf("[%s] %-14s n=%d p50 %.2f ms  p95 %.2f ms  p99 %.2f ms  平均命中 %.1f%n",
+                    label, e.getKey(), nanos.length, pct(nanos, 0.50), pct(nanos, 0.95), pct(nanos, 0.99),
+                    (double) hits / nanos.length);
+        }
+    }
+
+    private static double pct(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+
+    // 1~4 字的“词”，字本身也按出现位置偏向高频字
+    private static String[] vocabulary(Random random, int size) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < size) {
+            int len = 1 + random.nextInt(4);
+            StringBuilder sb = new StringBuilder(len);
+            for (int i = 0; i < len; i++) {
+                int idx = (int) (Math.pow(random.nextDouble(), 2) * CHARS.length());
+                sb.append(CHARS.charAt(idx));
+            }
+            words.add(sb.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private static String text(Random random, String[] vocabulary, ZipfSampler zipf, int chars) {
+        StringBuilder sb = new StringBuilder(chars + 8);
+        while (sb.length() < chars) {
+            sb.append(vocabulary[zipf.next()]);
+            int r = random.nextInt(12);
+            if (r == 0) sb.append('，');
+            else if (r == 1) sb.append('。');
+        }
+        return sb.toString();
+    }
+
+    private static final class ZipfSampler {
+        private final double[] cdf;
+        private final Random random;
+
+        ZipfSampler(int n, double s, Random random) {
+            this.random = random;
+            cdf = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, s);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < n; i++) cdf[i] /= sum;
+        }
+
+        int next() {
+            int i = Arrays.binarySearch(cdf, random.nextDouble());
+            return i >= 0 ? i : Math.min(cdf.length - 1, -i - 1);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.library.ireaderbackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 全文索引（FullTextIndex）：段写入 / 合并、按书的有效性标记、重新打开后的状态、段内存的摘要正文
+ */
+class FullTextIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reindexedBookHasNoStaleMatches() throws IOException {
+        try (FullTextIndex index = new FullTextIndex(dir)) {
+            index.addBook(1, List.of(doc(11, 1, 1, "春眠不觉晓，处处闻啼鸟。")));
+            index.addBook(2, List.of(doc(21, 2, 1, "床前明月光，疑是地上霜。")));
+            assertThat(bookIds(index.search("春眠", 10))).containsExactly(1L);
+
+            // 重新解析后整本替换：旧段里的文档失效，新段里的生效
+            index.addBook(1, List.of(doc(12, 1, 1, "夜来风雨声，花落知多少。")));
+            assertThat(index.search("春眠", 10)).isEmpty();
+            assertThat(bookIds(index.search("风雨", 10))).containsExactly(1L);
+            assertThat(bookIds(index.search("明月", 10))).containsExactly(2L);
+        }
+    }
+
+    @Test
+    void deletedBookDisappearsAndStaysDeletedAfterReopen() throws IOException {
+        try (FullTextIndex index = new FullTextIndex(dir)) {
+            index.addBook(1, List.of(doc(11, 1, 1, "白日依山尽")));
+            index.addBook(2, List.of(doc(21, 2, 1, "白日放歌须纵酒")));
+            index.deleteBook(1);
+            assertThat(bookIds(index.search("白日", 10))).containsExactly(2L);
+        }
+        try (FullTextIndex reopened = new FullTextIndex(dir)) {
+            assertThat(bookIds(reopened.search("白日", 10))).containsExactly(2L);
+        }
+    }
+
+    @Test
+    void mergeKeepsOnlyLiveDocuments() throws IOException {
+        Random random = new Random(3);
+        Map<Long, String> latest = new HashMap<>();
+        try (FullTextIndex index = new FullTextIndex(dir)) {
+            // 每次写入一个段，段数超过合并阈值后自动合并；期间反复重写同一批书
+            for (int round = 0; round < 40; round++) {
+                long bookId = 1 + random.nextInt(8);
+                String text = "第" + round + "回" + randomText(random, 200);
+                index.addBook(bookId, List.of(doc(round + 100, bookId, 1, text)));
+                latest.put(bookId, text);
+            }
+            assertThat((Integer) index.stats().get("segments")).isLessThanOrEqualTo(11);
+            assertLatestOnly(index, latest);
+
+            index.forceMerge();
+            assertThat(index.stats().get("segments")).isEqualTo(1);
+            assertThat(index.stats().get("docs")).isEqualTo((long) latest.size());
+            assertLatestOnly(index, latest);
+        }
+        try (FullTextIndex reopened = new FullTextIndex(dir)) {
+            assertLatestOnly(reopened, latest);
+        }
+    }
+
+    @Test
+    void hitOffsetPointsAtPhrase() throws IOException {
+        String text = "开篇。\n人生若只如初见，何事秋风悲画扇。";
+        try (FullTextIndex index = new FullTextIndex(dir)) {
+            index.addBook(1, List.of(doc(11, 1, 3, text)));
+            List<FullTextIndex.Hit> hits = index.search("秋风", 10);
+            assertThat(hits).hasSize(1);
+            assertThat(hits.get(0).chapterOrder()).isEqualTo(3);
+            assertThat(hits.get(0).offset()).isEqualTo(text.indexOf("秋风"));
+        }
+    }
+
+    @Test
+    void snippetAndTitleComeFromSegmentAndSurviveMerge() throws IOException {
+        String text = "序。" + "一".repeat(40) + "人生若只如初见，何事秋风悲画扇。" + "二".repeat(80);
+        try (FullTextIndex index = new FullTextIndex(dir)) {
+            index.addBook(1, List.of(new FullTextIndex.Doc(11, 1, 1, text, "第一回 木兰词")));
+            index.addBook(2, List.of(doc(21, 2, 1, "秋风清，秋月明。")));
+            assertSnippet(index.search("秋风悲", 10).stream().filter(h -> h.bookId() == 1).findFirst().orElseThrow(),
+                    text, "秋风悲", "第一回 木兰词");
+            index.forceMerge();
+        }
+        try (FullTextIndex reopened = new FullTextIndex(dir)) {
+            List<FullTextIndex.Hit> hits = reopened.search("秋风", 10);
+            assertThat(bookIds(hits)).containsExactlyInAnyOrder(1L, 2L);
+            for (FullTextIndex.Hit h : hits) {
+                if (h.bookId() == 1) assertSnippet(h, text, "秋风", "第一回 木兰词");
+                else assertSnippet(h, "秋风清，秋月明。", "秋风", null);
+            }
+        }
+    }
+
+    private static void assertSnippet(FullTextIndex.Hit h, String text, String query, String title) {
+        assertThat(h.chapterTitle()).isEqualTo(title);
+        assertThat(h.offset()).isEqualTo(text.indexOf(query));
+        assertThat(h.snippetOffset()).isEqualTo(Math.max(0, h.offset() - 30));
+        assertThat(h.snippet()).isEqualTo(text.substring(h.snippetOffset(),
+                Math.min(text.length(), h.offset() + query.length() + 60)));
+    }
+
+    // 每本书只能查到最后一次写入的正文，之前各回的标记都查不到
+    private static void assertLatestOnly(FullTextIndex index, Map<Long, String> latest) {
+        for (int round = 0; round < 40; round++) {
+            String marker = "第" + round + "回";
+            List<Long> expected = latest.entrySet().stream()
+                    .filter(e -> e.getValue().startsWith(marker)).map(Map.Entry::getKey).toList();
+            assertThat(bookIds(index.search(marker, 10))).as(marker).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    private static FullTextIndex.Doc doc(long chapterId, long bookId, int order, String text) {
+        return new FullTextIndex.Doc(chapterId, bookId, order, text);
+    }
+
+    private static List<Long> bookIds(List<FullTextIndex.Hit> hits) {
+        return hits.stream().map(FullTextIndex.Hit::bookId).toList();
+    }
+
+    private static String randomText(Random random, int length) {
+        String chars = "天地玄黄宇宙洪荒日月盈昃辰宿列张寒来暑往秋收冬藏";
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append(chars.charAt(random.nextInt(chars.length())));
+        return sb.toString();
+    }
+}
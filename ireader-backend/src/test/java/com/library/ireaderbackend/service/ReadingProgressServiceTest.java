@@ -0,0 +1,132 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.dto.ContinueReadingItem;
+import com.library.ireaderbackend.entity.ReadingProgress;
+import com.library.ireaderbackend.mapper.BookMapper;
+import com.library.ireaderbackend.mapper.H2Mappers;
+import com.library.ireaderbackend.mapper.ReadingProgressMapper;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 继续阅读（ReadingProgressService + ReadingProgressMapper.xml，H2）：内存中的待写进度合并进查询结果，查询本身不写库
+ */
+class ReadingProgressServiceTest {
+
+    private static final long USER = 1L;
+
+    private static SqlSession session;
+    private static SqlSession bookSession;
+    private static ReadingProgressService service;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        session = H2Mappers.create("progress", new String[]{
+                "CREATE TABLE book (id BIGINT PRIMARY KEY, title VARCHAR(200), author VARCHAR(100), cover VARCHAR(200),"
+                        + " file_type VARCHAR(20), visibility VARCHAR(20))",
+                "CREATE TABLE reading_progress (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT, book_id BIGINT,"
+                        + " chapter_order INT, chapter_offset INT, update_time DATETIME(6), UNIQUE (user_id, book_id))"
+        }, ReadingProgressMapper.class, "mapper/ReadingProgressMapper.xml").openSession(true);
+        // 同一个内存库，书籍 mapper 单独加载
+        bookSession = H2Mappers.create("progress", new String[0], BookMapper.class, "mapper/BookMapper.xml")
+                .openSession(true);
+
+        try (Statement st = session.getConnection().createStatement()) {
+            for (int id = 1; id <= 5; id++) {
+                st.execute("INSERT INTO book (id, title, author, file_type, visibility) VALUES ("
+                        + id + ", '书" + id + "', '作者" + id + "', 'epub', 'pending')");
+            }
+        }
+        // 库里已有 1、2、3 的进度，越往后越新
+        LocalDateTime base = LocalDateTime.now().minusHours(3);
+        try (PreparedStatement ps = session.getConnection().prepareStatement(
+                "INSERT INTO reading_progress (user_id, book_id, chapter_order, chapter_offset, update_time) VALUES (?, ?, 1, 0, ?)")) {
+            for (int bookId = 1; bookId <= 3; bookId++) {
+                ps.setLong(1, USER);
+                ps.setLong(2, bookId);
+                ps.setTimestamp(3, Timestamp.valueOf(base.plusHours(bookId - 1)));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        service = new ReadingProgressService();
+        set("readingProgressMapper", session.getMapper(ReadingProgressMapper.class));
+        set("bookMapper", bookSession.getMapper(BookMapper.class));
+        set("maxPending", 1000);
+        set("flushIntervalMs", 5000L);
+        service.init();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        service.shutdown();
+        bookSession.close();
+        session.close();
+    }
+
+    @Test
+    void pendingProgressIsMergedWithoutWriting() throws Exception {
+        // 4 库里还没有进度行；1 覆盖库里较旧的进度；99 这本书不存在
+        report(4L, 7);
+        report(99L, 1);
+        report(1L, 9);
+
+        List<ContinueReadingItem> items = service.continueReading(USER, 3);
+        assertThat(items).extracting(ContinueReadingItem::getBookId).containsExactly(1L, 4L, 3L);
+        assertThat(items).extracting(ContinueReadingItem::getChapterOrder).containsExactly(9, 7, 1);
+        assertThat(items.get(1).getTitle()).isEqualTo("书4");
+        assertThat(items.get(0).getAuthor()).isEqualTo("作者1");
+
+        // 查询没有落库
+        assertThat(count("SELECT COUNT(*) FROM reading_progress WHERE user_id = 1")).isEqualTo(3);
+        assertThat(count("SELECT chapter_order FROM reading_progress WHERE user_id = 1 AND book_id = 1")).isEqualTo(1);
+
+        // 落库后结果不变
+        service.flush();
+        assertThat(count("SELECT COUNT(*) FROM reading_progress WHERE user_id = 1")).isEqualTo(5);
+        List<ContinueReadingItem> after = service.continueReading(USER, 3);
+        assertThat(after).extracting(ContinueReadingItem::getBookId).containsExactly(1L, 4L, 3L);
+        assertThat(after).extracting(ContinueReadingItem::getChapterOrder).containsExactly(9, 7, 1);
+
+        // 其他用户看不到
+        assertThat(service.continueReading(2L, 10)).isEmpty();
+    }
+
+    private static void report(Long bookId, int chapterOrder) throws InterruptedException {
+        ReadingProgress p = new ReadingProgress();
+        p.setUserId(USER);
+        p.setBookId(bookId);
+        p.setChapterOrder(chapterOrder);
+        p.setChapterOffset(0);
+        assertThat(service.report(p)).isTrue();
+        // 保证上报时间严格递增
+        Thread.sleep(5);
+    }
+
+    private static int count(String sql) throws SQLException {
+        try (Statement st = session.getConnection().createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void set(String field, Object value) throws ReflectiveOperationException {
+        Field f = ReadingProgressService.class.getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(service, value);
+    }
+}
@@ -0,0 +1,198 @@
+package com.library.ireaderbackend.service;
+
+import com.library.ireaderbackend.dto.ShelfItem;
+import com.library.ireaderbackend.dto.ShelfPage;
+import com.library.ireaderbackend.dto.ShelfSyncResult;
+import com.library.ireaderbackend.mapper.H2Mappers;
+import com.library.ireaderbackend.mapper.UserBookShelfMapper;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 书架（UserBookShelfService + UserBookShelfMapper.xml，H2）：游标翻页与 ORDER BY 一致，加书 / 移除后缓存失效，
+ * 批量同步只统计实际新增 / 删除的行
+ */
+class UserBookShelfServiceTest {
+
+    private static final long USER = 1L;
+
+    private static SqlSession session;
+    private static UserBookShelfService service;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        session = H2Mappers.create("shelf", new String[]{
+                "CREATE TABLE book (id BIGINT PRIMARY KEY, title VARCHAR(200), author VARCHAR(100), cover VARCHAR(200),"
+                        + " category VARCHAR(50), intro VARCHAR(500), file_path VARCHAR(200), file_type VARCHAR(20),"
+                        + " is_free INT, publisher VARCHAR(100), publish_time DATE, isbn VARCHAR(50), brand VARCHAR(100),"
+                        + " uploader_id BIGINT, visibility VARCHAR(20))",
+                "CREATE TABLE user_shelf (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT, book_id BIGINT,"
+                        + " added_time DATETIME, UNIQUE (user_id, book_id))"
+        }, UserBookShelfMapper.class, "mapper/UserBookShelfMapper.xml").openSession(true);
+
+        try (PreparedStatement ps = session.getConnection().prepareStatement(
+                "INSERT INTO book (id, title, author, file_type, is_free, visibility) VALUES (?, ?, ?, 'epub', 1, 'pending')")) {
+            for (int id = 1; id <= 300; id++) {
+                ps.setLong(1, id);
+                ps.setString(2, (id % 3 == 0 ? "红楼" : "书") + id);
+                ps.setString(3, "作者" + id % 7);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        service = new UserBookShelfService();
+        set("userBookShelfMapper", session.getMapper(UserBookShelfMapper.class));
+        set("maxUsers", 100L);
+        set("expireMinutes", 30L);
+        service.init();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        session.close();
+    }
+
+    @BeforeEach
+    void fillShelves() throws SQLException {
+        try (Statement st = session.getConnection().createStatement()) {
+            st.execute("DELETE FROM user_shelf");
+        }
+        // 加入时间只取少数几个整分钟 / 整秒，大量记录时间相同（按书架记录 id 区分先后）；其他用户的记录穿插其中
+        Random random = new Random(19);
+        LocalDateTime base = LocalDateTime.of(2025, 10, 3, 17, 0);
+        try (PreparedStatement ps = session.getConnection().prepareStatement(
+                "INSERT INTO user_shelf (user_id, book_id, added_time) VALUES (?, ?, ?)")) {
+            for (int bookId = 1; bookId <= 200; bookId++) {
+                long user = bookId % 4 == 0 ? 2L : USER;
+                ps.setLong(1, user);
+                ps.setLong(2, bookId);
+                ps.setTimestamp(3, Timestamp.valueOf(base.plusSeconds(30L * random.nextInt(6))));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        service.evictAll();
+    }
+
+    @Test
+    void pagesMatchOrderByAddedTime() throws SQLException {
+        for (int size : new int[]{1, 7, 20, 100}) {
+            assertThat(pageThrough(null, size)).as("size=%d", size).isEqualTo(expected(null));
+            assertThat(pageThrough("红楼", size)).as("keyword size=%d", size).isEqualTo(expected("红楼"));
+        }
+    }
+
+    @Test
+    void cachedPagesAreDroppedWhenShelfChanges() throws SQLException {
+        ShelfPage first = service.getShelfPage(USER, null, null, 10);
+        assertThat(service.getShelfPage(USER, null, null, 10)).isSameAs(first);
+
+        // 新加入的书时间最新，应出现在首页第一条
+        assertThat(service.addBook(USER, 250L)).isTrue();
+        ShelfPage afterAdd = service.getShelfPage(USER, null, null, 10);
+        assertThat(afterAdd).isNotSameAs(first);
+        assertThat(afterAdd.getItems().get(0).getId()).isEqualTo(250L);
+        assertThat(pageThrough(null, 10)).isEqualTo(expected(null));
+
+        // 重复加入不算变更，缓存保留
+        assertThat(service.addBook(USER, 250L)).isFalse();
+        assertThat(service.getShelfPage(USER, null, null, 10)).isSameAs(afterAdd);
+
+        assertThat(service.removeBook(USER, 250L)).isTrue();
+        ShelfPage afterRemove = service.getShelfPage(USER, null, null, 10);
+        assertThat(afterRemove.getItems()).extracting(ShelfItem::getId).doesNotContain(250L);
+        assertThat(pageThrough(null, 10)).isEqualTo(expected(null));
+    }
+
+    @Test
+    void syncCountsOnlyRowsActuallyChanged() throws SQLException {
+        // 书 1 已在书架；5 重复出现；300 同时在加入和移除两边；null 忽略
+        assertThat(service.existsByUserIdAndBookId(USER, 1L)).isTrue();
+        List<Long> add = new ArrayList<>(List.of(1L, 5L, 5L, 299L, 300L));
+        add.add(null);
+        ShelfSyncResult result = service.sync(USER, add, List.of(300L, 2L, 4L, 250L));
+        // 新加入：299、300（1 和 5 原本就在）；移除：300、2（4 属于其他用户，250 不在书架）
+        assertThat(result.getAdded()).isEqualTo(2);
+        assertThat(result.getRemoved()).isEqualTo(2);
+        assertThat(service.existsByUserIdAndBookId(USER, 299L)).isTrue();
+        assertThat(service.existsByUserIdAndBookId(USER, 300L)).isFalse();
+        assertThat(service.existsByUserIdAndBookId(USER, 2L)).isFalse();
+        assertThat(service.existsByUserIdAndBookId(2L, 4L)).isTrue();
+        assertThat(count("SELECT COUNT(*) FROM user_shelf WHERE user_id = 1 AND book_id = 5")).isEqualTo(1);
+
+        // 再同步一次同样的内容：没有任何变化
+        ShelfSyncResult again = service.sync(USER, List.of(1L, 5L, 299L), List.of(300L, 2L));
+        assertThat(again.getAdded()).isZero();
+        assertThat(again.getRemoved()).isZero();
+    }
+
+    @Test
+    void largeSyncIsSplitIntoChunks() throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1001; id <= 2200; id++) ids.add(id);
+        assertThat(service.sync(3L, ids, null).getAdded()).isEqualTo(1200);
+        assertThat(count("SELECT COUNT(*) FROM user_shelf WHERE user_id = 3")).isEqualTo(1200);
+        assertThat(service.sync(3L, null, ids).getRemoved()).isEqualTo(1200);
+    }
+
+    private static int count(String sql) throws SQLException {
+        try (Statement st = session.getConnection().createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static List<Long> pageThrough(String keyword, int size) {
+        List<Long> ids = new ArrayList<>();
+        String after = null;
+        for (int guard = 0; guard < 1000; guard++) {
+            ShelfPage page = service.getShelfPage(USER, keyword, after, size);
+            assertThat(page.getItems().size()).isLessThanOrEqualTo(size);
+            page.getItems().stream().map(ShelfItem::getShelfId).forEach(ids::add);
+            if (!page.isHasMore()) return ids;
+            after = page.getNextCursor();
+        }
+        throw new AssertionError("翻页没有结束");
+    }
+
+    private static List<Long> expected(String keyword) throws SQLException {
+        String sql = "SELECT s.id FROM user_shelf s JOIN book b ON b.id = s.book_id WHERE s.user_id = ?"
+                + (keyword == null ? "" : " AND (b.title LIKE ? OR b.author LIKE ?)")
+                + " ORDER BY s.added_time DESC, s.id DESC";
+        try (PreparedStatement ps = session.getConnection().prepareStatement(sql)) {
+            ps.setLong(1, USER);
+            if (keyword != null) {
+                ps.setString(2, "%" + keyword + "%");
+                ps.setString(3, "%" + keyword + "%");
+            }
+            List<Long> ids = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids.add(rs.getLong(1));
+            }
+            return ids;
+        }
+    }
+
+    private static void set(String field, Object value) throws ReflectiveOperationException {
+        Field f = UserBookShelfService.class.getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(service, value);
+    }
+}
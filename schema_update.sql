@@ -0,0 +1,87 @@
+-- 数据库结构变更（按顺序在已有库上执行）
+
+-- 目录接口：章节长度冗余列 + (book_id, chapter_order) 索引，目录查询不再读取 chapter_content
+ALTER TABLE `book_content` ADD COLUMN `content_length` INT NULL AFTER `chapter_order`;
+UPDATE `book_content` SET `content_length` = CHAR_LENGTH(`chapter_content`) WHERE `content_length` IS NULL;
+CREATE INDEX `idx_book_content_book_order` ON `book_content` (`book_id`, `chapter_order`);
+
+-- 懒解析租约：多节点共享 MySQL 时同一本书只允许一个节点解析
+CREATE TABLE IF NOT EXISTS `book_parse_lease` (
+  `book_id` BIGINT NOT NULL,
+  `owner` VARCHAR(128) NOT NULL,
+  `lease_until` DATETIME NOT NULL,
+  PRIMARY KEY (`book_id`)
+);
+
+-- PDF 懒加载：入库时只存目录和页区间，正文在首次阅读时提取回填（chapter_content 需允许为空）
+ALTER TABLE `book_content` MODIFY COLUMN `chapter_content` LONGTEXT NULL;
+ALTER TABLE `book_content` ADD COLUMN `page_start` INT NULL AFTER `content_length`;
+ALTER TABLE `book_content` ADD COLUMN `page_end` INT NULL AFTER `page_start`;
+
+-- 章节压缩存储：content_codec 为空表示正文明文在 chapter_content；为 gzip 时正文压缩后存在 content_blob
+ALTER TABLE `book_content` ADD COLUMN `content_codec` VARCHAR(16) NULL AFTER `page_end`;
+ALTER TABLE `book_content` ADD COLUMN `content_blob` LONGBLOB NULL AFTER `content_codec`;
+
+-- 书目分页：公开书籍按 id / 出版时间游标翻页、按分类筛选与计数（InnoDB 二级索引末尾自带主键 id）
+CREATE INDEX `idx_book_visibility_category` ON `book` (`visibility`, `category`);
+CREATE INDEX `idx_book_visibility_publish_time` ON `book` (`visibility`, `publish_time`);
+
+-- 书架分页：按用户、加入时间倒序游标翻页
+CREATE INDEX `idx_user_shelf_user_added` ON `user_shelf` (`user_id`, `added_time`);
+
+-- 书架唯一键：加入书架改为 INSERT IGNORE，一条语句完成且不会重复；先清理历史重复记录（保留最早的一条）
+DELETE s1 FROM `user_shelf` s1
+JOIN `user_shelf` s2 ON s1.`user_id` = s2.`user_id` AND s1.`book_id` = s2.`book_id` AND s1.`id` > s2.`id`;
+ALTER TABLE `user_shelf` ADD UNIQUE KEY `uk_user_shelf_user_book` (`user_id`, `book_id`);
+
+-- 批注增量同步：每个用户一个单调递增的变更版本号，新建 / 修改 / 删除都占用新版本号；删除改为墓碑（deleted = 1）
+ALTER TABLE `annotation` ADD COLUMN `version` BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE `annotation` ADD COLUMN `deleted` TINYINT NOT NULL DEFAULT 0;
+UPDATE `annotation` SET `version` = `id`;
+CREATE TABLE IF NOT EXISTS `user_annotation_version` (
+  `user_id` BIGINT NOT NULL,
+  `version` BIGINT NOT NULL,
+  PRIMARY KEY (`user_id`)
+);
+INSERT INTO `user_annotation_version` (`user_id`, `version`)
+SELECT `user_id`, MAX(`version`) FROM `annotation` WHERE `user_id` IS NOT NULL GROUP BY `user_id`;
+CREATE INDEX `idx_annotation_user_book_version` ON `annotation` (`user_id`, `book_id`, `version`);
+CREATE INDEX `idx_annotation_user_version` ON `annotation` (`user_id`, `version`);
+
+-- 阅读进度：每个用户每本书一条，上报先在内存合并、定时批量 upsert；(user_id, update_time) 索引供"继续阅读"
+CREATE TABLE IF NOT EXISTS `reading_progress` (
+  `user_id` BIGINT NOT NULL,
+  `book_id` BIGINT NOT NULL,
+  `chapter_order` INT NULL,
+  `chapter_offset` INT NULL,
+  `update_time` DATETIME(3) NOT NULL,
+  PRIMARY KEY (`user_id`, `book_id`),
+  KEY `idx_reading_progress_user_time` (`user_id`, `update_time`)
+);
+
+-- 章节序号唯一：并发 / 重复解析时第二份章节写入直接失败回滚，不会出现重复章节
+-- 历史上 PDF 多级目录的子目录沿用父目录序号，先把有重复序号的书按 (序号, id) 重新编号
+UPDATE `book_content` bc
+JOIN (
+  SELECT `id`, ROW_NUMBER() OVER (PARTITION BY `book_id` ORDER BY `chapter_order`, `id`) AS rn
+  FROM `book_content`
+  WHERE `book_id` IN (SELECT `book_id` FROM (
+    SELECT `book_id` FROM `book_content` GROUP BY `book_id`, `chapter_order` HAVING COUNT(*) > 1
+  ) dup)
+) t ON bc.`id` = t.`id`
+SET bc.`chapter_order` = t.rn;
+ALTER TABLE `book_content` DROP INDEX `idx_book_content_book_order`,
+  ADD UNIQUE KEY `uk_book_content_book_order` (`book_id`, `chapter_order`);
+-- 批注跟着章节走：按 book_content_id 取重新编号后的序号；改动的批注占用新版本号（大于该用户当前版本，且各不相同），
+-- 增量同步的客户端会重新拉到，再把用户版本号推到最大值
+UPDATE `annotation` a
+JOIN `book_content` bc ON bc.`id` = a.`book_content_id`
+JOIN `user_annotation_version` v ON v.`user_id` = a.`user_id`
+SET a.`chapter_order` = bc.`chapter_order`, a.`version` = v.`version` + a.`id`
+WHERE NOT (a.`chapter_order` <=> bc.`chapter_order`);
+UPDATE `user_annotation_version` v
+JOIN (SELECT `user_id`, MAX(`version`) AS `max_version` FROM `annotation` GROUP BY `user_id`) m ON m.`user_id` = v.`user_id`
+SET v.`version` = GREATEST(v.`version`, m.`max_version`);
+
+-- 书目分页：按分类筛选且按出版时间排序（sort=publish&category=）也走索引，不再回表排序
+CREATE INDEX `idx_book_visibility_category_publish_time` ON `book` (`visibility`, `category`, `publish_time`);